@@ -0,0 +1,198 @@
+package com.booksystem.bench;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.AuthorStats;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.BookSummary;
+import com.booksystem.entity.Page;
+import com.booksystem.util.ApplicationState;
+import com.booksystem.util.DataStore;
+import com.booksystem.util.Log;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the service hot paths: title search, top-N ranking, title
+ * lookup, paging, author statistics, snapshot save/load, user registration,
+ * review writes and publishing. Each catalog size (@Param books) gets its own
+ * deterministic SyntheticData catalog with Zipf-skewed reviews, built once per
+ * fork. Every benchmark runs in a fresh fork, so the write benchmarks never see
+ * a catalog another benchmark grew. Allocation per operation comes from the gc
+ * profiler (gc.alloc.rate.norm); the checked-in baseline is
+ * benchmarks/baseline-report.md.
+ *
+ * Usage: mvn -B -P jmh package
+ *   java -jar target/benchmarks.jar ServiceBenchmarks -prof gc
+ *   java -jar target/benchmarks.jar ServiceBenchmarks.searchBooks -p books=1000,10000 -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ServiceBenchmarks {
+
+    private static final int REVIEWS_PER_BOOK = 5;
+    private static final double SKEW = 1.0;
+    private static final long SEED = 42;
+
+    @Param({ "1000", "10000", "100000" })
+    public int books;
+
+    SyntheticData data;
+    ApplicationState state;
+    // Indexes of the most reviewed books, and inputs derived from them, cycled through by the benchmarks
+    int[] popular;
+    String[] upperCaseTitles;
+    String[] cursors;
+    Path snapshotDir;
+    String snapshot;
+    // Advanced by every call, so consecutive calls ask for different inputs
+    int iteration;
+
+    @Setup(Level.Trial)
+    public void buildCatalog() throws IOException {
+        Log.setLevel(Log.Level.OFF); // The services log every write
+        data = new SyntheticData(books, REVIEWS_PER_BOOK, SKEW, SEED);
+        state = data.getState();
+        state.bookService.setResultCacheSize(0, 0); // Measures the queries themselves; see CacheBenchmark for the cache
+        popular = data.popularBookIndexes(4096);
+        upperCaseTitles = new String[popular.length];
+        cursors = new String[popular.length];
+        for (int i = 0; i < popular.length; i++) {
+            Book book = data.getBook(popular[i]);
+            upperCaseTitles[i] = book.getTitle().toUpperCase(Locale.ROOT);
+            cursors[i] = Long.toString(book.getPublishSequence());
+        }
+        // loadSnapshot reads the catalog as it was built; saveSnapshot overwrites the same file
+        snapshotDir = Files.createTempDirectory("service-benchmarks");
+        snapshot = snapshotDir.resolve("bench.snap").toString();
+        DataStore.saveSnapshot(state, snapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSnapshot() throws IOException {
+        Files.deleteIfExists(Path.of(snapshot));
+        Files.deleteIfExists(Path.of(DataStore.contentIndexFile(snapshot)));
+        Files.deleteIfExists(Path.of(snapshot + ".tmp"));
+        Files.deleteIfExists(snapshotDir);
+    }
+
+    private int next() {
+        return iteration++ & 4095;
+    }
+
+    @Benchmark
+    public List<Book> searchBooks() {
+        return state.bookService.searchBooks(SyntheticData.WORDS[iteration++ % SyntheticData.WORDS.length]);
+    }
+
+    @Benchmark
+    public List<Book> searchBooksPageOf20() {
+        return state.bookService.searchBooks(SyntheticData.WORDS[iteration++ % SyntheticData.WORDS.length], 0, 20);
+    }
+
+    @Benchmark
+    public List<Book> getTopNBooksByRating() {
+        return state.bookService.getTopNBooksByRating(10);
+    }
+
+    @Benchmark
+    public List<Book> getTopNBooksByWeightedRating() {
+        return state.bookService.getTopNBooksByWeightedRating(10);
+    }
+
+    @Benchmark
+    public Book getBookByTitle() {
+        return state.bookService.getBookByTitle(upperCaseTitles[next()]);
+    }
+
+    // A page of the full listing starting at a random depth: after a cursor, and at the same offset
+    @Benchmark
+    public Page<BookSummary> getBookPageOf50() throws Exception {
+        return state.bookService.getBookPage(cursors[next()], 50);
+    }
+
+    @Benchmark
+    public List<Book> searchAllAtOffsetPageOf50() {
+        return state.bookService.searchBooks("", popular[next()], 50);
+    }
+
+    @Benchmark
+    public List<AuthorStats> getTopAuthors() {
+        return state.authorService.getTopAuthors(10);
+    }
+
+    @Benchmark
+    public List<Book> getAuthorBooksByRating() throws Exception {
+        return state.authorService.getBooksByRating(data.getBook(popular[next()]).getAuthor().getUserId(), 10);
+    }
+
+    @Benchmark
+    public boolean saveSnapshot() {
+        return DataStore.saveSnapshot(state, snapshot);
+    }
+
+    @Benchmark
+    public ApplicationState loadSnapshot() {
+        return DataStore.loadSnapshot(snapshot);
+    }
+
+    @Benchmark
+    public void addUser() throws Exception {
+        int i = iteration++;
+        state.userService.addUser("BU" + i, "bench" + i, "bench" + i + "@example.com");
+    }
+
+    @Benchmark
+    public void addReview() throws Exception {
+        int i = iteration++;
+        state.reviewService.addReview(data.getBook(popular[i & 4095]), data.getUser(i), 1 + i % 5, "Benchmark review");
+    }
+
+    // An imprint that already has as many titles as the catalog has books; every publish checks the new
+    // title against all of them
+    @State(Scope.Benchmark)
+    public static class Imprint {
+        int published;
+
+        @Setup(Level.Trial)
+        public void publishBacklist(ServiceBenchmarks catalog) throws Exception {
+            catalog.state.authorService.addAuthor("IMPRINT", "imprint", "imprint@example.com");
+            Author imprint = catalog.state.authorService.getAuthorById("IMPRINT");
+            List<Book> backlist = new ArrayList<>(catalog.books);
+            for (int b = 0; b < catalog.books; b++) {
+                backlist.add(new Book("IB" + b, "Backlist title " + b, "", imprint));
+            }
+            catalog.state.authorService.publishBooks(backlist, (book, reason) -> {
+            });
+        }
+    }
+
+    @Benchmark
+    public void publishBookToImprint(Imprint imprint) throws Exception {
+        int i = imprint.published++;
+        state.authorService.publishBook("IMPRINT", "NB" + i, "New title " + i, "");
+    }
+}
@@ -0,0 +1,250 @@
+package com.booksystem.bench;
+
+import com.booksystem.server.ApiServer;
+import com.booksystem.util.Log;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load test for the HTTP API. Closed-loop clients, each on its own thread with
+ * no think time, send a mix of requests and record the latency of every one:
+ *   40% title search for a word, 15% search for two words (all=true),
+ *   15% top 10 (average or weighted), 15% book details, 10% a page of the
+ *   listing, 5% a new review.
+ * After a warm-up, it reports throughput and latency percentiles per endpoint.
+ * Without a URL it serves a synthetic catalog from an in-process ApiServer on a
+ * free port; with one it targets that server, reading book IDs from its listing.
+ *
+ * Usage: java -cp bin com.booksystem.bench.ApiLoadTest [clientCounts] [warmupSec] [measureSec] [books] [baseUrl]
+ * e.g. ... ApiLoadTest 1,8,32 5 10 100000
+ */
+public class ApiLoadTest {
+
+    private static final String[] ENDPOINTS = { "search", "search all", "top", "book", "list", "review" };
+    private static final int[] MIX_PERCENT = { 40, 15, 15, 15, 10, 5 };
+    private static final Pattern BOOK_ID = Pattern.compile("\"bookId\":\"([^\"]+)\"");
+    private static final Pattern USER_ID = Pattern.compile("\"userId\":\"([^\"]+)\"");
+
+    public static void main(String[] args) throws Exception {
+        int[] clientCounts = Arrays.stream((args.length > 0 ? args[0] : "1,8,32").split(","))
+                .mapToInt(c -> Integer.parseInt(c.trim())).toArray();
+        int warmupSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int measureSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int bookCount = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+        String baseUrl = args.length > 4 ? args[4] : null;
+
+        ApiServer server = null;
+        if (baseUrl == null) {
+            Log.setLevel(Log.Level.WARN); // Every write request would otherwise log a line
+            SyntheticData data = new SyntheticData(bookCount, 5, 1.0, 42);
+            server = new ApiServer(data.getState(), 0, 64, ApiServer.DEFAULT_REQUEST_TIMEOUT_MILLIS);
+            server.start();
+            baseUrl = "http://localhost:" + server.getPort();
+        }
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5)).build();
+        Target target = new Target(client, baseUrl);
+
+        System.out.println("Target: " + baseUrl + " (" + target.bookIds.length + " book IDs sampled)");
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.println();
+        System.out.println("| Clients | Endpoint   | requests | req/s    | errors | p50 ms  | p90 ms  | p99 ms  | p99.9 ms | max ms  |");
+        System.out.println("|---------|------------|----------|----------|--------|---------|---------|---------|----------|---------|");
+        for (int clients : clientCounts) {
+            run(target, clients, warmupSeconds, false);
+            Recorder[] recorders = run(target, clients, measureSeconds, true);
+            report(clients, recorders, measureSeconds);
+        }
+
+        if (server != null) {
+            server.stop(1);
+        }
+    }
+
+    // Runs the clients for the given time; when recording, returns one merged recorder per endpoint
+    private static Recorder[] run(Target target, int clients, int seconds, boolean record) throws InterruptedException {
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        Recorder[][] perClient = new Recorder[clients][];
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            perClient[c] = newRecorders();
+            Thread thread = new Thread(() -> {
+                Random random = new Random(client * 31L + seconds);
+                try {
+                    while (System.nanoTime() < end) {
+                        int endpoint = pickEndpoint(random);
+                        long start = System.nanoTime();
+                        int status = target.send(endpoint, random);
+                        perClient[client][endpoint].add(System.nanoTime() - start, status);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "load-client-" + c);
+            thread.start();
+        }
+        done.await();
+
+        Recorder[] merged = newRecorders();
+        if (record) {
+            for (Recorder[] recorders : perClient) {
+                for (int e = 0; e < ENDPOINTS.length; e++) {
+                    merged[e].addAll(recorders[e]);
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static void report(int clients, Recorder[] recorders, int seconds) {
+        Recorder all = new Recorder();
+        for (int e = 0; e < ENDPOINTS.length; e++) {
+            printRow(clients, ENDPOINTS[e], recorders[e], seconds);
+            all.addAll(recorders[e]);
+        }
+        printRow(clients, "all", all, seconds);
+    }
+
+    private static void printRow(int clients, String endpoint, Recorder recorder, int seconds) {
+        long[] latencies = Arrays.copyOf(recorder.latencies, recorder.count);
+        Arrays.sort(latencies);
+        System.out.printf("| %7d | %-10s | %8d | %8.1f | %6d | %7.2f | %7.2f | %7.2f | %8.2f | %7.2f |%n", clients,
+                endpoint, recorder.count, (double) recorder.count / seconds, recorder.errors,
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+    }
+
+    // Nearest-rank percentile in milliseconds
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, rank)] / 1e6;
+    }
+
+    private static int pickEndpoint(Random random) {
+        int roll = random.nextInt(100);
+        for (int e = 0; e < MIX_PERCENT.length; e++) {
+            roll -= MIX_PERCENT[e];
+            if (roll < 0) {
+                return e;
+            }
+        }
+        return 0;
+    }
+
+    private static Recorder[] newRecorders() {
+        Recorder[] recorders = new Recorder[ENDPOINTS.length];
+        for (int e = 0; e < recorders.length; e++) {
+            recorders[e] = new Recorder();
+        }
+        return recorders;
+    }
+
+    // Latencies (ns) and error count for one endpoint, in a growable primitive array
+    private static final class Recorder {
+        long[] latencies = new long[1024];
+        int count;
+        int errors;
+
+        void add(long latency, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+            if (status < 200 || status >= 300) {
+                errors++;
+            }
+        }
+
+        void addAll(Recorder other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + other.count));
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            errors += other.errors;
+        }
+    }
+
+    // The server under test, with the book IDs and the user the requests refer to
+    private static final class Target {
+        private final HttpClient client;
+        private final String baseUrl;
+        private final String[] bookIds;
+        private final String userId;
+
+        Target(HttpClient client, String baseUrl) throws Exception {
+            this.client = client;
+            this.baseUrl = baseUrl;
+            List<String> ids = new ArrayList<>();
+            Matcher matcher = BOOK_ID.matcher(get("/books?limit=" + ApiServer.MAX_PAGE_SIZE).body());
+            while (matcher.find()) {
+                ids.add(matcher.group(1));
+            }
+            if (ids.isEmpty()) {
+                throw new IllegalStateException("The server at " + baseUrl + " has no books to load-test with.");
+            }
+            bookIds = ids.toArray(new String[0]);
+            String name = "loadtest" + Long.toString(System.currentTimeMillis(), 36);
+            HttpResponse<String> registered = post("/users",
+                    "{\"username\":\"" + name + "\",\"email\":\"" + name + "@example.com\"}");
+            Matcher user = USER_ID.matcher(registered.body());
+            if (!user.find()) {
+                throw new IllegalStateException("Could not register a load-test user: " + registered.body());
+            }
+            userId = user.group(1);
+        }
+
+        // Sends one request to the given endpoint and returns the status, or 0 if the request failed
+        int send(int endpoint, Random random) {
+            String[] words = SyntheticData.WORDS;
+            String word = words[random.nextInt(words.length)];
+            // Low indexes are chosen more often, so a few books get most of the traffic
+            String bookId = bookIds[(int) (bookIds.length * Math.pow(random.nextDouble(), 3))];
+            try {
+                return switch (endpoint) {
+                case 0 -> get("/books/search?q=" + word).statusCode();
+                case 1 -> get("/books/search?all=true&q="
+                        + URLEncoder.encode(word + " " + words[random.nextInt(words.length)], StandardCharsets.UTF_8))
+                        .statusCode();
+                case 2 -> get("/books/top?n=10&by=" + (random.nextBoolean() ? "average" : "weighted")).statusCode();
+                case 3 -> get("/books/" + bookId).statusCode();
+                case 4 -> get("/books?offset=" + random.nextInt(10_000) + "&limit=20").statusCode();
+                default -> post("/books/" + bookId + "/reviews",
+                        "{\"userId\":\"" + userId + "\",\"rating\":" + (1 + random.nextInt(5)) + ",\"comment\":\"load\"}")
+                        .statusCode();
+                };
+            } catch (Exception e) {
+                return 0;
+            }
+        }
+
+        private HttpResponse<String> get(String path) throws Exception {
+            return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+        }
+
+        private HttpResponse<String> post(String path, String body) throws Exception {
+            return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+        }
+    }
+}
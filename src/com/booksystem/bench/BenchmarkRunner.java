@@ -0,0 +1,94 @@
+package com.booksystem.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal benchmark harness: runs an operation repeatedly for a warm-up period
+ * (letting the JIT compile it), then for a measurement period, and reports
+ * throughput in ops/s and heap allocation in bytes/op. Allocation is read from
+ * the per-thread allocation counter, the same source the JMH gc profiler uses.
+ */
+public class BenchmarkRunner {
+
+    // An operation under test; the iteration number lets it vary its input
+    public interface Operation {
+        Object run(int iteration) throws Exception;
+    }
+
+    // One measured result row
+    public static class Result {
+        final String name;
+        final String params;
+        final double opsPerSecond;
+        final double bytesPerOp;
+
+        Result(String name, String params, double opsPerSecond, double bytesPerOp) {
+            this.name = name;
+            this.params = params;
+            this.opsPerSecond = opsPerSecond;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Results are folded into this field so the JIT cannot drop the measured work
+    static volatile int sink;
+
+    private final long warmupMillis;
+    private final long measureMillis;
+    private final List<Result> results = new ArrayList<>();
+
+    public BenchmarkRunner(long warmupMillis, long measureMillis) {
+        this.warmupMillis = warmupMillis;
+        this.measureMillis = measureMillis;
+    }
+
+    public Result run(String name, String params, Operation operation) throws Exception {
+        int iteration = 0;
+        long warmupEnd = System.nanoTime() + warmupMillis * 1_000_000;
+        while (System.nanoTime() < warmupEnd) {
+            consume(operation.run(iteration++));
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long measureEnd = start + measureMillis * 1_000_000;
+        long ops = 0;
+        long now;
+        do {
+            consume(operation.run(iteration++));
+            ops++;
+            now = System.nanoTime();
+        } while (now < measureEnd);
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        Result result = new Result(name, params, ops / ((now - start) / 1e9), (double) allocated / ops);
+        results.add(result);
+        return result;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    // Formats all results as a Markdown table
+    public String report() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("| %-36s | %-12s | %14s | %14s |%n", "Benchmark", "Params", "ops/s", "bytes/op"));
+        table.append(String.format("|%s|%s|%s|%s|%n", "-".repeat(38), "-".repeat(14), "-".repeat(16), "-".repeat(16)));
+        for (Result r : results) {
+            table.append(String.format("| %-36s | %-12s | %14.1f | %14.1f |%n", r.name, r.params, r.opsPerSecond,
+                    r.bytesPerOp));
+        }
+        return table.toString();
+    }
+
+    private static void consume(Object value) {
+        sink += value == null ? 0 : System.identityHashCode(value) & 1;
+    }
+}
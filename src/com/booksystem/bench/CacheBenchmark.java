@@ -0,0 +1,142 @@
+package com.booksystem.bench;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.Review;
+import com.booksystem.index.QueryCache;
+import com.booksystem.service.BookService;
+
+import java.util.Random;
+
+/**
+ * Measures the BookService result cache on a read-heavy workload: searches for
+ * single words and word pairs and top-N rankings, drawn with a Zipf skew so a
+ * small set of queries dominates, mixed with reviews (1 in 20 operations) and new
+ * books (1 in 1000). The same workload is run with the cache off and on. A
+ * second phase interleaves the popular queries with one-off keys that never
+ * repeat, to show that key churn neither evicts the popular entries nor grows the
+ * cache.
+ *
+ * Usage: java -cp bin com.booksystem.bench.CacheBenchmark [books] [warmupMs] [measureMs]
+ */
+public class CacheBenchmark {
+
+    private static final int[] TOP_SIZES = { 10, 20, 50, 100 };
+
+    public static void main(String[] args) throws Exception {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long warmupMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        long measureMillis = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+        BenchmarkRunner runner = new BenchmarkRunner(warmupMillis, measureMillis);
+
+        SyntheticData data = new SyntheticData(bookCount, 5, 1.0, 42);
+        BookService bookService = data.getState().bookService;
+        Workload workload = new Workload(data, 1 << 16);
+        String params = "books=" + bookCount;
+
+        bookService.setResultCacheSize(0, 0);
+        runner.run("mixed workload", params + " cache off", workload::run);
+
+        bookService.setResultCacheSize(BookService.DEFAULT_CACHE_ENTRIES, BookService.DEFAULT_CACHE_WEIGHT);
+        runner.run("mixed workload", params + " cache on", workload::run);
+        QueryCache.Stats mixed = bookService.getResultCacheStats();
+
+        // Every other lookup is a key that is never asked for again
+        bookService.setResultCacheSize(BookService.DEFAULT_CACHE_ENTRIES, BookService.DEFAULT_CACHE_WEIGHT);
+        runner.run("mixed workload + one-off keys", params + " cache on",
+                i -> i % 2 == 0 ? workload.run(i / 2) : bookService.searchBooks("a" + i));
+        QueryCache.Stats churn = bookService.getResultCacheStats();
+
+        System.out.print(runner.report());
+        System.out.println();
+        System.out.println("| Phase                         | hit rate | evictions  | entries | weight  |");
+        System.out.println("|-------------------------------|----------|------------|---------|---------|");
+        printStats("mixed workload", mixed.getHitRate(), mixed);
+        // One-off keys never hit, so the popular queries' hit rate is hits over half the lookups
+        printStats("mixed workload + one-off keys",
+                (double) churn.getHits() / ((churn.getHits() + churn.getMisses()) / 2), churn);
+    }
+
+    private static void printStats(String phase, double hitRate, QueryCache.Stats stats) {
+        System.out.printf("| %-29s | %7.1f%% | %10d | %7d | %7d |%n", phase, hitRate * 100, stats.getEvictions(),
+                stats.getSize(), stats.getWeight());
+    }
+
+    // A fixed, Zipf-distributed sequence of queries with writes mixed in
+    private static final class Workload {
+        private final SyntheticData data;
+        private final BookService bookService;
+        private final String[] keywords;
+        private final int[] sequence;
+        private final int[] popularBooks;
+        private final Author author = new Author("bench-author", "benchauthor", "bench@example.com");
+        private int nextBook;
+
+        Workload(SyntheticData data, int length) {
+            this.data = data;
+            this.bookService = data.getState().bookService;
+            this.popularBooks = data.popularBookIndexes(4096);
+            String[] words = SyntheticData.WORDS;
+            keywords = new String[words.length * 2];
+            for (int i = 0; i < words.length; i++) {
+                keywords[2 * i] = words[i];
+                keywords[2 * i + 1] = words[i] + " " + words[(i * 7 + 3) % words.length];
+            }
+
+            // Query i of the universe (keywords, then rankings) is drawn with probability ~ 1 / (i + 1)
+            int queries = keywords.length + TOP_SIZES.length * 2;
+            double[] cumulative = new double[queries];
+            double sum = 0;
+            for (int i = 0; i < queries; i++) {
+                sum += 1.0 / (i + 1);
+                cumulative[i] = sum;
+            }
+            Random random = new Random(7);
+            int[] order = shuffled(queries, random);
+            sequence = new int[length];
+            for (int i = 0; i < length; i++) {
+                double u = random.nextDouble() * sum;
+                int rank = 0;
+                while (cumulative[rank] < u) {
+                    rank++;
+                }
+                sequence[i] = order[rank];
+            }
+        }
+
+        Object run(int iteration) {
+            if (iteration % 1000 == 999) {
+                int n = nextBook++;
+                bookService.addBook(new Book("CB" + n, SyntheticData.WORDS[n % SyntheticData.WORDS.length] + " sequel " + n,
+                        "Content", author));
+                return null;
+            }
+            if (iteration % 20 == 19) {
+                Book book = data.getBook(popularBooks[(iteration / 20) % popularBooks.length]);
+                bookService.addReview(book, new Review("CR" + iteration, data.getUser(iteration), 1 + iteration % 5, "ok"));
+                return null;
+            }
+            int query = sequence[iteration & (sequence.length - 1)];
+            if (query < keywords.length) {
+                return bookService.searchBooks(keywords[query]);
+            }
+            int top = query - keywords.length;
+            int n = TOP_SIZES[top % TOP_SIZES.length];
+            return top < TOP_SIZES.length ? bookService.getTopNBooksByRating(n) : bookService.getTopNBooksByWeightedRating(n);
+        }
+
+        private static int[] shuffled(int count, Random random) {
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            return order;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.booksystem.bench;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.AuthorStats;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.User;
+import com.booksystem.exception.DuplicateBookException;
+import com.booksystem.util.ApplicationState;
+import com.booksystem.util.IdAllocator;
+import com.booksystem.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stress test for the service writes. Writer threads register users, publish
+ * books and add reviews at the same time, while a reader thread keeps asking
+ * for the top-rated books and the author statistics. Each writer counts what it
+ * got accepted; afterwards every count and rating aggregate the services hold
+ * is checked against those counts:
+ *   the number of users and books, each book's review count and rating sum,
+ *   each author's published books, and the author statistics.
+ * Publishes race on a small pool of titles per author, and one in eight reuses
+ * the latest book ID, so the duplicate-title and duplicate-ID checks are
+ * contended too. Throughput is printed per thread count, and the
+ * process exits with status 1 on any mismatch.
+ *
+ * Usage: java -cp bin com.booksystem.bench.ConcurrencyStressTest [threadCounts] [opsPerThread] [books]
+ * e.g. ... ConcurrencyStressTest 1,2,4,8 50000 64
+ */
+public class ConcurrencyStressTest {
+
+    private static final int AUTHORS = 16;
+    private static final int USERS = 256;
+    private static final int TITLES_PER_AUTHOR = 512; // Pool the publishes draw from, so some collide
+
+    public static void main(String[] args) throws Exception {
+        int[] threadCounts = Arrays.stream((args.length > 0 ? args[0] : "1,2,4,8").split(","))
+                .mapToInt(c -> Integer.parseInt(c.trim())).toArray();
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        int bookCount = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+        Log.setLevel(Log.Level.OFF); // The services log every write
+        boolean failed = false;
+        System.out.printf("| %-8s | %12s | %12s | %16s | %-6s |%n", "Threads", "ops", "ops/s", "duplicates",
+                "Result");
+        System.out.printf("|%s|%s|%s|%s|%s|%n", "-".repeat(10), "-".repeat(14), "-".repeat(14), "-".repeat(18),
+                "-".repeat(8));
+        for (int threads : threadCounts) {
+            Run run = new Run(threads, opsPerThread, bookCount);
+            double opsPerSecond = run.execute();
+            List<String> mismatches = run.verify();
+            System.out.printf("| %-8d | %12d | %12.1f | %16d | %-6s |%n", threads, (long) threads * opsPerThread,
+                    opsPerSecond, run.duplicatesRejected.get(), mismatches.isEmpty() ? "ok" : "FAILED");
+            for (String mismatch : mismatches) {
+                System.out.println("  " + mismatch);
+            }
+            failed |= !mismatches.isEmpty();
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    // One run: a fresh state, the writers and the reader, and the expected counts the writers recorded
+    private static class Run {
+        private final int threads;
+        private final int opsPerThread;
+        private final ApplicationState state = new ApplicationState();
+        private final IdAllocator ids = state.idAllocator;
+        private final Author[] authors = new Author[AUTHORS];
+        private final User[] users = new User[USERS];
+        private final Book[] books;
+        // Expected review count and rating sum per seeded book, as the writers recorded them
+        private final AtomicLongArray reviewCounts;
+        private final AtomicLongArray ratingSums;
+        private final AtomicInteger usersAdded = new AtomicInteger();
+        // Books each author got accepted, by ID
+        private final ConcurrentHashMap<String, String> publishedBy = new ConcurrentHashMap<>();
+        private final AtomicInteger duplicatesRejected = new AtomicInteger();
+        private final List<Throwable> errors = new ArrayList<>();
+
+        Run(int threads, int opsPerThread, int bookCount) throws Exception {
+            this.threads = threads;
+            this.opsPerThread = opsPerThread;
+            for (int i = 0; i < AUTHORS; i++) {
+                String id = ids.nextId(IdAllocator.Kind.AUTHOR);
+                state.authorService.addAuthor(id, "author" + i, "author" + i + "@example.com");
+                authors[i] = state.authorService.getAuthorById(id);
+            }
+            for (int i = 0; i < USERS; i++) {
+                String id = ids.nextId(IdAllocator.Kind.USER);
+                state.userService.addUser(id, "reader" + i, "reader" + i + "@example.com");
+                users[i] = state.userService.getUserById(id);
+            }
+            books = new Book[bookCount];
+            for (int i = 0; i < bookCount; i++) {
+                String id = ids.nextId(IdAllocator.Kind.BOOK);
+                Author author = authors[i % AUTHORS];
+                state.authorService.publishBook(author.getUserId(), id, "Seeded book " + i, "Content of book " + i);
+                publishedBy.put(id, author.getUserId());
+                books[i] = state.bookService.getBookById(id);
+            }
+            reviewCounts = new AtomicLongArray(bookCount);
+            ratingSums = new AtomicLongArray(bookCount);
+        }
+
+        // Runs the writers and the reader to completion and returns the writers' throughput in ops/s
+        double execute() throws InterruptedException {
+            CountDownLatch startSignal = new CountDownLatch(1);
+            Thread[] writers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers[t] = new Thread(() -> {
+                    try {
+                        startSignal.await();
+                        write(thread);
+                    } catch (Throwable e) {
+                        recordError(e);
+                    }
+                }, "stress-writer-" + t);
+                writers[t].start();
+            }
+            Thread reader = new Thread(() -> {
+                try {
+                    startSignal.await();
+                    while (!Thread.currentThread().isInterrupted()) {
+                        state.bookService.getTopNBooksByRating(10);
+                        state.authorService.getTopAuthors(5);
+                        for (Author author : authors) {
+                            state.authorService.getAuthorStats(author.getUserId());
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // Writers are done
+                } catch (Throwable e) {
+                    recordError(e);
+                }
+            }, "stress-reader");
+            reader.start();
+
+            long start = System.nanoTime();
+            startSignal.countDown();
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            long elapsed = System.nanoTime() - start;
+            reader.interrupt();
+            reader.join();
+            return (double) threads * opsPerThread / (elapsed / 1e9);
+        }
+
+        // Mix per thread: 80% reviews on the seeded books, 10% registrations, 10% publishes
+        private void write(int thread) throws Exception {
+            Random random = new Random(42 + thread);
+            for (int i = 0; i < opsPerThread; i++) {
+                int choice = random.nextInt(10);
+                if (choice < 8) {
+                    int b = random.nextInt(books.length);
+                    int rating = 1 + random.nextInt(5);
+                    state.reviewService.addReview(books[b], users[random.nextInt(USERS)], rating, "Comment " + i);
+                    reviewCounts.incrementAndGet(b);
+                    ratingSums.addAndGet(b, rating);
+                } else if (choice < 9) {
+                    String name = "user" + thread + "x" + i;
+                    state.userService.addUser(ids.nextId(IdAllocator.Kind.USER), name, name + "@example.com");
+                    usersAdded.incrementAndGet();
+                } else {
+                    Author author = authors[random.nextInt(AUTHORS)];
+                    String bookId = random.nextInt(8) == 0
+                            ? IdAllocator.Kind.BOOK.encode(ids.getIssued(IdAllocator.Kind.BOOK))
+                            : ids.nextId(IdAllocator.Kind.BOOK);
+                    try {
+                        state.authorService.publishBook(author.getUserId(), bookId,
+                                "Title " + random.nextInt(TITLES_PER_AUTHOR), "Content " + i);
+                        publishedBy.put(bookId, author.getUserId());
+                    } catch (DuplicateBookException e) {
+                        duplicatesRejected.incrementAndGet();
+                    }
+                }
+            }
+        }
+
+        private synchronized void recordError(Throwable e) {
+            errors.add(e);
+        }
+
+        // Returns a line for every count or aggregate that does not match what the writers recorded
+        List<String> verify() {
+            List<String> mismatches = new ArrayList<>();
+            for (Throwable e : errors) {
+                mismatches.add("Thread failed: " + e);
+            }
+
+            int expectedUsers = USERS + usersAdded.get();
+            check(mismatches, "users", expectedUsers, state.userService.getAllUsers().size());
+
+            Collection<Book> allBooks = state.bookService.getAllBooks();
+            check(mismatches, "books", publishedBy.size(), allBooks.size());
+            for (Book book : allBooks) {
+                String authorId = publishedBy.get(book.getBookId());
+                if (authorId == null || !authorId.equals(book.getAuthor().getUserId())) {
+                    mismatches.add("Book " + book.getBookId() + " was not published by its author");
+                }
+            }
+
+            long totalReviews = 0;
+            long totalRatings = 0;
+            for (int b = 0; b < books.length; b++) {
+                Book book = books[b];
+                check(mismatches, "reviews of " + book.getBookId(), reviewCounts.get(b), book.getRatingCount());
+                check(mismatches, "review list of " + book.getBookId(), reviewCounts.get(b), book.getReviews().size());
+                check(mismatches, "rating sum of " + book.getBookId(), ratingSums.get(b), book.getRatingSum());
+                totalReviews += reviewCounts.get(b);
+                totalRatings += ratingSums.get(b);
+            }
+
+            // Every reviewed book is in the rating index exactly once, best average first
+            long reviewed = allBooks.stream().filter(book -> book.getRatingCount() > 0).count();
+            List<Book> ranked = state.bookService.getTopNBooksByRating(allBooks.size());
+            check(mismatches, "books in the rating index", reviewed, ranked.size());
+            for (int i = 1; i < ranked.size(); i++) {
+                if (ranked.get(i - 1).getAverageRating() < ranked.get(i).getAverageRating()) {
+                    mismatches.add("Rating index out of order at " + i);
+                    break;
+                }
+            }
+
+            long statsReviews = 0;
+            double statsRatings = 0;
+            for (Author author : authors) {
+                long expectedBooks = publishedBy.values().stream().filter(author.getUserId()::equals).count();
+                check(mismatches, "books of " + author.getUserId(), expectedBooks, author.getBookCount());
+                AuthorStats stats = state.authorService.getAuthorStats(author.getUserId());
+                check(mismatches, "stats book count of " + author.getUserId(), expectedBooks, stats.getBookCount());
+                statsReviews += stats.getReviewCount();
+                statsRatings += stats.getAverageRating() * stats.getReviewCount();
+            }
+            check(mismatches, "reviews across author stats", totalReviews, statsReviews);
+            check(mismatches, "ratings across author stats", totalRatings, Math.round(statsRatings));
+            return mismatches;
+        }
+
+        private static void check(List<String> mismatches, String what, long expected, long actual) {
+            if (expected != actual) {
+                mismatches.add("Mismatch in " + what + ": expected " + expected + ", found " + actual);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.booksystem.bench;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.Book;
+import com.booksystem.index.ContentIndex;
+import com.booksystem.util.ApplicationState;
+import com.booksystem.util.DataStore;
+import com.booksystem.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures the BM25 content index: build rate and posting size against the raw
+ * text, top-10 queries of common, rare and mixed terms against a scan of every
+ * book's content, and loading a snapshot with its saved index against loading
+ * it and rebuilding the index. Book content is drawn Zipf-distributed from a
+ * generated vocabulary, so term frequencies look like natural text.
+ *
+ * Usage: java -Xmx2g -cp bin com.booksystem.bench.ContentSearchBenchmark [books] [wordsPerBook]
+ */
+public class ContentSearchBenchmark {
+
+    private static final int VOCABULARY = 20_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int wordsPerBook = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        Log.setLevel(Log.Level.OFF);
+
+        String[] vocabulary = vocabulary();
+        List<Book> books = books(bookCount, wordsPerBook, vocabulary);
+        long textBytes = 0;
+        for (Book book : books) {
+            textBytes += book.getContent().length();
+        }
+
+        ContentIndex index = new ContentIndex();
+        long start = System.nanoTime();
+        for (Book book : books) {
+            index.add(book);
+        }
+        long buildNanos = System.nanoTime() - start;
+        System.out.printf("Catalog of %d books, %d words each (%.1f MB of text)%n", bookCount, wordsPerBook,
+                textBytes / 1048576.0);
+        System.out.printf("Index build: %.0f ms (%.0f books/s), %d terms, %.1f MB of postings%n%n", buildNanos / 1e6,
+                bookCount / (buildNanos / 1e9), index.termCount(), index.postingBytes() / 1048576.0);
+
+        // Rank 1 is in every book, rank 5,000 in about one book in two hundred
+        String common = vocabulary[0];
+        String rare = vocabulary[5_000];
+        String mixed = vocabulary[2] + " " + vocabulary[300] + " " + vocabulary[4_000];
+        BenchmarkRunner runner = new BenchmarkRunner(500, 1000);
+        for (String[] query : new String[][] { { "common", common }, { "rare", rare }, { "3 terms", mixed } }) {
+            runner.run("ContentIndex.search(10)", query[0], i -> index.search(query[1], 10));
+        }
+        runner.run("content scan", "rare", i -> scan(books, rare));
+        runner.run("content scan", "common", i -> scan(books, common));
+        System.out.print(runner.report());
+
+        ApplicationState state = new ApplicationState();
+        for (Book book : books) {
+            state.authorService.restoreAuthor(book.getAuthor());
+            state.bookService.addBook(book);
+        }
+        String snapFile = "bench_content.snap";
+        File indexFile = new File(DataStore.contentIndexFile(snapFile));
+        long withIndex = 0, rebuild = 0;
+        for (int round = 0; round <= ROUNDS; round++) { // Round 0 is warm-up
+            DataStore.saveSnapshot(state, snapFile);
+            long t0 = System.nanoTime();
+            DataStore.loadSnapshot(snapFile);
+            long t1 = System.nanoTime();
+            indexFile.delete();
+            DataStore.loadSnapshot(snapFile);
+            long t2 = System.nanoTime();
+            if (round > 0) {
+                withIndex += t1 - t0;
+                rebuild += t2 - t1;
+            }
+        }
+        DataStore.saveSnapshot(state, snapFile);
+        System.out.printf("%nSnapshot load with saved index: %.0f ms; rebuilding the index: %.0f ms (index file %.1f MB)%n",
+                withIndex / ROUNDS / 1e6, rebuild / ROUNDS / 1e6, indexFile.length() / 1048576.0);
+        new File(snapFile).delete();
+        indexFile.delete();
+    }
+
+    // The number of books containing the word: the full pass over every book's content that ranking
+    // them without the index would need, before any scoring
+    private static int scan(List<Book> books, String word) {
+        int found = 0;
+        for (Book book : books) {
+            if (book.getContent().toLowerCase(Locale.ROOT).contains(word)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static String[] vocabulary() {
+        Random random = new Random(7);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(8);
+            for (int c = 0; c < length; c++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+
+    // Sentences of Zipf-distributed words (skew 1), one author per hundred books
+    private static List<Book> books(int bookCount, int wordsPerBook, String[] vocabulary) {
+        Random random = new Random(42);
+        double[] cumulative = SyntheticData.zipfCumulative(vocabulary.length, 1.0);
+        List<Book> books = new ArrayList<>(bookCount);
+        Author author = null;
+        for (int b = 0; b < bookCount; b++) {
+            if (b % 100 == 0) {
+                author = new Author("A" + b / 100, "author" + b / 100, "author" + b / 100 + "@example.com");
+            }
+            StringBuilder content = new StringBuilder(wordsPerBook * 8);
+            for (int w = 0; w < wordsPerBook; w++) {
+                content.append(vocabulary[SyntheticData.sampleRank(cumulative, random.nextDouble())]);
+                content.append(w % 12 == 11 ? ". " : " ");
+            }
+            Book book = new Book("B" + b, "Book " + b, content.toString(), author);
+            author.addBook(book);
+            books.add(book);
+        }
+        return books;
+    }
+}
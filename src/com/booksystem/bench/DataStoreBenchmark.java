@@ -0,0 +1,55 @@
+package com.booksystem.bench;
+
+import com.booksystem.util.ApplicationState;
+import com.booksystem.util.DataStore;
+import com.booksystem.util.Log;
+
+import java.io.File;
+
+/**
+ * Compares save and load time and file size of the binary snapshot format
+ * against Java serialization on a synthetic state.
+ * Usage: java -cp bin com.booksystem.bench.DataStoreBenchmark [books] [reviewsPerBook]
+ */
+public class DataStoreBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Log.setLevel(Log.Level.OFF); // Silence DataStore messages
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int reviewsPerBook = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        ApplicationState state = new SyntheticData(books, reviewsPerBook, 1.0, 42).getState();
+
+        String serFile = "bench_state.ser";
+        String snapFile = "bench_state.snap";
+        long serSave = 0, serLoad = 0, snapSave = 0, snapLoad = 0;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            DataStore.saveState(state, serFile);
+            long t1 = System.nanoTime();
+            DataStore.loadState(serFile);
+            long t2 = System.nanoTime();
+            DataStore.saveSnapshot(state, snapFile);
+            long t3 = System.nanoTime();
+            DataStore.loadSnapshot(snapFile);
+            long t4 = System.nanoTime();
+            if (round > 0) { // Round 0 is warm-up
+                serSave += t1 - t0;
+                serLoad += t2 - t1;
+                snapSave += t3 - t2;
+                snapLoad += t4 - t3;
+            }
+        }
+
+        System.out.printf("State: %d books, %d reviews%n", books, (long) books * reviewsPerBook);
+        System.out.printf("%-20s %12s %12s %14s%n", "Format", "Save (ms)", "Load (ms)", "Size (bytes)");
+        System.out.printf("%-20s %12.1f %12.1f %14d%n", "Java serialization", serSave / ROUNDS / 1e6,
+                serLoad / ROUNDS / 1e6, new File(serFile).length());
+        System.out.printf("%-20s %12.1f %12.1f %14d%n", "Binary snapshot", snapSave / ROUNDS / 1e6,
+                snapLoad / ROUNDS / 1e6, new File(snapFile).length());
+        new File(serFile).delete();
+        new File(snapFile).delete();
+        new File(DataStore.contentIndexFile(snapFile)).delete();
+    }
+}
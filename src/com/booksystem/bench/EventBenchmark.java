@@ -0,0 +1,178 @@
+package com.booksystem.bench;
+
+import com.booksystem.event.BatchingSubscriber;
+import com.booksystem.event.DomainEvent;
+import com.booksystem.event.EventBus;
+import com.booksystem.event.ReviewAdded;
+import com.booksystem.metrics.LatencyHistogram;
+import com.booksystem.util.ApplicationState;
+import com.booksystem.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures what the event bus adds to the write path. User registration,
+ * publishing and reviews are timed with no bus attached, with a bus and no
+ * subscribers, and with one or four batching subscribers that keep a small
+ * derived view (reviews per book). A fast writer then runs against one slow
+ * subscriber, once with each overflow policy: with DROP the writes keep their
+ * speed and the subscriber misses events; with BLOCK nothing is missed but
+ * the writes slow down to the subscriber's pace.
+ *
+ * Besides throughput, each case reports write latency percentiles from a
+ * separate timed run, and how long events took to reach the subscribers. Each
+ * case starts from a freshly generated catalog, so reviews and users written
+ * by earlier cases do not slow it down with a larger heap to collect.
+ *
+ * Usage: java -Xmx2g -cp bin com.booksystem.bench.EventBenchmark [books] [warmupMs] [measureMs]
+ */
+public class EventBenchmark {
+
+    private static final int TIMED_WRITES = 100_000;
+    private static final int BUFFER = 8192;
+    private static final int BATCH = 256;
+    private static final long TICK_MILLIS = 5;
+
+    private static final AtomicInteger sequence = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long warmupMillis = args.length > 1 ? Long.parseLong(args[1]) : 500;
+        long measureMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        BenchmarkRunner runner = new BenchmarkRunner(warmupMillis, measureMillis);
+        Log.setLevel(Log.Level.OFF);
+        System.out.println("Catalog of " + bookCount + " books");
+
+        List<String> latency = new ArrayList<>();
+
+        for (int subscribers : new int[] { -1, 0, 1, 4 }) {
+            SyntheticData data = new SyntheticData(bookCount, 5, 1.0, 42);
+            ApplicationState state = data.getState();
+            int[] popular = data.popularBookIndexes(4096);
+            List<String> authorIds = new ArrayList<>(state.authorService.getAllAuthors().keySet());
+            String params = subscribers < 0 ? "no bus" : subscribers + " subscribers";
+            EventBus bus = subscribers < 0 ? null : new EventBus(BUFFER, 1, TICK_MILLIS, EventBus.OverflowPolicy.DROP);
+            LatencyHistogram lag = new LatencyHistogram();
+            List<BatchingSubscriber> attached = new ArrayList<>();
+            for (int s = 0; s < subscribers; s++) {
+                ReviewCounts view = new ReviewCounts(lag);
+                attached.add(bus.subscribe("view" + s, BATCH, view::apply));
+            }
+            state.setEventBus(bus);
+
+            BenchmarkRunner.Operation addReview = i -> {
+                state.reviewService.addReview(data.getBook(popular[i & 4095]), data.getUser(i % 1000), 1 + i % 5, "ok");
+                return null;
+            };
+            BenchmarkRunner.Operation addUser = i -> {
+                int n = sequence.incrementAndGet();
+                state.userService.addUser("EU" + n, "eventuser" + n, "eventuser" + n + "@example.com");
+                return null;
+            };
+            BenchmarkRunner.Operation publishBook = i -> {
+                int n = sequence.incrementAndGet();
+                state.authorService.publishBook(authorIds.get(n % authorIds.size()), "EB" + n, "Event Book " + n,
+                        "A short book about events");
+                return null;
+            };
+            runner.run("ReviewService.addReview", params, addReview);
+            runner.run("UserService.addUser", params, addUser);
+            runner.run("AuthorService.publishBook", params, publishBook);
+            latency.add(latencyRow("ReviewService.addReview", params, addReview, lag));
+
+            long delivered = 0, dropped = 0;
+            if (bus != null) {
+                bus.close();
+                for (BatchingSubscriber subscriber : attached) {
+                    delivered += subscriber.getDeliveredCount();
+                    dropped += subscriber.getDroppedCount();
+                }
+            }
+            if (subscribers > 0) {
+                System.out.printf("%d subscribers: %d events delivered, %d dropped%n", subscribers, delivered, dropped);
+            }
+        }
+
+        // One subscriber that needs 1 ms per batch of 64, far slower than the writer
+        for (EventBus.OverflowPolicy policy : EventBus.OverflowPolicy.values()) {
+            SyntheticData data = new SyntheticData(bookCount, 5, 1.0, 42);
+            ApplicationState state = data.getState();
+            int[] popular = data.popularBookIndexes(4096);
+            String params = "slow subscriber, " + policy;
+            EventBus bus = new EventBus(BUFFER, 1, TICK_MILLIS, policy);
+            LatencyHistogram lag = new LatencyHistogram();
+            ReviewCounts view = new ReviewCounts(lag);
+            BatchingSubscriber slow = bus.subscribe("slow", 64, events -> {
+                view.apply(events);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            state.setEventBus(bus);
+            BenchmarkRunner.Operation addReview = i -> {
+                state.reviewService.addReview(data.getBook(popular[i & 4095]), data.getUser(i % 1000), 1 + i % 5, "ok");
+                return null;
+            };
+            runner.run("ReviewService.addReview", params, addReview);
+            latency.add(latencyRow("ReviewService.addReview", params, addReview, lag));
+            bus.close();
+            System.out.printf("%s: %d events delivered, %d dropped%n", params, slow.getDeliveredCount(),
+                    slow.getDroppedCount());
+        }
+
+        System.out.println();
+        System.out.print(runner.report());
+        System.out.println();
+        System.out.println("| Benchmark                            | Params                 | p50 us | p99 us | p99.9 us | lag p50 ms | lag p99 ms |");
+        System.out.println("|--------------------------------------|------------------------|--------|--------|----------|------------|------------|");
+        for (String row : latency) {
+            System.out.println(row);
+        }
+    }
+
+    // Times TIMED_WRITES writes one by one, after the throughput run has warmed them up
+    private static String latencyRow(String name, String params, BenchmarkRunner.Operation operation,
+            LatencyHistogram lag) throws Exception {
+        LatencyHistogram writes = new LatencyHistogram();
+        int base = sequence.get();
+        for (int i = 0; i < TIMED_WRITES; i++) {
+            long start = System.nanoTime();
+            operation.run(base + i);
+            writes.record(System.nanoTime() - start);
+        }
+        LatencyHistogram.Snapshot w = writes.snapshot();
+        LatencyHistogram.Snapshot l = lag.snapshot();
+        String lagP50 = l.getCount() == 0 ? "-" : String.format("%.2f", l.getValueAtPercentile(0.50) / 1e6);
+        String lagP99 = l.getCount() == 0 ? "-" : String.format("%.2f", l.getValueAtPercentile(0.99) / 1e6);
+        return String.format("| %-36s | %-22s | %6.1f | %6.1f | %8.1f | %10s | %10s |", name, params,
+                w.getValueAtPercentile(0.50) / 1e3, w.getValueAtPercentile(0.99) / 1e3,
+                w.getValueAtPercentile(0.999) / 1e3, lagP50, lagP99);
+    }
+
+    // A derived view kept from the events: reviews per book ID. Batches of one subscriber are handed
+    // over one at a time, so a plain map is enough.
+    private static class ReviewCounts {
+        private final Map<String, Integer> counts = new HashMap<>();
+        private final LatencyHistogram lag;
+
+        ReviewCounts(LatencyHistogram lag) {
+            this.lag = lag;
+        }
+
+        void apply(List<DomainEvent> events) {
+            long now = System.nanoTime();
+            for (DomainEvent event : events) {
+                lag.record(now - event.getPublishedNanos());
+                if (event instanceof ReviewAdded) {
+                    counts.merge(((ReviewAdded) event).getBook().getBookId(), 1, Integer::sum);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.booksystem.bench;
+
+import com.booksystem.index.IdMap;
+import com.booksystem.util.IdAllocator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares the ways a service can key its entities by ID. One option is random
+ * UUID strings in a ConcurrentHashMap, as books used to be. Another is the
+ * short IDs IdAllocator hands out, in a ConcurrentHashMap, and the last is the
+ * same short IDs in an IdMap.
+ *
+ * The benchmark reports heap per entry, measured as the growth of the live heap
+ * after full GCs, once for the ID strings and once for the map alone. Lookups
+ * go through IDs cut out of request paths, as the API parses them, so the
+ * string hash is not cached. They visit entries in random order, as requests
+ * for different books do.
+ *
+ * Usage: java -Xmx3g -cp bin com.booksystem.bench.IdBenchmark [entries] [warmupMs] [measureMs]
+ */
+public class IdBenchmark {
+
+    private static final int PATHS = 1 << 16; // Distinct request paths looked up, in random order
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long warmupMillis = args.length > 1 ? Long.parseLong(args[1]) : 500;
+        long measureMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        BenchmarkRunner runner = new BenchmarkRunner(warmupMillis, measureMillis);
+
+        // The values stand in for the entities, which exist whichever way they are keyed
+        Object[] values = new Object[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = new Object();
+        }
+
+        System.out.println(count + " entries");
+        System.out.printf("| %-18s | %12s | %12s | %12s |%n", "Keys", "ID bytes", "map bytes", "total bytes");
+        System.out.printf("|%s|%s|%s|%s|%n", "-".repeat(20), "-".repeat(14), "-".repeat(14), "-".repeat(14));
+        for (String layout : new String[] { "uuid + CHM", "numbered + CHM", "numbered + IdMap" }) {
+            long before = usedHeapAfterGc();
+            String[] ids = new String[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = layout.startsWith("uuid") ? UUID.randomUUID().toString()
+                        : IdAllocator.Kind.BOOK.encode(i + 1);
+            }
+            long afterIds = usedHeapAfterGc();
+            Map<String, Object> map = layout.endsWith("IdMap") ? new IdMap<>(IdAllocator.Kind.BOOK)
+                    : new ConcurrentHashMap<>();
+            for (int i = 0; i < count; i++) {
+                map.put(ids[i], values[i]);
+            }
+            long afterMap = usedHeapAfterGc();
+            System.out.printf("| %-18s | %12.1f | %12.1f | %12.1f |%n", layout, (double) (afterIds - before) / count,
+                    (double) (afterMap - afterIds) / count, (double) (afterMap - before) / count);
+
+            // Request paths for random entries; each lookup cuts the ID out, as the API does
+            Random random = new Random(42);
+            String[] paths = new String[PATHS];
+            String[] keys = new String[PATHS];
+            for (int i = 0; i < PATHS; i++) {
+                keys[i] = ids[random.nextInt(count)];
+                paths[i] = "/books/" + keys[i];
+            }
+            String missing = "/books/" + IdAllocator.Kind.BOOK.encode(count + 1L);
+            runner.run("get (ID from request path)", layout, i -> map.get(paths[i & (PATHS - 1)].substring(7)));
+            runner.run("get (same ID instance)", layout, i -> map.get(keys[i & (PATHS - 1)]));
+            runner.run("get (missing ID)", layout, i -> map.get(missing.substring(7)));
+        }
+        System.out.println();
+        System.out.print(runner.report());
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
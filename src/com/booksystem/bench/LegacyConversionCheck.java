@@ -0,0 +1,129 @@
+package com.booksystem.bench;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.Review;
+import com.booksystem.entity.User;
+import com.booksystem.util.ApplicationState;
+import com.booksystem.util.DataStore;
+import com.booksystem.util.IdAllocator;
+import com.booksystem.util.Log;
+import com.booksystem.util.SnapshotConverter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts an app_state.ser written by the first release and checks what the
+ * snapshot holds. The fixture benchmarks/fixtures/baseline-app_state.ser was
+ * produced by the first release's own menu:
+ *   git archive 923fa3a src | tar -x -C baseline, compile it, then pipe
+ *   1 alice, 1 Bob Smith (users U001, U002), 2 Carol, 2 Dave (authors A001,
+ *   A002), 3 Clean Code and 3 River Night for A001, 3 Silent Garden for A002,
+ *   5 reviews: Clean Code 5 by U001 and 4 by U002, Silent Garden 2 by U001, 0
+ *   into com.booksystem.main.App.
+ * The converted state is then written back with Java serialization by the
+ * current classes and converted again, which must give the same result.
+ * Exits with status 1 on any mismatch.
+ *
+ * Usage: java -cp bin com.booksystem.bench.LegacyConversionCheck [fixture.ser]
+ */
+public class LegacyConversionCheck {
+
+    public static void main(String[] args) {
+        String fixture = args.length > 0 ? args[0] : "benchmarks/fixtures/baseline-app_state.ser";
+        Log.setLevel(Log.Level.OFF); // DataStore reports every load and save
+        String snapFile = "legacy_check.snap";
+        String serFile = "legacy_check.ser";
+        List<String> mismatches = new ArrayList<>();
+        try {
+            ApplicationState converted = SnapshotConverter.convert(fixture, snapFile);
+            verify("first release", converted, mismatches);
+            if (converted != null) {
+                DataStore.saveState(converted, serFile);
+                verify("current classes", SnapshotConverter.convert(serFile, snapFile), mismatches);
+            }
+        } finally {
+            new File(snapFile).delete();
+            new File(DataStore.contentIndexFile(snapFile)).delete();
+            new File(serFile).delete();
+        }
+
+        for (String mismatch : mismatches) {
+            System.out.println("  " + mismatch);
+        }
+        System.out.println(mismatches.isEmpty() ? "Legacy conversion: ok" : "Legacy conversion: FAILED");
+        if (!mismatches.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    private static void verify(String source, ApplicationState state, List<String> mismatches) {
+        if (state == null) {
+            mismatches.add(source + ": conversion failed");
+            return;
+        }
+        check(mismatches, source + ": users", 2, state.userService.getAllUsers().size());
+        checkUser(mismatches, source, state.userService.getUserById("U001"), "alice");
+        checkUser(mismatches, source, state.userService.getUserById("U002"), "Bob Smith");
+        check(mismatches, source + ": authors", 2, state.authorService.getAllAuthors().size());
+        checkUser(mismatches, source, state.authorService.getAuthorById("A001"), "Carol");
+        checkUser(mismatches, source, state.authorService.getAuthorById("A002"), "Dave");
+        check(mismatches, source + ": books", 3, state.bookService.getAllBooks().size());
+
+        checkBook(mismatches, source, state, "Clean Code", "A001", 9, "U001", "U002");
+        checkBook(mismatches, source, state, "River Night", "A001", 0);
+        checkBook(mismatches, source, state, "Silent Garden", "A002", 2, "U001");
+        Author carol = state.authorService.getAuthorById("A001");
+        if (carol != null) {
+            check(mismatches, source + ": books of A001", 2, carol.getBookCount());
+        }
+
+        // New IDs continue after the restored ones
+        IdAllocator ids = state.idAllocator;
+        if (state.userService.getUserById(ids.nextId(IdAllocator.Kind.USER)) != null
+                || state.authorService.getAuthorById(ids.nextId(IdAllocator.Kind.AUTHOR)) != null) {
+            mismatches.add(source + ": a new ID collides with a restored one");
+        }
+    }
+
+    private static void checkUser(List<String> mismatches, String source, User user, String username) {
+        if (user == null || !username.equals(user.getUsername())) {
+            mismatches.add(source + ": missing " + username);
+        }
+    }
+
+    // Checks the book's author, rating sum and reviewers, in review order
+    private static void checkBook(List<String> mismatches, String source, ApplicationState state, String title,
+                                  String authorId, long ratingSum, String... reviewerIds) {
+        Book book = state.bookService.getBookByTitle(title);
+        if (book == null) {
+            mismatches.add(source + ": missing book " + title);
+            return;
+        }
+        if (!authorId.equals(book.getAuthor().getUserId())) {
+            mismatches.add(source + ": " + title + " is not by " + authorId);
+        }
+        check(mismatches, source + ": reviews of " + title, reviewerIds.length, book.getRatingCount());
+        check(mismatches, source + ": rating sum of " + title, ratingSum, book.getRatingSum());
+        List<Review> reviews = book.getReviews();
+        for (int i = 0; i < Math.min(reviews.size(), reviewerIds.length); i++) {
+            Review review = reviews.get(i);
+            if (review.getUser() == null || !reviewerIds[i].equals(review.getUser().getUserId())) {
+                mismatches.add(source + ": review " + i + " of " + title + " is not by " + reviewerIds[i]);
+            } else if (review.getUser() != state.userService.getUserById(reviewerIds[i])) {
+                mismatches.add(source + ": review " + i + " of " + title + " has a copy of its reviewer");
+            }
+            if (review.getTimestamp() == null) {
+                mismatches.add(source + ": review " + i + " of " + title + " lost its timestamp");
+            }
+        }
+    }
+
+    private static void check(List<String> mismatches, String what, long expected, long actual) {
+        if (expected != actual) {
+            mismatches.add("Mismatch in " + what + ": expected " + expected + ", found " + actual);
+        }
+    }
+}
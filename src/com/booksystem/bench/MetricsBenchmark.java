@@ -0,0 +1,76 @@
+package com.booksystem.bench;
+
+import com.booksystem.metrics.Counter;
+import com.booksystem.metrics.LatencyHistogram;
+import com.booksystem.metrics.Metrics;
+import com.booksystem.util.ApplicationState;
+import com.booksystem.util.Log;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Measures what the metrics layer and logging add to a service call: the cost
+ * of one histogram record and counter increment, a title search and a review
+ * write with timing on and off, and a review write with logging off, with
+ * asynchronous INFO logging and with the synchronous println it replaced. Log
+ * output goes to a null stream so the console itself is not measured.
+ *
+ * Usage: java -cp bin com.booksystem.bench.MetricsBenchmark [books] [warmupMs] [measureMs]
+ */
+public class MetricsBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long warmupMillis = args.length > 1 ? Long.parseLong(args[1]) : 500;
+        long measureMillis = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+        BenchmarkRunner runner = new BenchmarkRunner(warmupMillis, measureMillis);
+        System.out.println("Catalog of " + bookCount + " books");
+
+        Log.setLevel(Log.Level.OFF);
+        SyntheticData data = new SyntheticData(bookCount, 5, 1.0, 42);
+        ApplicationState state = data.getState();
+        state.bookService.setResultCacheSize(0, 0);
+        String[] words = SyntheticData.WORDS;
+        int[] popular = data.popularBookIndexes(4096);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        Counter counter = new Counter();
+        runner.run("LatencyHistogram.record", "", i -> {
+            histogram.record(i & 0xFFFFF);
+            return histogram;
+        });
+        runner.run("Counter.increment", "", i -> {
+            counter.increment();
+            return counter;
+        });
+
+        for (boolean timing : new boolean[] { true, false }) {
+            Metrics.setEnabled(timing);
+            String mode = timing ? "timing on" : "timing off";
+            runner.run("BookService.searchBooks", mode,
+                    i -> state.bookService.searchBooks(words[i % words.length]));
+            runner.run("ReviewService.addReview", mode, i -> {
+                state.reviewService.addReview(data.getBook(popular[i & 4095]), data.getUser(i % 1000), 1 + i % 5, "ok");
+                return null;
+            });
+        }
+
+        Metrics.setEnabled(true);
+        PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+        Log.setOutput(nowhere);
+        Log.setLevel(Log.Level.INFO);
+        runner.run("ReviewService.addReview", "async log", i -> {
+            state.reviewService.addReview(data.getBook(popular[i & 4095]), data.getUser(i % 1000), 1 + i % 5, "ok");
+            return null;
+        });
+        Log.setLevel(Log.Level.OFF);
+        runner.run("ReviewService.addReview", "println", i -> {
+            state.reviewService.addReview(data.getBook(popular[i & 4095]), data.getUser(i % 1000), 1 + i % 5, "ok");
+            nowhere.println("✅ Review added to book: " + data.getBook(popular[i & 4095]).getTitle());
+            return null;
+        });
+
+        System.out.print(runner.report());
+    }
+}
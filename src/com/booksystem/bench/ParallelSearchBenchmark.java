@@ -0,0 +1,77 @@
+package com.booksystem.bench;
+
+import com.booksystem.entity.Book;
+import com.booksystem.service.BookService;
+
+import java.util.List;
+
+/**
+ * Measures how catalog-wide searches scale with the query parallelism of
+ * BookService. Each query shape is run at every parallelism on the same
+ * synthetic catalog, after checking that the parallel results are identical to
+ * the sequential ones:
+ *   - a two-letter term that matches no title (every title is checked)
+ *   - a one-letter term that matches most titles (every title is checked, large result)
+ *   - a common trigram (a long posting list to verify)
+ *   - the first page of 20 for the one-letter term (fills from the first segment)
+ *
+ * Usage: java -cp bin com.booksystem.bench.ParallelSearchBenchmark [bookCounts] [parallelisms] [warmupMs] [measureMs]
+ * e.g. ... ParallelSearchBenchmark 100000,1000000 1,2,4,8 1000 2000
+ */
+public class ParallelSearchBenchmark {
+
+    private static final String[] FULL_QUERIES = { "zq", "e", "den" };
+
+    public static void main(String[] args) throws Exception {
+        int[] bookCounts = parseList(args.length > 0 ? args[0] : "100000,500000");
+        int[] parallelisms = parseList(args.length > 1 ? args[1] : "1,2,4,8");
+        long warmupMillis = args.length > 2 ? Long.parseLong(args[2]) : 500;
+        long measureMillis = args.length > 3 ? Long.parseLong(args[3]) : 1000;
+        BenchmarkRunner runner = new BenchmarkRunner(warmupMillis, measureMillis);
+
+        for (int bookCount : bookCounts) {
+            BookService bookService = new SyntheticData(bookCount, 1, 1.0, 42).getState().bookService;
+            bookService.setParallelThreshold(0); // Measure every parallelism, not just where the default would switch
+            bookService.setResultCacheSize(0, 0);
+            for (int parallelism : parallelisms) {
+                bookService.setQueryParallelism(parallelism);
+                verify(bookService, parallelism);
+                String params = "books=" + bookCount + " threads=" + parallelism;
+                for (String query : FULL_QUERIES) {
+                    runner.run("searchBooks(\"" + query + "\")", params, i -> bookService.searchBooks(query));
+                }
+                runner.run("searchBooks(\"e\", page of 20)", params, i -> bookService.searchBooks("e", 0, 20));
+            }
+            bookService.setQueryParallelism(1);
+            System.gc();
+        }
+
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.print(runner.report());
+    }
+
+    // Checks that every query returns the same books in the same order as the sequential search
+    private static void verify(BookService bookService, int parallelism) {
+        int restore = bookService.getQueryParallelism();
+        for (String query : FULL_QUERIES) {
+            bookService.setQueryParallelism(1);
+            List<Book> expected = bookService.searchBooks(query);
+            List<Book> expectedPage = bookService.searchBooks(query, 1000, 50);
+            bookService.setQueryParallelism(parallelism);
+            if (!expected.equals(bookService.searchBooks(query))
+                    || !expectedPage.equals(bookService.searchBooks(query, 1000, 50))) {
+                throw new IllegalStateException("Parallel search for \"" + query + "\" differs from the sequential one");
+            }
+        }
+        bookService.setQueryParallelism(restore);
+    }
+
+    private static int[] parseList(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
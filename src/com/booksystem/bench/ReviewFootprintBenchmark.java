@@ -0,0 +1,90 @@
+package com.booksystem.bench;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.Review;
+import com.booksystem.entity.ReviewLog;
+import com.booksystem.entity.User;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the two ReviewLog layouts: retained heap per review, measured as the
+ * growth of the live heap after full GCs while the books are reachable (JOL is
+ * not on the classpath, so whole-graph retained size is measured instead of
+ * per-object layouts), and the cost of reading a page of reviews.
+ *
+ * Usage: java -Xmx4g -cp bin com.booksystem.bench.ReviewFootprintBenchmark [books] [reviewsPerBook]
+ */
+public class ReviewFootprintBenchmark {
+
+    private static final String[] COMMENTS = { "Great read", "Not for me", "Loved the characters",
+            "Too long in the middle", "Would recommend to a friend", "ok", "" };
+
+    public static void main(String[] args) throws Exception {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int reviewsPerBook = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        BenchmarkRunner runner = new BenchmarkRunner(500, 1000);
+        System.out.printf("| %-10s | %14s | %12s |%n", "Layout", "heap MB", "bytes/review");
+        System.out.printf("|%s|%s|%s|%n", "-".repeat(12), "-".repeat(16), "-".repeat(14));
+        for (ReviewLog.Layout layout : ReviewLog.Layout.values()) {
+            ReviewLog.setDefaultLayout(layout);
+            long before = usedHeapAfterGc();
+            List<Book> catalog = build(books, reviewsPerBook);
+            long retained = usedHeapAfterGc() - before;
+            System.out.printf("| %-10s | %14.1f | %12.1f |%n", layout, retained / 1048576.0,
+                    (double) retained / ((long) books * reviewsPerBook));
+
+            String params = layout.toString().toLowerCase();
+            runner.run("ReviewLog.newestFirst(10)", params,
+                    i -> catalog.get(i % books).getReviewLog().newestFirst(Integer.MAX_VALUE, 10));
+            runner.run("Book.addReview", params, i -> {
+                catalog.get(i % books).addReview(new Review("R" + i, null, 4, "ok"));
+                return null;
+            });
+        }
+        ReviewLog.setDefaultLayout(ReviewLog.Layout.COLUMNAR);
+        System.out.println();
+        System.out.print(runner.report());
+    }
+
+    // Builds books with the given number of reviews each, from 10,000 distinct users.
+    // Comments are separate String instances, as they would be when read from input.
+    private static List<Book> build(int books, int reviewsPerBook) {
+        Random random = new Random(42);
+        User[] users = new User[10_000];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = new User("U" + i, "user" + i, "user" + i + "@example.com");
+        }
+        Author author = new Author("A1", "author", "author@example.com");
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Book> catalog = new ArrayList<>(books);
+        long reviewId = 1;
+        for (int b = 0; b < books; b++) {
+            Book book = new Book("B" + b, "Book " + b, null, author);
+            for (int r = 0; r < reviewsPerBook; r++) {
+                book.addReview(new Review("R" + reviewId++, users[random.nextInt(users.length)], 1 + random.nextInt(5),
+                        new String(COMMENTS[random.nextInt(COMMENTS.length)]), start.plusSeconds(reviewId * 37).plusNanos(r * 1000)));
+            }
+            catalog.add(book);
+        }
+        return catalog;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
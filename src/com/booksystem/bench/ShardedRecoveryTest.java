@@ -0,0 +1,281 @@
+package com.booksystem.bench;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.User;
+import com.booksystem.util.DataStore;
+import com.booksystem.util.IdAllocator;
+import com.booksystem.util.Log;
+import com.booksystem.util.OperationLog;
+import com.booksystem.util.ShardedState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+/**
+ * Drives a sharded state through the same cycle App runs with --shards: writer
+ * threads register users, publish books and add reviews while the per-shard
+ * operation logs record them and a compactor folds the logs into sharded
+ * snapshots. The process then "crashes" (the logs are closed without a final
+ * save), and the state is loaded and recovered from the files:
+ *   1. with the same shard count, which must replay every logged change;
+ *   2. with another shard count, which moves every book to its new shard and
+ *      must be compacted before anything new is logged; more writes follow, and
+ *      the state is crashed and recovered again.
+ * After each recovery, the users, authors, books, each book's ratings and the
+ * top-rated books are compared with the state that crashed, and every book must
+ * be in the shard its ID maps to. Prints load and replay times and exits with
+ * status 1 on any mismatch.
+ *
+ * Usage: java -cp bin com.booksystem.bench.ShardedRecoveryTest [shards] [resharded] [threads] [opsPerThread]
+ * e.g. ... ShardedRecoveryTest 4 3 4 20000
+ */
+public class ShardedRecoveryTest {
+
+    private static final int AUTHORS = 16;
+    private static final int USERS = 256;
+    private static final int SEEDED_BOOKS = 256;
+
+    public static void main(String[] args) throws Exception {
+        int shards = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int resharded = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int opsPerThread = args.length > 3 ? Integer.parseInt(args[3]) : 20_000;
+
+        Log.setLevel(Log.Level.OFF); // The services log every write
+        Path dir = Files.createTempDirectory("sharded-recovery");
+        String baseName = dir.resolve("app_state").toString();
+        String logFile = dir.resolve("app_state.wal").toString();
+        boolean failed = false;
+        System.out.printf("| %-32s | %6s | %8s | %8s | %10s | %-6s |%n", "Step", "Shards", "Books", "Reviews",
+                "Recover ms", "Result");
+        System.out.printf("|%s|%s|%s|%s|%s|%s|%n", "-".repeat(34), "-".repeat(8), "-".repeat(10), "-".repeat(10),
+                "-".repeat(12), "-".repeat(8));
+        try {
+            // Same shard count: every change logged since the last compaction is replayed
+            Run first = new Run(new ShardedState(shards), baseName, logFile);
+            first.seed();
+            first.write(threads, opsPerThread);
+            first.crash();
+            Recovery same = recover(baseName, logFile, shards);
+            failed |= report("crash and recover", same, first.state, true);
+
+            // Another shard count: the recovered state is compacted into the new layout first
+            Recovery moved = recover(baseName, logFile, resharded);
+            failed |= report("reshard " + shards + " -> " + resharded, moved, same.state, resharded == shards);
+            Run third = new Run(moved.state, baseName, logFile);
+            if (!moved.logsMatch) {
+                third.compact();
+            }
+            third.write(threads, opsPerThread);
+            third.crash();
+            failed |= report("write, crash and recover", recover(baseName, logFile, resharded), third.state, true);
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(dir);
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    // A state attached to its operation logs, the writers that change it and the compactor
+    private static class Run {
+        private final ShardedState state;
+        private final String baseName;
+        private final String logFile;
+        private final OperationLog directoryLog;
+        private final List<OperationLog> shardLogs = new ArrayList<>();
+        private final List<Throwable> errors = new ArrayList<>();
+
+        Run(ShardedState state, String baseName, String logFile) throws IOException {
+            this.state = state;
+            this.baseName = baseName;
+            this.logFile = logFile;
+            directoryLog = new OperationLog(Paths.get(logFile), 10, false);
+            for (int i = 0; i < state.getShardCount(); i++) {
+                shardLogs.add(new OperationLog(Paths.get(DataStore.shardLogFile(logFile, i)), 10, false));
+            }
+            state.setOperationLogs(directoryLog, shardLogs);
+        }
+
+        void seed() throws Exception {
+            IdAllocator ids = state.idAllocator;
+            for (int i = 0; i < AUTHORS; i++) {
+                state.authorService.addAuthor(ids.nextId(IdAllocator.Kind.AUTHOR), "author" + i,
+                        "author" + i + "@example.com");
+            }
+            for (int i = 0; i < USERS; i++) {
+                state.userService.addUser(ids.nextId(IdAllocator.Kind.USER), "reader" + i, "reader" + i + "@example.com");
+            }
+            List<Author> authors = new ArrayList<>(state.authorService.getAllAuthors().values());
+            for (int i = 0; i < SEEDED_BOOKS; i++) {
+                state.authorService.publishBook(authors.get(i % authors.size()).getUserId(),
+                        ids.nextId(IdAllocator.Kind.BOOK), "Seeded book " + i, "Content of book " + i);
+            }
+        }
+
+        void compact() {
+            DataStore.compactSharded(state, baseName, directoryLog, shardLogs, logFile);
+        }
+
+        // Runs the writers with a compaction halfway through every writer's share, while they keep writing
+        void write(int threads, int opsPerThread) throws InterruptedException {
+            List<Author> authors = new ArrayList<>(state.authorService.getAllAuthors().values());
+            List<User> users = new ArrayList<>(state.userService.getAllUsers().values());
+            List<Book> books = new ArrayList<>(state.router.getAllBooks());
+            CountDownLatch halfway = new CountDownLatch(threads);
+            Thread[] writers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers[t] = new Thread(() -> {
+                    try {
+                        Random random = new Random(42 + thread);
+                        for (int i = 0; i < opsPerThread; i++) {
+                            if (i == opsPerThread / 2) {
+                                halfway.countDown();
+                            }
+                            writeOne(random, thread, i, authors, users, books);
+                        }
+                    } catch (Throwable e) {
+                        recordError(e);
+                        halfway.countDown(); // So the compactor does not wait for it
+                    }
+                }, "recovery-writer-" + t);
+                writers[t].start();
+            }
+            halfway.await();
+            compact();
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+
+        // Mix: 80% reviews on the books there were at the start, 10% registrations, 10% publishes
+        private void writeOne(Random random, int thread, int i, List<Author> authors, List<User> users,
+                              List<Book> books) throws Exception {
+            int choice = random.nextInt(10);
+            if (choice < 8) {
+                Book book = books.get(random.nextInt(books.size()));
+                state.router.addReview(book, users.get(random.nextInt(users.size())), 1 + random.nextInt(5),
+                        "Comment " + i);
+            } else if (choice < 9) {
+                String name = "user" + thread + "x" + i + "x" + state.getShardCount();
+                state.userService.addUser(state.idAllocator.nextId(IdAllocator.Kind.USER), name, name + "@example.com");
+            } else {
+                state.authorService.publishBook(authors.get(random.nextInt(authors.size())).getUserId(),
+                        state.idAllocator.nextId(IdAllocator.Kind.BOOK), "Title " + thread + "x" + i + "x"
+                                + state.getShardCount(), "Content " + i);
+            }
+        }
+
+        private synchronized void recordError(Throwable e) {
+            errors.add(e);
+        }
+
+        // Stops logging without saving, as a crash after the last write was logged would
+        void crash() throws IOException {
+            directoryLog.close();
+            for (OperationLog log : shardLogs) {
+                log.close();
+            }
+            state.router.shutdown();
+            for (Throwable e : errors) {
+                throw new IllegalStateException("Writer failed", e);
+            }
+        }
+    }
+
+    private static class Recovery {
+        ShardedState state;
+        boolean logsMatch;
+        long nanos;
+    }
+
+    // Loads the sharded snapshot (or starts empty without one) and replays the logs, as App does on start
+    private static Recovery recover(String baseName, String logFile, int shards) {
+        Recovery recovery = new Recovery();
+        long start = System.nanoTime();
+        recovery.state = DataStore.loadSharded(baseName, shards, null);
+        if (recovery.state == null) {
+            recovery.state = new ShardedState(shards);
+        }
+        recovery.logsMatch = DataStore.recoverSharded(recovery.state, logFile);
+        recovery.nanos = System.nanoTime() - start;
+        return recovery;
+    }
+
+    // Prints a row for the recovery and returns true if it did not reproduce the expected state
+    private static boolean report(String step, Recovery recovery, ShardedState expected, boolean expectLogsMatch) {
+        List<String> mismatches = new ArrayList<>();
+        if (recovery.logsMatch != expectLogsMatch) {
+            mismatches.add("recoverSharded returned " + recovery.logsMatch + ", expected " + expectLogsMatch);
+        }
+        Map<String, String> actual = fingerprint(recovery.state);
+        Map<String, String> wanted = fingerprint(expected);
+        for (Map.Entry<String, String> entry : wanted.entrySet()) {
+            String found = actual.get(entry.getKey());
+            if (!entry.getValue().equals(found)) {
+                mismatches.add(entry.getKey() + ": expected " + entry.getValue() + ", found " + found);
+            }
+        }
+        for (String key : actual.keySet()) {
+            if (!wanted.containsKey(key)) {
+                mismatches.add(key + ": not in the state that crashed");
+            }
+        }
+        for (Book book : recovery.state.router.getAllBooks()) {
+            int shard = recovery.state.router.shardOf(book.getBookId());
+            if (recovery.state.router.getBookService(shard).getBookById(book.getBookId()) != book) {
+                mismatches.add(book.getBookId() + ": not in shard " + shard);
+            }
+        }
+        long reviews = recovery.state.router.getAllBooks().stream().mapToLong(Book::getRatingCount).sum();
+        System.out.printf("| %-32s | %6d | %8d | %8d | %10.1f | %-6s |%n", step, recovery.state.getShardCount(),
+                recovery.state.router.getAllBooks().size(), reviews, recovery.nanos / 1e6,
+                mismatches.isEmpty() ? "ok" : "FAILED");
+        for (String mismatch : mismatches.subList(0, Math.min(mismatches.size(), 20))) {
+            System.out.println("  " + mismatch);
+        }
+        return !mismatches.isEmpty();
+    }
+
+    // What the state holds, keyed by entity: users, authors with their book counts and ratings, books with
+    // their author, title and ratings, and the ten top-rated books
+    private static Map<String, String> fingerprint(ShardedState state) {
+        Map<String, String> entries = new TreeMap<>();
+        for (User user : state.userService.getAllUsers().values()) {
+            entries.put("user " + user.getUserId(), user.getUsername() + " " + user.getEmail());
+        }
+        for (Author author : state.authorService.getAllAuthors().values()) {
+            entries.put("author " + author.getUserId(), author.getUsername() + ", " + author.getBookCount()
+                    + " books, " + author.getReviewCount() + " reviews, sum " + author.getRatingSum());
+        }
+        List<Book> books = new ArrayList<>(state.router.getAllBooks());
+        books.sort(Comparator.comparing(Book::getBookId));
+        for (Book book : books) {
+            entries.put("book " + book.getBookId(), book.getTitle() + " by " + book.getAuthor().getUserId() + ", "
+                    + book.getRatingCount() + " reviews, sum " + book.getRatingSum());
+        }
+        StringBuilder top = new StringBuilder();
+        for (Book book : state.router.getTopNBooksByRating(10)) {
+            top.append(book.getBookId()).append(' ');
+        }
+        entries.put("top rated", top.toString().trim());
+        return entries;
+    }
+}
@@ -0,0 +1,130 @@
+package com.booksystem.bench;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.Review;
+import com.booksystem.entity.User;
+import com.booksystem.util.ApplicationState;
+import com.booksystem.util.IdAllocator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic catalog used by the benchmarks. The same seed and
+ * sizes always produce the same users, authors, titles and reviews. Titles are
+ * built from a small vocabulary so keyword searches have realistic hit rates,
+ * and reviews follow a Zipf distribution over books, so a few books get most of
+ * the reviews, as in a real catalog.
+ */
+public class SyntheticData {
+
+    static final String[] WORDS = { "java", "clean", "code", "effective", "patterns", "design", "systems", "data",
+            "modern", "practical", "guide", "art", "history", "secret", "garden", "river", "night", "ocean", "city",
+            "empire", "shadow", "light", "journey", "winter", "summer", "stone", "fire", "glass", "silent", "lost",
+            "golden", "hidden", "last", "first", "little", "great", "wild", "broken", "silver", "dark" };
+
+    private final int bookCount;
+    private final long seed;
+    private final double skew;
+    private final ApplicationState state = new ApplicationState();
+    private final User[] users;
+    private final Book[] books;
+
+    // Builds a catalog of bookCount books with reviewsPerBook reviews on average, Zipf-distributed with the given skew
+    public SyntheticData(int bookCount, int reviewsPerBook, double skew, long seed) {
+        this.bookCount = bookCount;
+        this.seed = seed;
+        this.skew = skew;
+        Random random = new Random(seed);
+        IdAllocator ids = state.idAllocator; // IDs as the running system hands them out: U001, B001, ...
+
+        int userCount = Math.max(1, bookCount / 2);
+        users = new User[userCount];
+        for (int i = 0; i < userCount; i++) {
+            users[i] = new User(ids.nextId(IdAllocator.Kind.USER), "user" + i, "user" + i + "@example.com");
+            state.userService.restoreUser(users[i]);
+        }
+
+        int authorCount = Math.max(1, bookCount / 10);
+        Author[] authors = new Author[authorCount];
+        for (int i = 0; i < authorCount; i++) {
+            authors[i] = new Author(ids.nextId(IdAllocator.Kind.AUTHOR), "author" + i, "author" + i + "@example.com");
+            state.authorService.restoreAuthor(authors[i]);
+        }
+
+        books = new Book[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            Author author = authors[random.nextInt(authorCount)];
+            books[i] = new Book(ids.nextId(IdAllocator.Kind.BOOK), title(random, i), "Content of book " + i, author);
+            author.addBook(books[i]);
+        }
+
+        // Reviews are added before the books are registered, so each book enters the rating index once
+        double[] cumulative = zipfCumulative(bookCount, skew);
+        long reviewCount = (long) bookCount * reviewsPerBook;
+        for (long r = 0; r < reviewCount; r++) {
+            Book book = books[sampleRank(cumulative, random.nextDouble())];
+            book.addReview(new Review(ids.nextId(IdAllocator.Kind.REVIEW), users[random.nextInt(userCount)], 1 + random.nextInt(5),
+                    "Comment " + random.nextInt(100)));
+        }
+        for (Book book : books) {
+            state.bookService.addBook(book);
+        }
+    }
+
+    public ApplicationState getState() {
+        return state;
+    }
+
+    public int getBookCount() {
+        return bookCount;
+    }
+
+    public Book getBook(int index) {
+        return books[index];
+    }
+
+    public User getUser(int index) {
+        return users[index % users.length];
+    }
+
+    // Sequence of books drawn with the same skew as the reviews, for benchmarks that hit popular books
+    public int[] popularBookIndexes(int count) {
+        Random random = new Random(seed + 1);
+        double[] cumulative = zipfCumulative(bookCount, skew);
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = sampleRank(cumulative, random.nextDouble());
+        }
+        return indexes;
+    }
+
+    // Two to four vocabulary words plus the book number, so every title is unique
+    private static String title(Random random, int index) {
+        StringBuilder title = new StringBuilder();
+        int words = 2 + random.nextInt(3);
+        for (int w = 0; w < words; w++) {
+            title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return title.append(index).toString();
+    }
+
+    static double[] zipfCumulative(int n, double skew) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    static int sampleRank(double[] cumulative, double u) {
+        int index = Arrays.binarySearch(cumulative, u);
+        return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+    }
+}
@@ -0,0 +1,47 @@
+package com.booksystem.bench;
+
+import com.booksystem.util.InputValidator;
+
+import java.util.regex.Pattern;
+
+/**
+ * Micro-benchmarks for InputValidator against the regex versions it replaced
+ * (String.matches, which compiles its pattern on every call, and replaceAll),
+ * plus a precompiled-Pattern variant for reference. Inputs are a mix of valid
+ * and invalid names, emails and titles.
+ *
+ * Usage: java -cp bin com.booksystem.bench.ValidatorBenchmark [warmupMs] [measureMs]
+ */
+public class ValidatorBenchmark {
+
+    private static final String NAME_REGEX = "[a-zA-Z0-9 ]+";
+    private static final String EMAIL_REGEX = "^[\\w-\\.]+@[\\w-]+\\.[a-zA-Z]{2,}$";
+    private static final Pattern NAME_PATTERN = Pattern.compile(NAME_REGEX);
+    private static final Pattern EMAIL_PATTERN = Pattern.compile(EMAIL_REGEX);
+
+    private static final String[] NAMES = { "alice", "Bob Smith", "user123", "bad!name", "Jane Doe 2", "x_y" };
+    private static final String[] EMAILS = { "alice@example.com", "bob.smith@mail-host.org", "no-at-sign.com",
+            "user_1@host.io", "a@b.c", "first.last@example.co" };
+    private static final String[] TITLES = { "  Clean Code ", "The  Pragmatic   Programmer", "Effective Java",
+            "Design Patterns Elements of Reusable Object Oriented Software" };
+
+    public static void main(String[] args) throws Exception {
+        long warmupMillis = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        long measureMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        BenchmarkRunner runner = new BenchmarkRunner(warmupMillis, measureMillis);
+
+        runner.run("validateName", "String.matches", i -> NAMES[i % NAMES.length].matches(NAME_REGEX));
+        runner.run("validateName", "Pattern", i -> NAME_PATTERN.matcher(NAMES[i % NAMES.length]).matches());
+        runner.run("validateName", "scanner", i -> InputValidator.isValidName(NAMES[i % NAMES.length]));
+
+        runner.run("validateEmail", "String.matches", i -> EMAILS[i % EMAILS.length].matches(EMAIL_REGEX));
+        runner.run("validateEmail", "Pattern", i -> EMAIL_PATTERN.matcher(EMAILS[i % EMAILS.length]).matches());
+        runner.run("validateEmail", "scanner", i -> InputValidator.isValidEmail(EMAILS[i % EMAILS.length]));
+
+        runner.run("generateSlug", "replaceAll",
+                i -> TITLES[i % TITLES.length].trim().toLowerCase().replaceAll(" +", "-"));
+        runner.run("generateSlug", "scanner", i -> InputValidator.generateSlug(TITLES[i % TITLES.length]));
+
+        System.out.print(runner.report());
+    }
+}
@@ -1,29 +1,229 @@
 package com.booksystem.entity;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Represents an Author who can publish books.
  * Inherits common user properties from the User class.
+ *
+ * The author also keeps what is asked of a catalog as a whole, updated as books
+ * are published and reviewed: the case-folded titles for duplicate checks, the
+ * review count and rating sum over all of its books, and its books ordered by
+ * average rating. Reviews reach it from Book.addReview, so every way a review
+ * is added (service, bulk import, snapshot or log replay) is counted.
  */
 public class Author extends User {
-    // List of books published by the author
+    private static final long serialVersionUID = 1L;
+
+    // List of books published by the author, guarded by the author's lock. A copy-on-write list made
+    // every publish copy the whole catalog; readers now take a copy instead, which is rarer.
     private List<Book> publishedBooks;
 
+    // Case-folded titles of the published books, for duplicate checks without walking the list
+    private transient Set<String> titleKeys;
+
+    // Number and rating sum of the reviews of all of the author's books
+    private transient long ratingSum;
+    private transient int reviewCount;
+
+    // The author's books, best average rating first, and each book's current key in that order
+    private transient TreeMap<BookRank, Book> booksByRating;
+    private transient Map<Book, BookRank> bookRanks;
+
+    // Bumped by every change to the books or their totals, so reindex can tell that its reads went stale
+    private transient int indexVersion;
+
+    // Told about every change to the rating totals, e.g. to reposition the author in a leaderboard
+    private transient volatile RatingListener ratingListener;
+
     // Constructor initializing author with inherited user details
     public Author(String userId, String username, String email) {
         super(userId, username, email);
         this.publishedBooks = new ArrayList<>();
+        reindex();
+    }
+
+    // Told that a review changed the author's rating totals; called holding the author's lock, so it must be quick
+    public interface RatingListener {
+        void ratingChanged(Author author);
+    }
+
+    public void setRatingListener(RatingListener ratingListener) {
+        this.ratingListener = ratingListener;
     }
 
-    // Returns the list of published books
-    public List<Book> getPublishedBooks() {
-        return publishedBooks;
+    // Returns a copy of the published books, in publishing order; books are added with addBook
+    public synchronized List<Book> getPublishedBooks() {
+        return List.copyOf(publishedBooks);
     }
 
-    // Adds a book to the author's list of published books
-    public void addBook(Book book) {
+    // Adds a book to the author's list of published books. Callers that check the title first
+    // (hasTitle) hold the author's lock across both calls.
+    public synchronized void addBook(Book book) {
         publishedBooks.add(book);
+        indexVersion++;
+        titleKeys.add(titleKey(book.getTitle()));
+        if (!bookRanks.containsKey(book)) { // Reviews added before the book was listed have ranked it already
+            rank(book, 0, 0);
+        }
+    }
+
+    // Takes back a book added with addBook that the book service then refused (its ID was taken)
+    public synchronized void removeBook(Book book) {
+        if (!publishedBooks.remove(book)) {
+            return;
+        }
+        indexVersion++;
+        titleKeys.remove(titleKey(book.getTitle()));
+        BookRank rank = bookRanks.remove(book);
+        if (rank != null) {
+            booksByRating.remove(rank);
+            ratingSum -= rank.ratingSum;
+            reviewCount -= rank.ratingCount;
+        }
+    }
+
+    // Returns true if one of the author's books has this title, ignoring case
+    public synchronized boolean hasTitle(String title) {
+        return titleKeys.contains(titleKey(title));
+    }
+
+    public synchronized int getBookCount() {
+        return publishedBooks.size();
+    }
+
+    public synchronized int getReviewCount() {
+        return reviewCount;
+    }
+
+    public synchronized long getRatingSum() {
+        return ratingSum;
+    }
+
+    // Returns the average rating over all reviews of the author's books, or 0 without reviews
+    public synchronized double getAverageRating() {
+        return reviewCount == 0 ? 0.0 : (double) ratingSum / reviewCount;
+    }
+
+    // Returns up to `limit` of the author's books, best average rating first; books without reviews
+    // come last, in ID order
+    public synchronized List<Book> getBooksByRating(int limit) {
+        List<Book> books = new ArrayList<>(Math.max(0, Math.min(limit, booksByRating.size())));
+        for (Book book : booksByRating.values()) {
+            if (books.size() >= limit) {
+                break;
+            }
+            books.add(book);
+        }
+        return books;
+    }
+
+    // Counts a review just added to one of the author's books, whose totals now include it;
+    // called by Book.addReview while holding the book's lock
+    synchronized void reviewAdded(Book book, int rating, long bookRatingSum, int bookRatingCount) {
+        ratingSum += rating;
+        reviewCount++;
+        indexVersion++;
+        rank(book, bookRatingSum, bookRatingCount);
+        RatingListener listener = ratingListener;
+        if (listener != null) {
+            listener.ratingChanged(this);
+        }
+    }
+
+    // Rebuilds the title set, rating totals and rating order from the published books. Java
+    // deserialization leaves them empty, and the books are only complete once the whole graph is read,
+    // so AuthorService calls this from its own readObject. The books' totals are read without the author's
+    // lock, because Book.addReview calls reviewAdded holding the book's lock; if a book or review arrived
+    // meanwhile, the reads start over.
+    public void reindex() {
+        while (true) {
+            List<Book> books;
+            int version;
+            synchronized (this) {
+                books = new ArrayList<>(publishedBooks);
+                version = indexVersion;
+            }
+            long[] sums = new long[books.size()];
+            int[] counts = new int[books.size()];
+            for (int i = 0; i < books.size(); i++) {
+                sums[i] = books.get(i).getRatingSum();
+                counts[i] = books.get(i).getRatingCount();
+            }
+            synchronized (this) {
+                if (indexVersion != version) {
+                    continue;
+                }
+                titleKeys = new HashSet<>();
+                ratingSum = 0;
+                reviewCount = 0;
+                booksByRating = new TreeMap<>();
+                bookRanks = new HashMap<>();
+                for (int i = 0; i < books.size(); i++) {
+                    Book book = books.get(i);
+                    titleKeys.add(titleKey(book.getTitle()));
+                    ratingSum += sums[i];
+                    reviewCount += counts[i];
+                    rank(book, sums[i], counts[i]);
+                }
+                return;
+            }
+        }
+    }
+
+    // Writes a copy of the book list, so a book published meanwhile cannot break the iteration
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("publishedBooks", new ArrayList<>(getPublishedBooks()));
+        out.writeFields();
+    }
+
+    private void rank(Book book, long bookRatingSum, int bookRatingCount) {
+        BookRank rank = new BookRank(bookRatingSum, bookRatingCount, book.getBookId());
+        BookRank previous = bookRanks.put(book, rank);
+        if (previous != null) {
+            booksByRating.remove(previous);
+        }
+        booksByRating.put(rank, book);
+    }
+
+    // Same case folding as the title lookup in BookService
+    private static String titleKey(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    // A book's place in the rating order: average rating descending (compared by cross-multiplication,
+    // with unreviewed books after all others), then book ID
+    private static final class BookRank implements Comparable<BookRank> {
+        private final long ratingSum;
+        private final int ratingCount;
+        private final String bookId;
+
+        BookRank(long ratingSum, int ratingCount, String bookId) {
+            this.ratingSum = ratingSum;
+            this.ratingCount = ratingCount;
+            this.bookId = bookId;
+        }
+
+        @Override
+        public int compareTo(BookRank other) {
+            if ((ratingCount == 0) != (other.ratingCount == 0)) {
+                return ratingCount == 0 ? 1 : -1;
+            }
+            int byRating = Long.compare(other.ratingSum * ratingCount, ratingSum * other.ratingCount);
+            if (byRating != 0) {
+                return byRating;
+            }
+            return bookId.compareTo(other.bookId);
+        }
     }
 }
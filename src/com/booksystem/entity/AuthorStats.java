@@ -0,0 +1,50 @@
+package com.booksystem.entity;
+
+/**
+ * Immutable view of an author's catalog at one moment: number of published
+ * books, number of reviews across them, their average rating and the
+ * Bayesian-weighted rating the author leaderboard is ordered by.
+ */
+public final class AuthorStats {
+    private final String authorId;
+    private final String username;
+    private final int bookCount;
+    private final int reviewCount;
+    private final double averageRating;
+    private final double weightedRating;
+
+    public AuthorStats(String authorId, String username, int bookCount, int reviewCount, double averageRating,
+            double weightedRating) {
+        this.authorId = authorId;
+        this.username = username;
+        this.bookCount = bookCount;
+        this.reviewCount = reviewCount;
+        this.averageRating = averageRating;
+        this.weightedRating = weightedRating;
+    }
+
+    //Getters
+    public String getAuthorId() {
+        return authorId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getBookCount() {
+        return bookCount;
+    }
+
+    public int getReviewCount() {
+        return reviewCount;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    public double getWeightedRating() {
+        return weightedRating;
+    }
+}
@@ -1,7 +1,10 @@
 package com.booksystem.entity;
 
+import com.booksystem.util.ContentStore;
+
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -9,11 +12,20 @@ import java.util.List;
  * Implements Serializable for object persistence.
  */
 public class Book implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String bookId;
     private String title;
-    private String content;
+    private String content; // Inline text, or null once moved to a ContentStore
+    private long contentOffset = -1; // Location of the text in the content store (-1 while inline)
+    private int contentLength; // Length of the stored text in UTF-8 bytes
+    private transient ContentStore contentStore;
     private Author author; // Reference to the author of the book
-    private List<Review> reviews; // List of reviews for this book
+    private ReviewLog reviews; // Reviews for this book in the order they were added
+    private long ratingSum; // Running sum of all review ratings
+    private int ratingCount; // Number of ratings included in ratingSum
+    private int[] ratingHistogram = new int[5]; // Number of reviews per star rating, slot 0 = 1 star
+    private long publishSequence; // Position in the global publishing order, assigned by BookService
 
     // Constructor to initialize book attributes
     public Book(String bookId, String title, String content, Author author) {
@@ -21,19 +33,73 @@ public class Book implements Serializable {
         this.title = title;
         this.content = content;
         this.author = author;
-        this.reviews = new ArrayList<>();
+        this.reviews = ReviewLog.create();
+    }
+
+
+    // Adds a review to the book and updates the running rating aggregate and histogram, and the author's totals.
+    // Throws IllegalArgumentException if the rating is not between 1 and 5.
+    public synchronized void addReview(Review review) {
+        int rating = review.getRating();
+        if (rating < 1 || rating > 5) {
+            throw new IllegalArgumentException("Rating must be between 1 and 5.");
+        }
+        reviews.append(review);
+        ratingSum += rating;
+        ratingCount++;
+        ratingHistogram[rating - 1]++;
+        if (author != null) {
+            author.reviewAdded(this, rating, ratingSum, ratingCount);
+        }
+    }
+
+    // Returns the average rating of the book from the cached aggregate
+    public synchronized double getAverageRating() {
+        if (ratingCount == 0) return 0.0;
+        return (double) ratingSum / ratingCount;
+    }
+
+    public synchronized long getRatingSum() {
+        return ratingSum;
+    }
+
+    public synchronized int getRatingCount() {
+        return ratingCount;
+    }
+
+    // Returns the number of reviews that gave exactly this many stars (1-5)
+    public synchronized int getRatingCount(int stars) {
+        return stars < 1 || stars > 5 ? 0 : ratingHistogram[stars - 1];
+    }
+
+    // Returns a copy of the histogram: element i is the number of (i + 1)-star reviews
+    public synchronized int[] getRatingDistribution() {
+        return ratingHistogram.clone();
     }
 
+    // Returns the median rating (the mean of the two middle ratings for an even count), or 0.0 without reviews
+    public synchronized double getMedianRating() {
+        if (ratingCount == 0) return 0.0;
+        return (starAt((ratingCount - 1) / 2) + starAt(ratingCount / 2)) / 2.0;
+    }
 
-    // Adds a review to the book
-    public void addReview(Review review) {
-        reviews.add(review);
+    // Returns the star value of the rating at this position when all ratings are sorted ascending
+    private int starAt(int position) {
+        int seen = 0;
+        for (int i = 0; i < ratingHistogram.length; i++) {
+            seen += ratingHistogram[i];
+            if (position < seen) {
+                return i + 1;
+            }
+        }
+        return ratingHistogram.length;
     }
 
-    // Calculates and returns the average rating of the book
-    public double getAverageRating() {
-        if (reviews.isEmpty()) return 0.0;
-        return reviews.stream().mapToInt(Review::getRating).average().orElse(0.0);
+    // Returns the Bayesian average: the ratings plus priorWeight imaginary reviews of priorMean stars,
+    // so books with few reviews are pulled toward the prior
+    public synchronized double getBayesianRating(double priorMean, int priorWeight) {
+        if (ratingCount + priorWeight == 0) return 0.0;
+        return (priorMean * priorWeight + ratingSum) / (priorWeight + ratingCount);
     }
     
     //getter
@@ -45,15 +111,78 @@ public class Book implements Serializable {
         return title;
     }
 
+    // Returns the inline text, or reads it from the content store on demand. The location is read under
+    // the book's lock, so a concurrent moveContentTo is seen whole, and the store outside it, so a slow
+    // read does not hold up reviews of the book.
     public String getContent() {
-        return content;
+        String text;
+        ContentStore store;
+        long offset;
+        int length;
+        synchronized (this) {
+            text = content;
+            store = contentStore;
+            offset = contentOffset;
+            length = contentLength;
+        }
+        if (text != null || store == null) {
+            return text;
+        }
+        return store.read(offset, length);
+    }
+
+    // Moves the text into the content store so the book keeps only its location
+    public synchronized void moveContentTo(ContentStore store) throws IOException {
+        if (content == null) {
+            return;
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        contentOffset = store.append(bytes);
+        contentLength = bytes.length;
+        contentStore = store;
+        content = null;
+    }
+
+    // Points the book at text already in the content store (used when loading state)
+    public synchronized void attachContent(ContentStore store, long offset, int length) {
+        this.content = null;
+        this.contentStore = store;
+        this.contentOffset = offset;
+        this.contentLength = length;
+    }
+
+    public synchronized boolean isContentStored() {
+        return contentStore != null;
+    }
+
+    public synchronized long getContentOffset() {
+        return contentOffset;
+    }
+
+    public synchronized int getContentLength() {
+        return contentLength;
+    }
+
+    // Books added later have a larger sequence, across every BookService in the process (0 = not yet added)
+    public long getPublishSequence() {
+        return publishSequence;
+    }
+
+    public void setPublishSequence(long publishSequence) {
+        this.publishSequence = publishSequence;
     }
 
     public Author getAuthor() {
         return author;
     }
 
+    // Returns a read-only view of the reviews in chronological order
     public List<Review> getReviews() {
+        return reviews.asList();
+    }
+
+    // Returns the append-only review store, used for paged newest-first reads
+    public ReviewLog getReviewLog() {
         return reviews;
     }
 }
@@ -0,0 +1,57 @@
+package com.booksystem.entity;
+
+/**
+ * Immutable listing view of a book: identity, author and rating figures, read
+ * together at one point in time. Unlike Book it holds no content, reviews or
+ * references back into the catalog, so a page of summaries can be kept or
+ * passed to another thread without keeping books alive or seeing them change.
+ */
+public final class BookSummary {
+    private final String bookId;
+    private final String title;
+    private final String authorId;
+    private final String authorName;
+    private final int reviewCount;
+    private final double averageRating;
+    private final double weightedRating;
+
+    public BookSummary(String bookId, String title, String authorId, String authorName, int reviewCount,
+            double averageRating, double weightedRating) {
+        this.bookId = bookId;
+        this.title = title;
+        this.authorId = authorId;
+        this.authorName = authorName;
+        this.reviewCount = reviewCount;
+        this.averageRating = averageRating;
+        this.weightedRating = weightedRating;
+    }
+
+    //Getters
+    public String getBookId() {
+        return bookId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthorId() {
+        return authorId;
+    }
+
+    public String getAuthorName() {
+        return authorName;
+    }
+
+    public int getReviewCount() {
+        return reviewCount;
+    }
+
+    public double getAverageRating() {
+        return averageRating;
+    }
+
+    public double getWeightedRating() {
+        return weightedRating;
+    }
+}
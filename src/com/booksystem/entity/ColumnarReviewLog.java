@@ -0,0 +1,285 @@
+package com.booksystem.entity;
+
+import com.booksystem.util.IdAllocator;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * ReviewLog that stores each review field in its own primitive array instead of
+ * keeping Review objects: rating as a byte, timestamp as epoch nanoseconds (UTC),
+ * reviewer as an index into the log's table of distinct users, review IDs in the
+ * form IdAllocator issues (R001, R1234) as the number, and comments as UTF-8
+ * bytes in a per-chunk text arena. Review objects are built on each read.
+ *
+ * Columns live in chunks of up to CHUNK_SIZE entries. The first chunk starts
+ * small and doubles, so books with a handful of reviews stay small; arrays are
+ * only ever replaced by larger copies, so a reader that has seen the published
+ * size always finds its entries.
+ */
+public class ColumnarReviewLog extends ReviewLog {
+    private static final long serialVersionUID = 1L;
+
+    private static final int CHUNK_SIZE = 256;
+    private static final int FIRST_CAPACITY = 4;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    // Column value meaning "see the chunk's overflow array": IDs not in IdAllocator's form,
+    // and timestamps that are null or outside the epoch-nanosecond range (years 1677-2262)
+    private static final long OTHER_ID = -1;
+    private static final long OTHER_TIMESTAMP = Long.MIN_VALUE;
+    private static final int NO_USER = -1;
+
+    private transient volatile Chunk[] chunks;
+    private transient volatile int size;
+
+    // Distinct reviewers in first-seen order; the user column holds positions in this array
+    private transient User[] users;
+    private transient int userCount;
+    // Open-addressing identity hash over users: slot holds position + 1, 0 = empty (used by appends only)
+    private transient int[] userSlots;
+
+    public ColumnarReviewLog() {
+        init();
+    }
+
+    private void init() {
+        chunks = new Chunk[1];
+        users = new User[2];
+        userSlots = new int[4];
+    }
+
+    private static final class Chunk {
+        byte[] ratings;
+        long[] timestamps;
+        int[] users;
+        long[] ids;
+        int[] commentEnds; // End offset in text; stored as -(end + 1) for a null comment
+        byte[] text = new byte[0];
+        String[] otherIds; // Created on first use
+        LocalDateTime[] otherTimestamps; // Created on first use
+
+        Chunk(int capacity) {
+            ratings = new byte[capacity];
+            timestamps = new long[capacity];
+            users = new int[capacity];
+            ids = new long[capacity];
+            commentEnds = new int[capacity];
+        }
+
+        int capacity() {
+            return ratings.length;
+        }
+
+        void grow(int capacity) {
+            ratings = Arrays.copyOf(ratings, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            users = Arrays.copyOf(users, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            commentEnds = Arrays.copyOf(commentEnds, capacity);
+            if (otherIds != null) {
+                otherIds = Arrays.copyOf(otherIds, capacity);
+            }
+            if (otherTimestamps != null) {
+                otherTimestamps = Arrays.copyOf(otherTimestamps, capacity);
+            }
+        }
+
+        int commentStart(int i) {
+            return i == 0 ? 0 : commentEnd(i - 1);
+        }
+
+        int commentEnd(int i) {
+            int end = commentEnds[i];
+            return end < 0 ? -end - 1 : end;
+        }
+    }
+
+    @Override
+    public void append(Review review) {
+        int index = size;
+        int chunkIndex = index / CHUNK_SIZE;
+        int i = index % CHUNK_SIZE;
+        Chunk[] current = chunks;
+        if (chunkIndex == current.length) {
+            current = Arrays.copyOf(current, current.length * 2); // Copies chunk pointers only
+        }
+        Chunk chunk = current[chunkIndex];
+        if (chunk == null) {
+            chunk = new Chunk(chunkIndex == 0 ? FIRST_CAPACITY : CHUNK_SIZE);
+            current[chunkIndex] = chunk;
+        } else if (i == chunk.capacity()) {
+            chunk.grow(Math.min(CHUNK_SIZE, i * 2));
+        }
+
+        chunk.ratings[i] = (byte) review.getRating();
+        chunk.users[i] = userPosition(review.getUser());
+        storeId(chunk, i, review.getReviewId());
+        storeTimestamp(chunk, i, review.getTimestamp());
+        storeComment(chunk, i, review.getComment());
+
+        chunks = current;
+        size = index + 1; // Publishes the review to readers
+    }
+
+    @Override
+    public Review get(int index) {
+        checkIndex(index, size);
+        Chunk chunk = chunks[index / CHUNK_SIZE];
+        int i = index % CHUNK_SIZE;
+        int user = chunk.users[i];
+        return new Review(readId(chunk, i), user == NO_USER ? null : users[user], chunk.ratings[i],
+                readComment(chunk, i), readTimestamp(chunk, i));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Returns the rating at the given position without building a Review
+    public int getRating(int index) {
+        checkIndex(index, size);
+        return chunks[index / CHUNK_SIZE].ratings[index % CHUNK_SIZE];
+    }
+
+    // Review IDs
+
+    private static void storeId(Chunk chunk, int i, String id) {
+        long number = id == null ? OTHER_ID : IdAllocator.Kind.REVIEW.decode(id); // -1 (OTHER_ID) if not in that form
+        chunk.ids[i] = number;
+        if (number == OTHER_ID) {
+            if (chunk.otherIds == null) {
+                chunk.otherIds = new String[chunk.capacity()];
+            }
+            chunk.otherIds[i] = id;
+        }
+    }
+
+    private static String readId(Chunk chunk, int i) {
+        long number = chunk.ids[i];
+        if (number != OTHER_ID) {
+            return IdAllocator.Kind.REVIEW.encode(number);
+        }
+        return chunk.otherIds[i];
+    }
+
+    // Timestamps
+
+    private static void storeTimestamp(Chunk chunk, int i, LocalDateTime timestamp) {
+        long nanos = OTHER_TIMESTAMP;
+        if (timestamp != null) {
+            try {
+                nanos = Math.addExact(Math.multiplyExact(timestamp.toEpochSecond(ZoneOffset.UTC), NANOS_PER_SECOND),
+                        timestamp.getNano());
+            } catch (ArithmeticException e) {
+                nanos = OTHER_TIMESTAMP;
+            }
+        }
+        chunk.timestamps[i] = nanos;
+        if (nanos == OTHER_TIMESTAMP) {
+            if (chunk.otherTimestamps == null) {
+                chunk.otherTimestamps = new LocalDateTime[chunk.capacity()];
+            }
+            chunk.otherTimestamps[i] = timestamp;
+        }
+    }
+
+    private static LocalDateTime readTimestamp(Chunk chunk, int i) {
+        long nanos = chunk.timestamps[i];
+        if (nanos == OTHER_TIMESTAMP) {
+            return chunk.otherTimestamps[i];
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(nanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
+
+    // Comments
+
+    private static void storeComment(Chunk chunk, int i, String comment) {
+        int start = chunk.commentStart(i);
+        if (comment == null) {
+            chunk.commentEnds[i] = -start - 1;
+            return;
+        }
+        byte[] bytes = comment.getBytes(StandardCharsets.UTF_8);
+        int end = start + bytes.length;
+        if (end > chunk.text.length) {
+            chunk.text = Arrays.copyOf(chunk.text, Math.max(Math.max(64, chunk.text.length * 2), end));
+        }
+        System.arraycopy(bytes, 0, chunk.text, start, bytes.length);
+        chunk.commentEnds[i] = end;
+    }
+
+    private static String readComment(Chunk chunk, int i) {
+        if (chunk.commentEnds[i] < 0) {
+            return null;
+        }
+        int start = chunk.commentStart(i);
+        return new String(chunk.text, start, chunk.commentEnds[i] - start, StandardCharsets.UTF_8);
+    }
+
+    // Users
+
+    // Returns the user's position in the users table, adding it on first sight
+    private int userPosition(User user) {
+        if (user == null) {
+            return NO_USER;
+        }
+        int mask = userSlots.length - 1;
+        int slot = System.identityHashCode(user) & mask;
+        while (userSlots[slot] != 0) {
+            if (users[userSlots[slot] - 1] == user) {
+                return userSlots[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (userCount == users.length) {
+            users = Arrays.copyOf(users, userCount * 2);
+        }
+        users[userCount] = user;
+        userSlots[slot] = ++userCount;
+        if (userCount * 2 > userSlots.length) {
+            rehashUsers();
+        }
+        return userCount - 1;
+    }
+
+    private void rehashUsers() {
+        int[] slots = new int[userSlots.length * 2];
+        int mask = slots.length - 1;
+        for (int position = 0; position < userCount; position++) {
+            int slot = System.identityHashCode(users[position]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = position + 1;
+        }
+        userSlots = slots;
+    }
+
+    // Serialized as the sequence of reviews, like ObjectReviewLog
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        int count = size;
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeObject(get(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            append((Review) in.readObject());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.booksystem.entity;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+/**
+ * ReviewLog that keeps the Review objects themselves in fixed-size chunks, so
+ * appending never copies existing reviews.
+ */
+public class ObjectReviewLog extends ReviewLog {
+    private static final long serialVersionUID = 1L;
+
+    private static final int CHUNK_SIZE = 256;
+
+    private transient volatile Review[][] chunks = new Review[1][];
+    private transient volatile int size;
+
+    @Override
+    public void append(Review review) {
+        int index = size;
+        int chunk = index / CHUNK_SIZE;
+        Review[][] current = chunks;
+        if (chunk == current.length) {
+            current = Arrays.copyOf(current, current.length * 2); // Copies chunk pointers only
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new Review[CHUNK_SIZE];
+        }
+        current[chunk][index % CHUNK_SIZE] = review;
+        chunks = current;
+        size = index + 1; // Publishes the review to readers
+    }
+
+    @Override
+    public Review get(int index) {
+        checkIndex(index, size);
+        return chunks[index / CHUNK_SIZE][index % CHUNK_SIZE];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Writes only the stored reviews, not the unused tail of the last chunk
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        int count = size;
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeObject(get(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        chunks = new Review[1][];
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            append((Review) in.readObject());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.booksystem.entity;
+
+import java.util.List;
+
+/**
+ * One page of a cursor-paged listing, together with the cursor for the next
+ * page. The cursor is null when the listing has no more items.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    //Getters
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
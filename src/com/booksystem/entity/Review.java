@@ -8,6 +8,8 @@ import java.time.LocalDateTime;
  * Stores rating, comment, and timestamp.
  */
 public class Review implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String reviewId;
     private User user; // User who submitted the review
     private int rating; // Rating given (e.g., 1 to 5)
@@ -23,6 +25,15 @@ public class Review implements Serializable {
         this.timestamp = LocalDateTime.now(); // Automatically set to current time
     }
 
+    // Constructor used when restoring a saved review with its original timestamp
+    public Review(String reviewId, User user, int rating, String comment, LocalDateTime timestamp) {
+        this.reviewId = reviewId;
+        this.user = user;
+        this.rating = rating;
+        this.comment = comment;
+        this.timestamp = timestamp;
+    }
+
     //Getters
     public String getReviewId() {
         return reviewId;
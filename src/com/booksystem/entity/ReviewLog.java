@@ -0,0 +1,82 @@
+package com.booksystem.entity;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only store of a book's reviews in the order they were added; any
+ * position can be read in O(1). Appends must be serialized by the caller (Book
+ * does this under its own lock); readers need no lock, because the size is
+ * published only after the review has been stored.
+ *
+ * Two layouts are available: ObjectReviewLog keeps the Review objects, and
+ * ColumnarReviewLog keeps each field in primitive arrays and builds Review
+ * objects only when they are read, which takes far less heap for large
+ * catalogs. New books use the layout set with setDefaultLayout (columnar
+ * unless changed).
+ */
+public abstract class ReviewLog implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Layout {
+        OBJECTS, COLUMNAR
+    }
+
+    private static volatile Layout defaultLayout = Layout.COLUMNAR;
+
+    // Chooses the layout used by logs created from now on; existing logs keep theirs
+    public static void setDefaultLayout(Layout layout) {
+        defaultLayout = layout;
+    }
+
+    public static Layout getDefaultLayout() {
+        return defaultLayout;
+    }
+
+    // Creates an empty log in the default layout
+    public static ReviewLog create() {
+        return defaultLayout == Layout.COLUMNAR ? new ColumnarReviewLog() : new ObjectReviewLog();
+    }
+
+    // Appends a review at the end of the log
+    public abstract void append(Review review);
+
+    // Returns the review at the given position (0 = oldest)
+    public abstract Review get(int index);
+
+    public abstract int size();
+
+    // Returns up to limit reviews, newest first, strictly older than position `before`
+    public List<Review> newestFirst(int before, int limit) {
+        int end = Math.min(before, size());
+        int count = Math.max(0, Math.min(limit, end));
+        List<Review> page = new ArrayList<>(count);
+        for (int i = end - 1; i >= end - count; i--) {
+            page.add(get(i));
+        }
+        return page;
+    }
+
+    // Read-only list view in chronological order, sized at the moment it is read
+    public List<Review> asList() {
+        return new AbstractList<Review>() {
+            @Override
+            public Review get(int index) {
+                return ReviewLog.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return ReviewLog.this.size();
+            }
+        };
+    }
+
+    protected void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Review index " + index + " out of range");
+        }
+    }
+}
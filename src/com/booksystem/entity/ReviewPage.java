@@ -0,0 +1,30 @@
+package com.booksystem.entity;
+
+import java.util.List;
+
+/**
+ * One page of a book's reviews, newest first, together with the continuation
+ * token for the next (older) page. The token is null when no older reviews remain.
+ */
+public class ReviewPage {
+    private final List<Review> reviews;
+    private final String nextToken;
+
+    public ReviewPage(List<Review> reviews, String nextToken) {
+        this.reviews = reviews;
+        this.nextToken = nextToken;
+    }
+
+    //Getters
+    public List<Review> getReviews() {
+        return reviews;
+    }
+
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasMore() {
+        return nextToken != null;
+    }
+}
@@ -7,6 +7,8 @@ import java.io.Serializable;
  * Can be extended by Author, Admin, Reader, etc.
  */
 public class User implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private String userId;
     private String username;
     private String email;
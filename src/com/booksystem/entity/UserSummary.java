@@ -0,0 +1,36 @@
+package com.booksystem.entity;
+
+/**
+ * Immutable listing view of a user or author: ID, username and email, plus the
+ * number of published books for authors (0 for readers).
+ */
+public final class UserSummary {
+    private final String userId;
+    private final String username;
+    private final String email;
+    private final int bookCount;
+
+    public UserSummary(String userId, String username, String email, int bookCount) {
+        this.userId = userId;
+        this.username = username;
+        this.email = email;
+        this.bookCount = bookCount;
+    }
+
+    //Getters
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public int getBookCount() {
+        return bookCount;
+    }
+}
@@ -0,0 +1,151 @@
+package com.booksystem.event;
+
+import com.booksystem.metrics.LatencyHistogram;
+import com.booksystem.metrics.Metrics;
+import com.booksystem.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Event bus subscriber that passes events to a handler in batches. A batch is
+ * handed over as soon as it is full, and a partial batch at the end of the
+ * delivery tick that filled it. Only one batch is requested at a time,
+ * so while the handler is busy, new events wait in this subscriber's buffer on
+ * the bus. If the handler throws, the error is logged and the batch is counted
+ * as failed; the subscription stays open.
+ */
+public class BatchingSubscriber implements Flow.Subscriber<DomainEvent> {
+
+    // Time from publishing an event to handing it to a handler
+    private static final LatencyHistogram LAG = Metrics.histogram("event.lag");
+
+    private final String name;
+    private final int batchSize;
+    private final Consumer<List<DomainEvent>> handler;
+
+    // Counted down once the subscription has completed, failed or been cancelled
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // Guarded by this; with several delivery threads, onNext and the end-of-tick flush can run on different ones
+    private Flow.Subscription subscription;
+    private List<DomainEvent> batch;
+
+    // Counters exposed for monitoring
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    BatchingSubscriber(String name, int batchSize, Consumer<List<DomainEvent>> handler) {
+        this.name = name;
+        this.batchSize = batchSize;
+        this.handler = handler;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(batchSize);
+    }
+
+    @Override
+    public synchronized void onNext(DomainEvent event) {
+        batch.add(event);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Log.error("Event subscriber '" + name + "' stopped: ", throwable);
+        done.countDown();
+    }
+
+    // The bus was closed: hands over the last partial batch
+    @Override
+    public synchronized void onComplete() {
+        if (!batch.isEmpty()) {
+            flush();
+        }
+        done.countDown();
+    }
+
+    // Stops receiving events; events not yet handed to the handler are discarded
+    public void cancel() {
+        Flow.Subscription current;
+        synchronized (this) {
+            current = subscription;
+            batch.clear();
+        }
+        if (current != null) {
+            current.cancel();
+        }
+        done.countDown();
+    }
+
+    // Hands the batch to the handler and asks the bus for as many events as it held
+    private void flush() {
+        List<DomainEvent> events = batch;
+        batch = new ArrayList<>(batchSize);
+        if (Metrics.isEnabled()) {
+            long now = System.nanoTime();
+            for (DomainEvent event : events) {
+                LAG.record(now - event.getPublishedNanos());
+            }
+        }
+        try {
+            handler.accept(events);
+        } catch (RuntimeException e) {
+            failedBatches.incrementAndGet();
+            Log.error("Event subscriber '" + name + "' failed on a batch: ", e);
+        }
+        delivered.addAndGet(events.size());
+        batches.incrementAndGet();
+        subscription.request(events.size());
+    }
+
+    // Called by the delivery loop at the end of each tick: hands over the events the tick delivered
+    synchronized void flushPartial() {
+        if (!batch.isEmpty()) {
+            flush();
+        }
+    }
+
+    void countDropped() {
+        dropped.incrementAndGet();
+    }
+
+    // Waits up to the given time for the subscription to end; returns false on timeout
+    boolean awaitDone(long timeoutNanos) throws InterruptedException {
+        return done.await(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+    }
+
+    // Getters for monitoring counters
+    public String getName() {
+        return name;
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getFailedBatchCount() {
+        return failedBatches.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,18 @@
+package com.booksystem.event;
+
+import com.booksystem.entity.Book;
+
+/**
+ * A book was added to the catalog and can be found by title and content search.
+ */
+public class BookPublished extends DomainEvent {
+    private final Book book;
+
+    public BookPublished(Book book) {
+        this.book = book;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+}
@@ -0,0 +1,86 @@
+package com.booksystem.event;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The executor that runs the event bus deliveries. Tasks are queued without
+ * waking any thread, and the delivery threads run everything queued once per
+ * tick. At the end of a tick, they hand the batching subscribers' partial
+ * batches to their handlers.
+ *
+ * SubmissionPublisher starts a delivery task whenever an event reaches a
+ * subscriber that has caught up. With an ordinary thread pool, each such start
+ * wakes a thread, which costs the publishing thread several microseconds per
+ * event. Here the writer only queues the task, and a tick delivers everything
+ * that arrived since the last one.
+ */
+class DeliveryLoop implements Executor {
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final List<BatchingSubscriber> subscribers;
+    private final long tickNanos;
+    private final Thread[] threads;
+    private final CountDownLatch stopped;
+    private volatile boolean running = true;
+
+    // Flushes the partial batches of the given subscribers (a live list) at the end of every tick
+    DeliveryLoop(int threadCount, long tickNanos, List<BatchingSubscriber> subscribers) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Delivery thread count must be at least 1.");
+        }
+        this.tickNanos = tickNanos;
+        this.subscribers = subscribers;
+        this.threads = new Thread[threadCount];
+        this.stopped = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(this::loop, "event-delivery");
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!running) {
+            throw new RejectedExecutionException("Event delivery has stopped.");
+        }
+        tasks.add(task);
+    }
+
+    // Runs one last tick, so nothing queued is left behind, and waits up to the given time for the threads
+    void stop(long timeoutNanos) throws InterruptedException {
+        running = false;
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+        }
+        stopped.await(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+    }
+
+    private void loop() {
+        try {
+            while (true) {
+                boolean last = !running;
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run(); // SubmissionPublisher's tasks catch what the subscribers throw
+                }
+                for (BatchingSubscriber subscriber : subscribers) {
+                    subscriber.flushPartial();
+                }
+                if (last) {
+                    return;
+                }
+                LockSupport.parkNanos(this, tickNanos);
+            }
+        } finally {
+            stopped.countDown();
+        }
+    }
+}
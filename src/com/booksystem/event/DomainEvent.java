@@ -0,0 +1,16 @@
+package com.booksystem.event;
+
+/**
+ * A change made by one of the services, published on the EventBus once the
+ * change is visible to readers. Events only carry references to the entities
+ * involved; subscribers read whatever else they need from them.
+ */
+public abstract class DomainEvent {
+
+    // When the event was created, for measuring how long delivery takes
+    private final long publishedNanos = System.nanoTime();
+
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+}
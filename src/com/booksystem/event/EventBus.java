@@ -0,0 +1,131 @@
+package com.booksystem.event;
+
+import com.booksystem.metrics.Counter;
+import com.booksystem.metrics.Metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-process bus for domain events, built on the JDK's SubmissionPublisher.
+ * The services publish an event after each change. Subscribers receive it on
+ * a small set of delivery threads, which deliver whatever has arrived once per
+ * tick (see DeliveryLoop). Notifications and derived views are therefore
+ * updated off the write path, without waking a thread for every event.
+ *
+ * Each subscriber has its own bounded buffer, so a slow subscriber only fills
+ * its own. The overflow policy decides what a write does when a buffer is
+ * full: drop the event for that subscriber, or wait for room.
+ * BatchingSubscriber hands events to its handler a batch at a time.
+ */
+public class EventBus implements Flow.Publisher<DomainEvent> {
+
+    // What publish does when a subscriber's buffer is full
+    public enum OverflowPolicy {
+        DROP, // Skip the event for that subscriber and count it as dropped
+        BLOCK // Wait until the subscriber makes room
+    }
+
+    // Events published, and deliveries skipped because a buffer was full or the bus closed
+    private static final Counter PUBLISHED = Metrics.counter("event.published");
+    private static final Counter DROPPED = Metrics.counter("event.dropped");
+
+    private final SubmissionPublisher<DomainEvent> publisher;
+    private final OverflowPolicy overflowPolicy;
+    private final DeliveryLoop deliveryLoop;
+
+    // Batching subscribers, whose partial batches are handed over at the end of each tick
+    private final List<BatchingSubscriber> batchingSubscribers = new CopyOnWriteArrayList<>();
+    private volatile boolean open = true;
+
+    // bufferCapacity is per subscriber and rounded up to a power of two. Events reach the subscribers
+    // within about tickMillis of being published, so the buffer must hold a tick's worth of events.
+    public EventBus(int bufferCapacity, int deliveryThreads, long tickMillis, OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+        this.deliveryLoop = new DeliveryLoop(deliveryThreads, TimeUnit.MILLISECONDS.toNanos(tickMillis),
+                batchingSubscribers);
+        this.publisher = new SubmissionPublisher<>(deliveryLoop, bufferCapacity);
+    }
+
+    // Returns true if publishing would reach anyone; services check this before creating an event
+    public boolean hasSubscribers() {
+        return open && publisher.hasSubscribers();
+    }
+
+    // Hands the event to every subscriber's buffer. With DROP, a full buffer skips the event for
+    // that subscriber only; with BLOCK, the caller waits for room.
+    public void publish(DomainEvent event) {
+        if (!open) {
+            DROPPED.increment();
+            return;
+        }
+        try {
+            if (overflowPolicy == OverflowPolicy.BLOCK) {
+                publisher.submit(event);
+            } else {
+                publisher.offer(event, this::drop);
+            }
+            PUBLISHED.increment();
+        } catch (IllegalStateException e) { // Closed after the check above
+            DROPPED.increment();
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super DomainEvent> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    // Subscribes a handler that gets events in batches of up to batchSize: a batch is handed over as
+    // soon as it is full, and whatever a tick delivered is handed over at the end of the tick
+    public BatchingSubscriber subscribe(String name, int batchSize, Consumer<List<DomainEvent>> handler) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        BatchingSubscriber subscriber = new BatchingSubscriber(name, batchSize, handler);
+        batchingSubscribers.add(subscriber);
+        publisher.subscribe(subscriber);
+        return subscriber;
+    }
+
+    public int getSubscriberCount() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    // Events waiting in the fullest subscriber buffer
+    public int getBacklog() {
+        return publisher.estimateMaximumLag();
+    }
+
+    // Stops accepting events, lets the batching subscribers handle what is already buffered for them
+    // (waiting up to 10 seconds in all) and stops the delivery threads
+    public synchronized void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        publisher.close();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try {
+            for (BatchingSubscriber subscriber : batchingSubscribers) {
+                subscriber.awaitDone(deadline - System.nanoTime());
+            }
+            deliveryLoop.stop(deadline - System.nanoTime());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Called by offer for each subscriber whose buffer is full; false means do not retry
+    private boolean drop(Flow.Subscriber<? super DomainEvent> subscriber, DomainEvent event) {
+        DROPPED.increment();
+        if (subscriber instanceof BatchingSubscriber) {
+            ((BatchingSubscriber) subscriber).countDropped();
+        }
+        return false;
+    }
+}
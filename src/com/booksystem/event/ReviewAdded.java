@@ -0,0 +1,33 @@
+package com.booksystem.event;
+
+import com.booksystem.entity.Book;
+import com.booksystem.entity.Review;
+
+/**
+ * A review was added to a book, whose rating totals already include it.
+ * Reviews from a bulk import are marked as imported, so subscribers such as
+ * author notifications can leave them out.
+ */
+public class ReviewAdded extends DomainEvent {
+    private final Book book;
+    private final Review review;
+    private final boolean imported;
+
+    public ReviewAdded(Book book, Review review, boolean imported) {
+        this.book = book;
+        this.review = review;
+        this.imported = imported;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public Review getReview() {
+        return review;
+    }
+
+    public boolean isImported() {
+        return imported;
+    }
+}
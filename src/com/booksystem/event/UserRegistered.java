@@ -0,0 +1,23 @@
+package com.booksystem.event;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.User;
+
+/**
+ * A user or author was registered, on its own or as part of a bulk import.
+ */
+public class UserRegistered extends DomainEvent {
+    private final User user;
+
+    public UserRegistered(User user) {
+        this.user = user;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public boolean isAuthor() {
+        return user instanceof Author;
+    }
+}
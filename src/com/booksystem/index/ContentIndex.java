@@ -0,0 +1,485 @@
+package com.booksystem.index;
+
+import com.booksystem.entity.Book;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over book content for ranked full-text search. Content is
+ * split into lower-cased words (stop words dropped), and each word maps to a
+ * posting list of (document, term frequency) pairs. Documents are numbered in
+ * the order they are indexed, so every list is appended to in ascending order
+ * and stored as varint-encoded gaps: about 2 bytes per posting instead of 8.
+ * Every SKIP_INTERVAL postings a skip entry records where a block starts, so a
+ * query can jump over blocks it does not need.
+ *
+ * Queries match any of their words and are ranked by BM25. Top-K retrieval uses
+ * MaxScore: each list has an upper bound on what it can add to a score, and once
+ * K results are held, lists whose bounds together cannot beat the K-th score no
+ * longer produce candidates and are only probed for documents the others found.
+ *
+ * The index can be saved to a file and loaded back without reading any content.
+ * A loaded index knows its documents by book ID only; add() binds the Book
+ * object to its saved document instead of indexing the content again. Documents
+ * whose book is never added are left out of results and statistics.
+ * A read-write lock lets many searches run while books are being added.
+ */
+public class ContentIndex {
+
+    // BM25 parameters: term frequency saturation and document length normalization
+    public static final double K1 = 1.2;
+    public static final double B = 0.75;
+
+    private static final int FILE_MAGIC = 0x42504649; // "BPFI"
+    private static final int FILE_VERSION = 1;
+
+    private static final int SKIP_INTERVAL = 64;
+    private static final int MAX_TERM_LENGTH = 32;
+    private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    // Words too common to help ranking; leaving them out keeps the longest posting lists out of the index
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "are", "as", "at", "be", "but", "by",
+            "for", "if", "in", "into", "is", "it", "no", "not", "of", "on", "or", "such", "that", "the", "their",
+            "then", "there", "these", "they", "this", "to", "was", "will", "with");
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    // Per document (by number): its book ID, its length in indexed words, and the book once bound
+    private final Map<String, Integer> documents = new HashMap<>();
+    private String[] bookIds = new String[16];
+    private int[] lengths = new int[16];
+    private Book[] books = new Book[16];
+    private int documentCount;
+
+    // Number and total length of documents with a bound book, for BM25's collection statistics
+    private int boundCount;
+    private long boundLength;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Indexes the book's content, or binds the book to its document if a loaded index already has it.
+    // The content is read and tokenized before the write lock is taken.
+    public void add(Book book) {
+        boolean saved;
+        lock.readLock().lock();
+        try {
+            saved = documents.containsKey(book.getBookId());
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<String, int[]> frequencies = new HashMap<>();
+        int length = 0;
+        if (!saved) {
+            for (String term : tokenize(book.getContent())) {
+                frequencies.computeIfAbsent(term, t -> new int[1])[0]++;
+                length++;
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            Integer existing = documents.get(book.getBookId());
+            if (existing != null) {
+                bind(existing, book);
+                return;
+            }
+            int document = newDocument(book.getBookId(), length);
+            for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), t -> new Postings()).add(document, entry.getValue()[0]);
+            }
+            bind(document, book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Attaches a book to its document; called with the write lock held
+    private void bind(int document, Book book) {
+        if (books[document] == null) {
+            boundCount++;
+            boundLength += lengths[document];
+        }
+        books[document] = book;
+    }
+
+    // Assigns the next document number; called with the write lock held
+    private int newDocument(String bookId, int length) {
+        if (documentCount == bookIds.length) {
+            int capacity = documentCount * 2;
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            books = Arrays.copyOf(books, capacity);
+        }
+        int document = documentCount++;
+        bookIds[document] = bookId;
+        lengths[document] = length;
+        documents.put(bookId, document);
+        return document;
+    }
+
+    // Number of books that can be found
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return boundCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Bytes taken by the encoded postings (without skip entries and the term dictionary)
+    public long postingBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Postings list : postings.values()) {
+                bytes += list.size;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the k books whose content best matches any word of the query, best first. Equal scores
+    // keep indexing order.
+    public List<Hit> search(String query, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            return topK(new LinkedHashSet<>(tokenize(query)), k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Hit> topK(Set<String> terms, int k) {
+        if (boundCount == 0) {
+            return new ArrayList<>();
+        }
+        double averageLength = Math.max(1.0, (double) boundLength / boundCount);
+        List<Cursor> cursorList = new ArrayList<>();
+        for (String term : terms) {
+            Postings list = postings.get(term);
+            if (list != null) {
+                cursorList.add(new Cursor(list, idf(Math.min(list.count, boundCount))));
+            }
+        }
+        // Lists in ascending order of their bound; bounds[i] is what lists 0..i can add together at most
+        Cursor[] cursors = cursorList.toArray(new Cursor[0]);
+        Arrays.sort(cursors, (a, b) -> Double.compare(a.upperBound, b.upperBound));
+        double[] bounds = new double[cursors.length];
+        for (int i = 0; i < cursors.length; i++) {
+            bounds[i] = (i == 0 ? 0 : bounds[i - 1]) + cursors[i].upperBound;
+            cursors[i].next();
+        }
+
+        PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(k, 1024), Hit::compareWorstFirst);
+        double threshold = 0;
+        int firstEssential = 0; // Lists before this one cannot lift a document into the top k on their own
+        while (firstEssential < cursors.length) {
+            int candidate = NO_MORE_DOCS;
+            for (int i = firstEssential; i < cursors.length; i++) {
+                candidate = Math.min(candidate, cursors[i].doc);
+            }
+            if (candidate == NO_MORE_DOCS) {
+                break;
+            }
+            double norm = K1 * (1 - B + B * lengths[candidate] / averageLength);
+            double score = 0;
+            for (int i = firstEssential; i < cursors.length; i++) {
+                if (cursors[i].doc == candidate) {
+                    score += cursors[i].score(norm);
+                    cursors[i].next();
+                }
+            }
+            if (books[candidate] == null) {
+                continue; // Saved document whose book has not been added
+            }
+            // Probe the other lists, highest bound first, while they could still make the difference
+            for (int i = firstEssential - 1; i >= 0 && score + bounds[i] > threshold; i--) {
+                cursors[i].advance(candidate);
+                if (cursors[i].doc == candidate) {
+                    score += cursors[i].score(norm);
+                }
+            }
+            if (best.size() < k) {
+                best.add(new Hit(books[candidate], candidate, score));
+            } else if (score > threshold) {
+                best.poll();
+                best.add(new Hit(books[candidate], candidate, score));
+            } else {
+                continue;
+            }
+            if (best.size() == k) {
+                threshold = best.peek().score;
+                while (firstEssential < cursors.length && bounds[firstEssential] <= threshold) {
+                    firstEssential++;
+                }
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort((a, b) -> Hit.compareWorstFirst(b, a));
+        return hits;
+    }
+
+    // Inverse document frequency, in the variant that is never negative
+    private double idf(int documentFrequency) {
+        return Math.log(1 + (boundCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    // Splits text into lower-cased runs of letters and digits, without stop words and overlong runs
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder term = new StringBuilder();
+        for (int i = 0, n = text.length(); i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                term.append(Character.toLowerCase(c));
+                continue;
+            }
+            if (term.length() > 0 && term.length() <= MAX_TERM_LENGTH) {
+                String word = term.toString();
+                if (!STOP_WORDS.contains(word)) {
+                    terms.add(word);
+                }
+            }
+            term.setLength(0);
+        }
+        return terms;
+    }
+
+    // Writes the index to a file; books are recorded by ID
+    public void save(Path file) throws IOException {
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(documentCount);
+            for (int i = 0; i < documentCount; i++) {
+                out.writeUTF(bookIds[i]);
+                out.writeInt(lengths[i]);
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Reads an index written by save(); its documents are found once their books are added
+    public static ContentIndex load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a content index file");
+            }
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Unsupported content index version " + version);
+            }
+            ContentIndex index = new ContentIndex();
+            int documentCount = in.readInt();
+            for (int i = 0; i < documentCount; i++) {
+                index.newDocument(in.readUTF(), in.readInt());
+            }
+            int termCount = in.readInt();
+            for (int i = 0; i < termCount; i++) {
+                index.postings.put(in.readUTF(), Postings.readFrom(in));
+            }
+            return index;
+        }
+    }
+
+    /**
+     * One search result: a book and its BM25 score.
+     */
+    public static final class Hit {
+        private final Book book;
+        private final int document;
+        private final double score;
+
+        Hit(Book book, int document, double score) {
+            this.book = book;
+            this.document = document;
+            this.score = score;
+        }
+
+        public Book getBook() {
+            return book;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        // Lower score first; of equal scores, the later indexed document counts as worse
+        static int compareWorstFirst(Hit a, Hit b) {
+            int byScore = Double.compare(a.score, b.score);
+            return byScore != 0 ? byScore : Integer.compare(b.document, a.document);
+        }
+    }
+
+    // One term's postings: (document gap, frequency) varint pairs, with a skip entry before every
+    // SKIP_INTERVAL-th posting holding the previous document and the byte offset of the posting
+    private static final class Postings {
+        private byte[] data = new byte[8];
+        private int size;
+        private int count;
+        private int lastDoc = -1;
+        private int maxFrequency;
+        private int[] skipDocs = new int[0];
+        private int[] skipOffsets = new int[0];
+        private int skipCount;
+
+        void add(int document, int frequency) {
+            if (count > 0 && count % SKIP_INTERVAL == 0) {
+                if (skipCount == skipDocs.length) {
+                    skipDocs = Arrays.copyOf(skipDocs, Math.max(4, skipCount * 2));
+                    skipOffsets = Arrays.copyOf(skipOffsets, skipDocs.length);
+                }
+                skipDocs[skipCount] = lastDoc;
+                skipOffsets[skipCount] = size;
+                skipCount++;
+            }
+            writeVarInt(document - lastDoc);
+            writeVarInt(frequency);
+            lastDoc = document;
+            count++;
+            maxFrequency = Math.max(maxFrequency, frequency);
+        }
+
+        private void writeVarInt(int value) {
+            if (size + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(count);
+            out.writeInt(lastDoc);
+            out.writeInt(maxFrequency);
+            out.writeInt(size);
+            out.write(data, 0, size);
+            for (int i = 0; i < skipCount; i++) {
+                out.writeInt(skipDocs[i]);
+                out.writeInt(skipOffsets[i]);
+            }
+        }
+
+        static Postings readFrom(DataInputStream in) throws IOException {
+            Postings list = new Postings();
+            list.count = in.readInt();
+            list.lastDoc = in.readInt();
+            list.maxFrequency = in.readInt();
+            list.size = in.readInt();
+            list.data = new byte[list.size];
+            in.readFully(list.data);
+            list.skipCount = list.count == 0 ? 0 : (list.count - 1) / SKIP_INTERVAL;
+            list.skipDocs = new int[list.skipCount];
+            list.skipOffsets = new int[list.skipCount];
+            for (int i = 0; i < list.skipCount; i++) {
+                list.skipDocs[i] = in.readInt();
+                list.skipOffsets[i] = in.readInt();
+            }
+            return list;
+        }
+    }
+
+    // Reads one posting list during a query, decoding it as it goes
+    private static final class Cursor {
+        private final Postings list;
+        private final double idf;
+        private final double upperBound;
+        private int doc = -1;
+        private int frequency;
+        private int read; // Postings decoded so far
+        private int offset; // Byte position of the next posting
+
+        Cursor(Postings list, double idf) {
+            this.list = list;
+            this.idf = idf;
+            // The score grows with the frequency and is highest for the shortest document (length -> 0)
+            this.upperBound = idf * list.maxFrequency * (K1 + 1) / (list.maxFrequency + K1 * (1 - B));
+        }
+
+        // Moves to the next posting, or to NO_MORE_DOCS past the last
+        void next() {
+            if (read == list.count) {
+                doc = NO_MORE_DOCS;
+                return;
+            }
+            doc += readVarInt();
+            frequency = readVarInt();
+            read++;
+        }
+
+        // Moves to the first posting at or after the target document, jumping whole blocks where it can
+        void advance(int target) {
+            if (doc >= target) {
+                return;
+            }
+            int block = Arrays.binarySearch(list.skipDocs, 0, list.skipCount, target - 1);
+            block = block >= 0 ? block : -block - 2; // Last block that starts after a document below the target
+            if (block >= 0 && (block + 1) * SKIP_INTERVAL > read) {
+                doc = list.skipDocs[block];
+                offset = list.skipOffsets[block];
+                read = (block + 1) * SKIP_INTERVAL;
+            }
+            while (doc < target) {
+                next();
+            }
+        }
+
+        double score(double norm) {
+            return idf * frequency * (K1 + 1) / (frequency + norm);
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = list.data[offset++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.booksystem.index;
+
+import com.booksystem.util.IdAllocator;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Map from entity ID to entity, keyed by the number inside the ID. The IDs
+ * IdAllocator hands out are dense, so the values sit in an array indexed by
+ * that number. Looking one up only parses the ID, with no hashing, no string
+ * comparison and no entry object. IDs in any other form (such as the UUIDs of
+ * books created before IDs were numbered) and numbers too far beyond the
+ * values held to keep the array dense go to an ordinary hash map instead.
+ *
+ * Reads take no lock and may run alongside writes. Writes are serialized, and
+ * growing the array copies it. Iteration is weakly consistent, like that of
+ * ConcurrentHashMap. It visits numbered IDs in numeric order, then the others.
+ * Null values are not allowed.
+ */
+public class IdMap<V> extends AbstractMap<String, V> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int MIN_SLOTS = 1024;
+    // Largest array the map grows to (a gigabyte of references); higher numbers go to the hash map
+    private static final int MAX_SLOTS = 1 << 28;
+
+    private final IdAllocator.Kind kind;
+
+    // Value of the ID numbered n at index n; replaced by a larger copy when an ID does not fit
+    private transient volatile AtomicReferenceArray<V> slots;
+    // Values whose IDs have no number, or one too far beyond the array to grow it for
+    private transient ConcurrentHashMap<String, V> others;
+    // Written under the lock only; dense counts the values in the array
+    private transient volatile int size;
+    private transient int dense;
+    private transient Set<Map.Entry<String, V>> entrySet;
+
+    public IdMap(IdAllocator.Kind kind) {
+        this.kind = kind;
+        init();
+    }
+
+    private void init() {
+        slots = new AtomicReferenceArray<>(MIN_SLOTS);
+        others = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public V get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        String id = (String) key;
+        long number = kind.decode(id);
+        if (number > 0) {
+            AtomicReferenceArray<V> current = slots;
+            if (number < current.length()) {
+                V value = current.get((int) number);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        // A numbered ID may still be here if it was stored before the array grew to cover it
+        return others.isEmpty() ? null : others.get(id);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public synchronized V put(String key, V value) {
+        Objects.requireNonNull(value);
+        int index = slotFor(key);
+        V previous;
+        if (index > 0) {
+            previous = slots.getAndSet(index, value);
+            if (previous == null) {
+                dense++;
+                if (!others.isEmpty()) {
+                    previous = others.remove(key);
+                }
+            }
+        } else {
+            previous = others.put(key, value);
+        }
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized V putIfAbsent(String key, V value) {
+        V current = get(key);
+        if (current != null) {
+            return current;
+        }
+        put(key, value);
+        return null;
+    }
+
+    @Override
+    public synchronized V remove(Object key) {
+        V previous = get(key);
+        if (previous == null) {
+            return null;
+        }
+        String id = (String) key;
+        long number = kind.decode(id);
+        AtomicReferenceArray<V> current = slots;
+        if (number > 0 && number < current.length() && current.get((int) number) != null) {
+            current.set((int) number, null);
+            dense--;
+        } else {
+            others.remove(id);
+        }
+        size--;
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        init();
+        size = 0;
+        dense = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        Set<Map.Entry<String, V>> entries = entrySet;
+        if (entries == null) {
+            entries = new EntrySet();
+            entrySet = entries;
+        }
+        return entries;
+    }
+
+    // Returns the array index for the ID, or -1 if the value belongs in the hash map. The array only grows
+    // for numbers below twice the count of values it holds, so it stays at least about half full however
+    // the IDs are chosen (such as U2047, U4095, ... in an import file). Called under the lock.
+    private int slotFor(String id) {
+        long number = kind.decode(id);
+        if (number <= 0) {
+            return -1;
+        }
+        AtomicReferenceArray<V> current = slots;
+        int length = current.length();
+        if (number < length) {
+            return (int) number;
+        }
+        if (number >= MAX_SLOTS || number >= 2L * (dense + 1)) {
+            return -1;
+        }
+        AtomicReferenceArray<V> grown = new AtomicReferenceArray<>((int) Math.min(MAX_SLOTS,
+                Math.max(2L * length, number + 1)));
+        for (int i = 1; i < length; i++) {
+            grown.lazySet(i, current.get(i));
+        }
+        slots = grown; // Volatile write publishes the copied values
+        return (int) number;
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<String, V>> {
+        @Override
+        public Iterator<Map.Entry<String, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    // Walks the array as it was when the iteration started, then the hash map
+    private class EntryIterator implements Iterator<Map.Entry<String, V>> {
+        private final AtomicReferenceArray<V> array = slots;
+        private final Iterator<Map.Entry<String, V>> rest = others.entrySet().iterator();
+        private int index;
+        private V value; // Value at index, or null once the array is done
+        private Map.Entry<String, V> other; // Next hash map entry once the array is done
+        private int lastNumber;
+        private String lastOther;
+
+        EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            while (++index < array.length()) {
+                V candidate = array.get(index);
+                if (candidate != null) {
+                    value = candidate;
+                    return;
+                }
+            }
+            value = null;
+            other = rest.hasNext() ? rest.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return value != null || other != null;
+        }
+
+        @Override
+        public Map.Entry<String, V> next() {
+            Map.Entry<String, V> entry;
+            if (value != null) {
+                entry = new NumberedEntry(index, value);
+                lastNumber = index;
+                lastOther = null;
+            } else if (other != null) {
+                entry = other;
+                lastNumber = 0;
+                lastOther = other.getKey();
+            } else {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (lastNumber > 0) {
+                IdMap.this.remove(kind.encode(lastNumber));
+            } else if (lastOther != null) {
+                IdMap.this.remove(lastOther);
+            } else {
+                throw new IllegalStateException();
+            }
+            lastNumber = 0;
+            lastOther = null;
+        }
+    }
+
+    // Entry of a numbered ID; the key string is only built if asked for
+    private class NumberedEntry implements Map.Entry<String, V> {
+        private final int number;
+        private V value;
+
+        NumberedEntry(int number, V value) {
+            this.number = number;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return kind.encode(number);
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V newValue) {
+            V old = value;
+            put(getKey(), newValue);
+            value = newValue;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return getKey().equals(e.getKey()) && value.equals(e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return getKey().hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + value;
+        }
+    }
+
+    // Written as the IDs and values, ended by a null ID
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (Map.Entry<String, V> entry : entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+        out.writeObject(null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+        String id;
+        while ((id = (String) in.readObject()) != null) {
+            put(id, (V) in.readObject());
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.booksystem.index;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Size-bounded cache for query results with a frequency-aware (W-TinyLFU)
+ * eviction policy. New entries go into a small LRU admission window. When an
+ * entry leaves the window it enters the main LRU region only if it has been
+ * asked for more often than the entry it would evict there. Frequencies are
+ * estimated by a fixed-size count-min sketch whose counters are halved
+ * periodically, so old popularity fades. A scan of one-off keys therefore only
+ * cycles through the window and cannot flush the popular entries.
+ *
+ * Both the number of entries and their total weight (as given by the weigher,
+ * e.g. the number of books in a result) are bounded, and the sketch never
+ * grows, so memory stays bounded however many distinct keys are seen.
+ * All methods are synchronized; callers compute missing values outside the cache.
+ */
+public class QueryCache<K, V> {
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+
+    // Access-ordered LRU regions: the admission window (about 1% of the budget) and the main region
+    private final LinkedHashMap<K, Node<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Node<V>> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final int windowMaxEntries;
+    private final long windowMaxWeight;
+    private long windowWeight;
+    private long mainWeight;
+
+    private final FrequencySketch sketch;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+    private long invalidations;
+
+    private static final class Node<V> {
+        final V value;
+        final int weight;
+
+        Node(V value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    public QueryCache(int maxEntries, long maxWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+        if (maxEntries < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.windowMaxEntries = Math.max(1, maxEntries / 100);
+        this.windowMaxWeight = Math.max(1, maxWeight / 100);
+        this.sketch = new FrequencySketch(maxEntries);
+    }
+
+    // Returns the cached value, or null; either way the key's frequency is counted
+    public V get(K key) {
+        return get(key, value -> true);
+    }
+
+    // Returns the cached value if isCurrent accepts it, or null. A value it rejects is removed
+    // and counted as an invalidation; the lookup counts as a miss.
+    public synchronized V get(K key, Predicate<? super V> isCurrent) {
+        sketch.increment(key.hashCode());
+        Node<V> node = window.get(key);
+        if (node == null) {
+            node = main.get(key);
+        }
+        if (node != null && !isCurrent.test(node.value)) {
+            removeNode(key);
+            invalidations++;
+            node = null;
+        }
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return node.value;
+    }
+
+    // Adds or replaces the value for the key. Values heavier than the admission window
+    // would push everything else out for a single result, so they are not cached.
+    public synchronized void put(K key, V value) {
+        int weight = Math.max(1, weigher.applyAsInt(key, value));
+        removeNode(key);
+        if (weight > Math.max(windowMaxWeight, maxWeight / 16)) {
+            rejections++;
+            return;
+        }
+        window.put(key, new Node<>(value, weight));
+        windowWeight += weight;
+        while (window.size() > windowMaxEntries || windowWeight > windowMaxWeight) {
+            if (window.size() == 1) {
+                break; // A single entry heavier than the window may stay until the next one arrives
+            }
+            Map.Entry<K, Node<V>> eldest = window.entrySet().iterator().next();
+            window.remove(eldest.getKey());
+            windowWeight -= eldest.getValue().weight;
+            admit(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    public synchronized void clear() {
+        window.clear();
+        main.clear();
+        windowWeight = 0;
+        mainWeight = 0;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, rejections, invalidations, window.size() + main.size(),
+                windowWeight + mainWeight);
+    }
+
+    // Moves an entry leaving the window into the main region if it is used more often than the
+    // entries it would displace there; otherwise it is evicted itself
+    private void admit(K key, Node<V> candidate) {
+        long mainMaxWeight = maxWeight - windowMaxWeight;
+        int mainMaxEntries = maxEntries - windowMaxEntries;
+        int candidateFrequency = sketch.frequency(key.hashCode());
+        Iterator<Map.Entry<K, Node<V>>> victims = main.entrySet().iterator();
+        while (main.size() + 1 > mainMaxEntries || mainWeight + candidate.weight > mainMaxWeight) {
+            if (!victims.hasNext()) {
+                evictions++;
+                return;
+            }
+            Map.Entry<K, Node<V>> victim = victims.next();
+            if (candidateFrequency <= sketch.frequency(victim.getKey().hashCode())) {
+                evictions++; // The candidate loses; the main region keeps its entries
+                return;
+            }
+            victims.remove();
+            mainWeight -= victim.getValue().weight;
+            evictions++;
+        }
+        main.put(key, candidate);
+        mainWeight += candidate.weight;
+    }
+
+    private boolean removeNode(K key) {
+        Node<V> node = window.remove(key);
+        if (node != null) {
+            windowWeight -= node.weight;
+            return true;
+        }
+        node = main.remove(key);
+        if (node != null) {
+            mainWeight -= node.weight;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Count-min sketch of key frequencies with four rows of 4-bit counters packed
+     * into longs. After a sample of ten increments per cache entry every counter is
+     * halved, so the estimate follows recent popularity.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+                0xcbf29ce484222325L };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table; // 16 counters per long
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxEntries) {
+            int counters = Integer.highestOneBit((int) Math.min(1 << 24, Math.max(64, 4L * maxEntries)));
+            table = new long[counters / 16];
+            mask = counters - 1;
+            sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * maxEntries);
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                added |= incrementAt(index(hash, row));
+            }
+            if (added && ++additions >= sampleSize) {
+                halve();
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, counterAt(index(hash, row)));
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private int counterAt(int index) {
+            return (int) (table[index >>> 4] >>> ((index & 15) << 2)) & 0xf;
+        }
+
+        private boolean incrementAt(int index) {
+            int shift = (index & 15) << 2;
+            if (((table[index >>> 4] >>> shift) & 0xf) == 0xf) {
+                return false; // Saturated
+            }
+            table[index >>> 4] += 1L << shift;
+            return true;
+        }
+
+        private void halve() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+    }
+
+    /**
+     * Point-in-time counters of a QueryCache. A lookup that found an out-of-date
+     * entry is counted as a miss and an invalidation.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long rejections;
+        private final long invalidations;
+        private final int size;
+        private final long weight;
+
+        Stats(long hits, long misses, long evictions, long rejections, long invalidations, int size, long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.rejections = rejections;
+            this.invalidations = invalidations;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        // Entries dropped to stay within the size bounds, including candidates refused by the admission policy
+        public long getEvictions() {
+            return evictions;
+        }
+
+        // Values too heavy to be cached at all
+        public long getRejections() {
+            return rejections;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d rejected, %d invalidated, "
+                    + "%d entries, weight %d", hits, misses, getHitRate() * 100, evictions, rejections, invalidations,
+                    size, weight);
+        }
+    }
+}
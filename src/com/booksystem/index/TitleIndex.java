@@ -0,0 +1,262 @@
+package com.booksystem.index;
+
+import com.booksystem.entity.Book;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigram index over normalized (lower-cased) book titles. Each book is given a
+ * dense ordinal in insertion order, and every trigram of its title maps to a
+ * sorted posting list of ordinals. Substring queries intersect the posting lists
+ * of the query's trigrams and verify the few remaining candidates, so lookups
+ * no longer scan the whole catalog. Results are returned in insertion order.
+ * A read-write lock lets many searches run while books are being added.
+ *
+ * When a query has many candidates to verify (a short term that has to scan
+ * every title, or a very common trigram), the candidates are split into
+ * segments that are checked in parallel on a ForkJoinPool; segment results are
+ * concatenated in order, so the output is the same as the sequential scan.
+ */
+public class TitleIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int GRAM = 3;
+
+    // Books and their normalized titles, indexed by ordinal
+    private final List<Book> books = new ArrayList<>();
+    private final List<String> normalizedTitles = new ArrayList<>();
+
+    // Trigram -> ascending list of book ordinals whose title contains it
+    private final Map<String, IntList> postings = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Segments are never smaller than this, so a task always has enough work to pay for its scheduling
+    private static final int MIN_SEGMENT = 4096;
+
+    // Pool for parallel verification and the candidate count from which it is used (null = always sequential)
+    private transient volatile ForkJoinPool pool;
+    private transient volatile int parallelThreshold;
+
+    // Lets queries with at least threshold candidates run on the pool; a null pool turns parallel queries off
+    public void setParallelism(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.parallelThreshold = threshold;
+    }
+
+    // Adds a book to the index; each distinct trigram of its title gets the new ordinal
+    public void add(Book book) {
+        String normalized = normalize(book.getTitle());
+        lock.writeLock().lock();
+        try {
+            int ordinal = books.size();
+            books.add(book);
+            normalizedTitles.add(normalized);
+
+            for (int i = 0; i + GRAM <= normalized.length(); i++) {
+                IntList list = postings.computeIfAbsent(normalized.substring(i, i + GRAM), k -> new IntList());
+                // Ordinals only grow, so a repeated trigram within a title is always the last entry
+                if (list.size == 0 || list.last() != ordinal) {
+                    list.add(ordinal);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return books.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns a page of books whose title contains the given phrase (case-insensitive)
+    public List<Book> findContaining(String phrase, int offset, int limit) {
+        return findLocked(new String[] { normalize(phrase) }, offset, limit);
+    }
+
+    // Returns a page of books whose title contains every whitespace-separated token of the query
+    public List<Book> findContainingAll(String query, int offset, int limit) {
+        return findLocked(terms(query), offset, limit);
+    }
+
+    // Splits a query into the normalized terms findContainingAll requires
+    public static String[] terms(String query) {
+        String normalized = normalize(query).trim();
+        return normalized.isEmpty() ? new String[] { "" } : normalized.split("\\s+");
+    }
+
+    private List<Book> findLocked(String[] terms, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return find(terms, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Intersects the posting lists of every trigram in the terms, then verifies candidates
+    // against the stored normalized titles and collects the requested page
+    private List<Book> find(String[] terms, int offset, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<IntList> lists = new ArrayList<>();
+        for (String term : terms) {
+            for (int i = 0; i + GRAM <= term.length(); i++) {
+                IntList list = postings.get(term.substring(i, i + GRAM));
+                if (list == null) {
+                    return Collections.emptyList(); // A trigram nobody has means no match at all
+                }
+                lists.add(list);
+            }
+        }
+
+        // Drive the intersection from the shortest list and probe the others; with no list
+        // (every term shorter than a trigram) every title is a candidate
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        Candidates candidates = new Candidates(terms, lists);
+        int wanted = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        ForkJoinPool queryPool = pool;
+        boolean parallel = queryPool != null && queryPool.getParallelism() > 1
+                && candidates.count >= Math.max(parallelThreshold, 2 * MIN_SEGMENT);
+        int segment = parallel ? Math.max(MIN_SEGMENT, candidates.count / (queryPool.getParallelism() * 4)) : 0;
+
+        // The first segment (or everything, when sequential) is checked here, so a page that fills
+        // early never waits for the pool
+        List<Book> matches = new ArrayList<>();
+        int end = parallel ? segment : candidates.count;
+        for (int i = 0; i < end && matches.size() < wanted; i++) {
+            int ordinal = candidates.match(i);
+            if (ordinal >= 0) {
+                matches.add(books.get(ordinal));
+            }
+        }
+        if (parallel && matches.size() < wanted) {
+            matches.addAll(queryPool.invoke(new Segment(candidates, end, candidates.count, segment, wanted - matches.size())));
+        }
+        if (offset >= matches.size()) {
+            return Collections.emptyList();
+        }
+        return offset == 0 ? matches : new ArrayList<>(matches.subList(offset, matches.size()));
+    }
+
+    // The candidate ordinals of one query: positions in the shortest posting list, or all ordinals
+    private final class Candidates {
+        final String[] terms;
+        final List<IntList> lists;
+        final int count;
+
+        Candidates(String[] terms, List<IntList> lists) {
+            this.terms = terms;
+            this.lists = lists;
+            this.count = lists.isEmpty() ? books.size() : lists.get(0).size;
+        }
+
+        // Returns the ordinal of the i-th candidate if its title matches, otherwise -1
+        int match(int i) {
+            int ordinal = lists.isEmpty() ? i : lists.get(0).values[i];
+            for (int j = 1; j < lists.size(); j++) {
+                if (!lists.get(j).contains(ordinal)) {
+                    return -1;
+                }
+            }
+            return matchesAll(normalizedTitles.get(ordinal), terms) ? ordinal : -1;
+        }
+    }
+
+    // Verifies candidates [from, to) by splitting them in halves down to the segment size; each piece keeps
+    // at most `wanted` matches, since that many from earlier pieces already fill the page
+    private final class Segment extends RecursiveTask<List<Book>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Candidates candidates;
+        private final int from;
+        private final int to;
+        private final int segment;
+        private final int wanted;
+
+        Segment(Candidates candidates, int from, int to, int segment, int wanted) {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.segment = segment;
+            this.wanted = wanted;
+        }
+
+        @Override
+        protected List<Book> compute() {
+            if (to - from <= segment) {
+                List<Book> matches = new ArrayList<>();
+                for (int i = from; i < to && matches.size() < wanted; i++) {
+                    int ordinal = candidates.match(i);
+                    if (ordinal >= 0) {
+                        matches.add(books.get(ordinal));
+                    }
+                }
+                return matches;
+            }
+            int middle = (from + to) >>> 1;
+            Segment right = new Segment(candidates, middle, to, segment, wanted);
+            right.fork();
+            List<Book> matches = new Segment(candidates, from, middle, segment, wanted).compute();
+            List<Book> rightMatches = right.join();
+            if (matches.size() < wanted) {
+                matches.addAll(rightMatches.subList(0, Math.min(rightMatches.size(), wanted - matches.size())));
+            }
+            return matches;
+        }
+    }
+
+    private static boolean matchesAll(String title, String[] terms) {
+        for (String term : terms) {
+            if (!title.contains(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Normalizes a title or query for indexing; matching is case-insensitive in every default locale
+    public static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    // Growable, sorted int array used for posting lists to avoid boxing ordinals
+    private static class IntList implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int last() {
+            return values[size - 1];
+        }
+
+        boolean contains(int value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.booksystem.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version stamps that tell a cached title search whether a book added since
+ * could be part of its result. Every added title bumps a counter for each of its
+ * 1-, 2- and 3-character substrings (hashed into a fixed number of buckets). A
+ * title that contains a query term also contains all of the term's grams (its
+ * trigrams, or the whole term when it is shorter), so if any one of the query's
+ * counters is unchanged, no matching book was added. Bucket collisions can only
+ * cause extra misses, never stale results.
+ *
+ * Callers take a stamp before running the query and bump after the book is in
+ * the index, so a book added while a query runs is either seen by the query or
+ * makes its stamp out of date.
+ */
+public class TitleVersions {
+
+    private static final int BUCKETS = 1 << 14;
+
+    private final AtomicLongArray versions = new AtomicLongArray(BUCKETS);
+    // Bumped for every title; stamps of queries without grams (an empty term) use it
+    private final AtomicLong allTitles = new AtomicLong();
+
+    // Records that a book with this title was added
+    public void bump(String title) {
+        String normalized = TitleIndex.normalize(title);
+        int length = normalized.length();
+        for (int gram = 1; gram <= 3; gram++) {
+            for (int i = 0; i + gram <= length; i++) {
+                versions.incrementAndGet(bucket(normalized, i, i + gram));
+            }
+        }
+        allTitles.incrementAndGet();
+    }
+
+    // Takes a stamp for a query whose results are the titles containing every one of the terms
+    public Stamp stamp(String... terms) {
+        List<Integer> buckets = new ArrayList<>();
+        for (String term : terms) {
+            String normalized = TitleIndex.normalize(term);
+            if (normalized.length() <= 3) {
+                if (!normalized.isEmpty()) {
+                    buckets.add(bucket(normalized, 0, normalized.length()));
+                }
+            } else {
+                for (int i = 0; i + 3 <= normalized.length(); i++) {
+                    buckets.add(bucket(normalized, i, i + 3));
+                }
+            }
+        }
+        if (buckets.isEmpty()) {
+            return new Stamp(null, new long[] { allTitles.get() });
+        }
+        int[] indexes = new int[buckets.size()];
+        long[] seen = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = buckets.get(i);
+            seen[i] = versions.get(indexes[i]);
+        }
+        return new Stamp(indexes, seen);
+    }
+
+    // Bucket of normalized.substring(from, to), hashed without creating the substring
+    private static int bucket(String normalized, int from, int to) {
+        int hash = to - from;
+        for (int i = from; i < to; i++) {
+            hash = hash * 31 + normalized.charAt(i);
+        }
+        hash *= 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (BUCKETS - 1);
+    }
+
+    /**
+     * The counters a query depended on, as they were when it ran.
+     */
+    public final class Stamp {
+        private final int[] buckets; // null: the query depends on every title
+        private final long[] seen;
+
+        private Stamp(int[] buckets, long[] seen) {
+            this.buckets = buckets;
+            this.seen = seen;
+        }
+
+        // True while no title containing all of the query's grams can have been added since
+        public boolean isCurrent() {
+            if (buckets == null) {
+                return allTitles.get() == seen[0];
+            }
+            for (int i = 0; i < buckets.length; i++) {
+                if (versions.get(buckets[i]) == seen[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
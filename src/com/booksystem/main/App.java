@@ -1,12 +1,28 @@
 package com.booksystem.main;
 
 import com.booksystem.entity.*;
+import com.booksystem.event.EventBus;
+import com.booksystem.index.ContentIndex;
+import com.booksystem.index.QueryCache;
 import com.booksystem.exception.*;
+import com.booksystem.metrics.Metrics;
+import com.booksystem.server.ApiServer;
 import com.booksystem.service.*;
-import com.booksystem.thread.NotificationThread;
+import com.booksystem.thread.NotificationDispatcher;
 import com.booksystem.util.*;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -23,40 +39,128 @@ public class App {
 
 	// Service instances managing users, authors, books, and reviews respectively
 	private static UserService userService = new UserService();
-	private static AuthorService authorService = new AuthorService();
 	private static BookService bookService = new BookService();
-	private static ReviewService reviewService = new ReviewService();
+	private static AuthorService authorService = new AuthorService(bookService);
+	private static ReviewService reviewService = new ReviewService(bookService);
 
-	// Filename for serialized application state persistence
-	private static final String DATA_FILE = "app_state.ser";
+	// Answers the catalog-wide book queries: the book service, or the shard router when started with --shards
+	private static BookCatalog catalog = bookService;
 
-	// Counters to generate unique IDs for users and authors
-	private static int userCounter = 1;
-	private static int authorCounter = 1;
+	// The state when started with --shards N, null otherwise; books and reviews are then spread over N shards
+	// and systemData, bookService and reviewService are unused
+	private static ShardedState shardedData;
+
+	// Source of new IDs, shared by the services of whichever state is active
+	private static IdAllocator idAllocator;
+
+	// Sends author notifications for new reviews, coalescing bursts per author
+	private static final NotificationDispatcher notificationDispatcher = new NotificationDispatcher(10_000, 2000, 2,
+			NotificationDispatcher.OverflowPolicy.DROP);
+
+	// Carries the services' change events to their subscribers, delivering every 10 ms; the dispatcher
+	// hears of new reviews through it in batches of up to 256
+	private static final EventBus eventBus = new EventBus(8192, 1, 10, EventBus.OverflowPolicy.DROP);
+	static {
+		eventBus.subscribe("notifications", 256, notificationDispatcher::submitReviews);
+	}
+
+	// Filename for the binary application state snapshot
+	private static final String DATA_FILE = "app_state.snap";
+
+	// Name the sharded snapshot files start with: the users and authors go to DATA_FILE, each shard's books
+	// and reviews to app_state.shard-<n>.snap
+	private static final String SHARDED_BASE_NAME = "app_state";
+
+	// Java-serialized state file from earlier versions, converted on first start
+	private static final String LEGACY_DATA_FILE = "app_state.ser";
+
+	// Operation log recording every change since the last snapshot, and the size at which
+	// it is compacted into a new snapshot
+	private static final String LOG_FILE = "app_state.wal";
+	private static final long LOG_COMPACT_BYTES = 16 * 1024 * 1024;
+	private static OperationLog operationLog;
+
+	// In sharded mode operationLog records the users and authors, and each shard logs to its own file
+	private static List<OperationLog> shardLogs = List.of();
+
+	// Memory-mapped file holding book content, so book text stays off the heap and out of the snapshot
+	private static final String CONTENT_FILE = "app_content.dat";
+	private static ContentStore contentStore;
+
+	// HTTP API settings for --server mode: default port, worker threads when virtual threads are
+	// unavailable, and how long a stop waits for requests in progress
+	private static final int DEFAULT_SERVER_PORT = 8080;
+	private static final int SERVER_WORKER_THREADS = 64;
+	private static final int SERVER_SHUTDOWN_GRACE_SECONDS = 10;
+
+	// Number of reviews shown per page when viewing a book's reviews
+	private static final int REVIEW_PAGE_SIZE = 10;
+
+	// Number of books, users or authors shown per page of a listing
+	private static final int LIST_PAGE_SIZE = 50;
+
+	// Number of best matches shown for a content search
+	private static final int CONTENT_RESULTS = 10;
 
 	/**
 	 * Entry point of the application. Loads saved application state if available;
 	 * otherwise initializes fresh services. Presents a menu to the user repeatedly
-	 * until exit.
+	 * until exit, or serves the HTTP API with --server [port]. With --shards N the
+	 * books and reviews are partitioned across N shards (see ShardRouter).
 	 */
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
+		boolean server = false;
+		int port = DEFAULT_SERVER_PORT;
+		int shards = 0;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--server")) {
+				server = true;
+				if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+					port = Integer.parseInt(args[++i]);
+				}
+			} else if (args[i].equals("--shards") && i + 1 < args.length) {
+				shards = Integer.parseInt(args[++i]);
+				if (shards < 1) {
+					System.out.println("The number of shards must be at least 1.");
+					return;
+				}
+			} else {
+				System.out.println("Usage: App [--server [port]] [--shards N]");
+				return;
+			}
+		}
+
 		System.out.println("Welcome to the Online Book Publishing & Review System");
+		Metrics.registerMBean();
+		registerGauges();
 
-		// Try loading saved state, or initialize fresh if null
-		Object loaded = DataStore.loadState(DATA_FILE);
-		if (loaded == null) {
-			systemData = new ApplicationState(); // Initialize fresh with new services
-			System.out.println("Starting with a fresh system.");
+		try {
+			contentStore = new ContentStore(Paths.get(CONTENT_FILE));
+		} catch (IOException e) {
+			System.out.println("Content store unavailable, keeping book content in memory: " + e.getMessage());
+		}
+
+		// Try loading saved state (converting an older serialized file if that is all there is),
+		// or initialize fresh if null
+		if (!new File(DATA_FILE).exists() && new File(LEGACY_DATA_FILE).exists()) {
+			SnapshotConverter.convert(LEGACY_DATA_FILE, DATA_FILE);
+		}
+		if (shards > 0) {
+			startSharded(shards);
+		} else if (DataStore.isSharded(SHARDED_BASE_NAME, LOG_FILE)) {
+			System.out.println("The saved state is sharded; start with --shards N to load it.");
+			return;
 		} else {
-			systemData = (ApplicationState) loaded;
-			System.out.println("System data restored from saved state.\n");
+			startPlain();
+		}
+
+		if (server) {
+			runServer(port);
+			return;
 		}
-		userService = systemData.userService;
-		authorService = systemData.authorService;
-		bookService = systemData.bookService;
-		reviewService = systemData.reviewService;
 
 		while (true) {
+			Log.flush(); // Messages from the last action appear before the menu
 			showMenu();
 			int choice = getIntInput("Enter choice: ");
 			try {
@@ -73,20 +177,242 @@ public class App {
 				case 10 -> loadAppState();
 				case 11 -> getAllUsers();
 				case 12 -> getIntAllAuthors();
+				case 13 -> bulkImport();
+				case 14 -> System.out.print(Metrics.dump());
+				case 15 -> searchContent();
+				case 16 -> authorLeaderboard();
+				case 17 -> authorBooksByRating();
 				case 0 -> {
-					saveAppState();
+					shutdown();
 					System.out.println("Exiting. Goodbye!");
 					return;
 				}
 				default -> System.out.println("Invalid choice.");
 				}
 
+				// Fold the log into a snapshot once it grows large, keeping startup replay short
+				if (logBytes() > LOG_COMPACT_BYTES) {
+					saveAppState();
+				}
 			} catch (Exception e) {
 				System.out.println("Error: " + e.getMessage());
 			}
 		}
 	}
 
+	// Loads the snapshot and replays the operation log on top of it, then logs new changes
+	private static void startPlain() {
+		ApplicationState loaded = DataStore.loadSnapshot(DATA_FILE, contentStore);
+		Log.flush();
+		if (loaded == null) {
+			loaded = new ApplicationState(); // Initialize fresh with new services
+			loaded.setContentStore(contentStore);
+			System.out.println("Starting with a fresh system.");
+		} else {
+			System.out.println("System data restored from saved state.\n");
+		}
+
+		// Re-apply changes logged since the snapshot, then keep logging new ones
+		DataStore.recover(loaded, LOG_FILE);
+		Log.flush();
+		try {
+			operationLog = new OperationLog(Paths.get(LOG_FILE), 10, true);
+		} catch (IOException e) {
+			System.out.println("Operation log unavailable, changes are saved only on exit: " + e.getMessage());
+		}
+		useState(loaded);
+	}
+
+	// Loads the sharded snapshot and replays the directory and shard logs on top of it, then logs new changes
+	// to one log per shard. A plain snapshot and log load as well, their books spread over the shards.
+	private static void startSharded(int shards) {
+		ShardedState loaded = DataStore.loadSharded(SHARDED_BASE_NAME, shards, contentStore);
+		Log.flush();
+		if (loaded == null) {
+			loaded = new ShardedState(shards);
+			loaded.setContentStore(contentStore);
+			System.out.println("Starting with a fresh system (" + shards + " shards).");
+		} else {
+			System.out.println("System data restored from saved state (" + shards + " shards).\n");
+		}
+
+		boolean logsMatch = DataStore.recoverSharded(loaded, LOG_FILE);
+		Log.flush();
+		openShardLogs(shards);
+		useShardedState(loaded);
+		if (!logsMatch) {
+			saveAppState(); // Logged with another shard count; start the new logs from a snapshot
+		}
+	}
+
+	// Opens the directory log and one log per shard; without all of them changes are saved only on exit
+	private static void openShardLogs(int shards) {
+		List<OperationLog> logs = new ArrayList<>(shards);
+		try {
+			operationLog = new OperationLog(Paths.get(LOG_FILE), 10, true);
+			for (int i = 0; i < shards; i++) {
+				logs.add(new OperationLog(Paths.get(DataStore.shardLogFile(LOG_FILE, i)), 10, true));
+			}
+			shardLogs = logs;
+		} catch (IOException e) {
+			System.out.println("Operation log unavailable, changes are saved only on exit: " + e.getMessage());
+			try {
+				closeLogs(operationLog, logs);
+			} catch (IOException closeError) {
+				// Nothing was logged to them yet
+			}
+			operationLog = null;
+		}
+	}
+
+	// Serves the HTTP API instead of the menu. On Ctrl+C or SIGTERM the server stops accepting
+	// connections, lets requests in progress finish, and the state is saved as on menu exit.
+	private static void runServer(int port) throws IOException {
+		ApiServer server = shardedData != null
+				? new ApiServer(shardedData, port, SERVER_WORKER_THREADS, ApiServer.DEFAULT_REQUEST_TIMEOUT_MILLIS)
+				: new ApiServer(systemData, port, SERVER_WORKER_THREADS, ApiServer.DEFAULT_REQUEST_TIMEOUT_MILLIS);
+
+		// Without the menu loop, compaction is checked on a timer
+		ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "log-compaction");
+			thread.setDaemon(true);
+			return thread;
+		});
+		maintenance.scheduleWithFixedDelay(() -> {
+			if (logBytes() > LOG_COMPACT_BYTES) {
+				saveAppState();
+			}
+		}, 30, 30, TimeUnit.SECONDS);
+
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			System.out.println("Stopping API server...");
+			server.stop(SERVER_SHUTDOWN_GRACE_SECONDS);
+			maintenance.shutdownNow();
+			try {
+				shutdown();
+				System.out.println("Server stopped, state saved.");
+			} catch (IOException e) {
+				System.out.println("Error while shutting down: " + e.getMessage());
+			}
+		}, "server-shutdown"));
+
+		server.start();
+		System.out.println("API server listening on port " + server.getPort() + " (Ctrl+C to stop)");
+	}
+
+	// Saves the state and closes the logs, content store, event bus and notification dispatcher
+	private static void shutdown() throws IOException {
+		saveAppState();
+		closeLogs(operationLog, shardLogs);
+		if (shardedData != null) {
+			shardedData.router.shutdown();
+		}
+		if (contentStore != null) {
+			contentStore.close();
+		}
+		eventBus.close(); // Hands the events still buffered to the dispatcher first
+		notificationDispatcher.shutdown(); // Sends any notifications still being coalesced
+		Log.flush();
+	}
+
+	// Gauges read the services through the static fields, so they follow the state after a reload; in sharded
+	// mode the book service gauges add up the shards
+	private static void registerGauges() {
+		Metrics.gauge("users", () -> userService.getAllUsers().size());
+		Metrics.gauge("authors", () -> authorService.getAllAuthors().size());
+		Metrics.gauge("books", () -> catalog.getAllBooks().size());
+		Metrics.gauge("cache.entries", () -> sumOverBookServices(shard -> {
+			QueryCache.Stats stats = shard.getResultCacheStats();
+			return stats == null ? 0 : stats.getSize();
+		}));
+		Metrics.gauge("cache.hits", () -> sumOverBookServices(shard -> {
+			QueryCache.Stats stats = shard.getResultCacheStats();
+			return stats == null ? 0 : stats.getHits();
+		}));
+		Metrics.gauge("cache.misses", () -> sumOverBookServices(shard -> {
+			QueryCache.Stats stats = shard.getResultCacheStats();
+			return stats == null ? 0 : stats.getMisses();
+		}));
+		Metrics.gauge("contentIndex.terms", () -> sumOverBookServices(shard -> shard.getContentIndex().termCount()));
+		Metrics.gauge("contentIndex.postingBytes",
+				() -> sumOverBookServices(shard -> shard.getContentIndex().postingBytes()));
+		Metrics.gauge("notifications.queueDepth", notificationDispatcher::getQueueDepth);
+		Metrics.gauge("notifications.dropped", notificationDispatcher::getDroppedCount);
+		Metrics.gauge("notifications.sent", notificationDispatcher::getNotificationsSentCount);
+		Metrics.gauge("events.subscribers", eventBus::getSubscriberCount);
+		Metrics.gauge("events.backlog", eventBus::getBacklog);
+		Metrics.gauge("operationLog.bytes", App::logBytes);
+	}
+
+	private static long sumOverBookServices(ToLongFunction<BookService> value) {
+		if (shardedData == null) {
+			return value.applyAsLong(bookService);
+		}
+		long sum = 0;
+		for (int i = 0; i < shardedData.getShardCount(); i++) {
+			sum += value.applyAsLong(shardedData.router.getBookService(i));
+		}
+		return sum;
+	}
+
+	// Size of the operation logs, which are compacted into a snapshot once it passes LOG_COMPACT_BYTES
+	private static long logBytes() {
+		if (operationLog == null) {
+			return 0;
+		}
+		long bytes = operationLog.size();
+		for (OperationLog log : shardLogs) {
+			bytes += log.size();
+		}
+		return bytes;
+	}
+
+	private static void closeLogs(OperationLog directoryLog, List<OperationLog> logs) throws IOException {
+		if (directoryLog != null) {
+			directoryLog.close();
+		}
+		for (OperationLog log : logs) {
+			log.close();
+		}
+	}
+
+	// Makes the given state the active one and attaches the runtime-only event bus, content store and operation log
+	private static void useState(ApplicationState state) {
+		systemData = state;
+		userService = state.userService;
+		authorService = state.authorService;
+		bookService = state.bookService;
+		reviewService = state.reviewService;
+		catalog = bookService;
+		idAllocator = state.idAllocator;
+		state.setEventBus(eventBus);
+		state.setContentStore(contentStore);
+		state.setOperationLog(operationLog);
+	}
+
+	// Makes the given sharded state the active one, as useState does for a plain one
+	private static void useShardedState(ShardedState state) {
+		ShardedState previous = shardedData;
+		shardedData = state;
+		userService = state.userService;
+		authorService = state.authorService;
+		catalog = state.router;
+		idAllocator = state.idAllocator;
+		state.setEventBus(eventBus);
+		state.setContentStore(contentStore);
+		if (operationLog != null) {
+			state.setOperationLogs(operationLog, shardLogs);
+		}
+		if (previous != null) {
+			previous.router.shutdown();
+		}
+	}
+
+	// Returns the review service that holds the book's reviews
+	private static ReviewService reviewServiceFor(Book book) {
+		return shardedData != null ? shardedData.router.reviewServiceFor(book) : reviewService;
+	}
+
 	// Displays the main menu options to the user
 	private static void showMenu() {
 		System.out.println("""
@@ -103,6 +429,11 @@ public class App {
 				    10. Load Application State
 				    11. Get User
 				    12. Get Author
+				    13. Bulk Import from File
+				    14. Show Metrics
+				    15. Search Book Content
+				    16. Author Leaderboard
+				    17. Author's Books by Rating
 
 				    0. Exit
 				*****************************
@@ -119,7 +450,7 @@ public class App {
 		System.out.print("Enter email: ");
 		String email = scanner.nextLine();
 
-		String userId = "U" + String.format("%03d", userCounter++);
+		String userId = idAllocator.nextId(IdAllocator.Kind.USER); // Saved with the state, so never reused
 		userService.addUser(userId, username, email);
 		System.out.println("User registered with ID: " + userId);
 	}
@@ -135,7 +466,7 @@ public class App {
 		System.out.print("Enter email: ");
 		String email = scanner.nextLine();
 
-		String authorId = "A" + String.format("%03d", authorCounter++);
+		String authorId = idAllocator.nextId(IdAllocator.Kind.AUTHOR);
 		authorService.addAuthor(authorId, username, email);
 		System.out.println("Author registered with ID: " + authorId);
 	}
@@ -145,7 +476,10 @@ public class App {
 	private static void publishBook() throws InvalidInputException, DuplicateBookException {
 		System.out.print("Enter author ID: ");
 		String authorId = scanner.nextLine();
-		Author author = authorService.getAuthorById(authorId);
+		if (authorService.getAuthorById(authorId) == null) {
+			System.out.println("Author not found.");
+			return;
+		}
 
 		System.out.print("Enter book title: ");
 		String title = scanner.nextLine();
@@ -154,26 +488,18 @@ public class App {
 		System.out.print("Enter book content: ");
 		String content = scanner.nextLine();
 
-		Book book = new Book(UUID.randomUUID().toString(), title, content, author);
-		bookService.addBook(book);
-		author.getPublishedBooks().add(book);
+		// AuthorService registers the book with the author and BookService, keeping every index in sync
+		authorService.publishBook(authorId, idAllocator.nextId(IdAllocator.Kind.BOOK), title, content);
 
 		System.out.println("Book published successfully.");
 	}
 
-	// Lists all published books with their authors and the number of reviews each
-	// has
-	private static void listBooks() {
-		Collection<Book> books = bookService.getAllBooks();
-		if (books.isEmpty()) {
-			System.out.println("No books published yet.");
-			return;
-		}
-
-		for (Book book : books) {
-			System.out.println("Book: " + book.getTitle() + " by " + book.getAuthor().getUsername() + " (Reviews: "
-					+ book.getReviews().size() + ")");
-		}
+	// Lists all published books in publishing order with their authors and the number of reviews each
+	// has, one page at a time
+	private static void listBooks() throws InvalidInputException {
+		printPages(cursor -> catalog.getBookPage(cursor, LIST_PAGE_SIZE), "No books published yet.", null,
+				(out, book) -> out.println("Book: " + book.getTitle() + " by " + book.getAuthorName() + " (Reviews: "
+						+ book.getReviewCount() + ")"));
 	}
 
 	// Adds a review to a specified book by a user, validates rating bounds,
@@ -181,7 +507,7 @@ public class App {
 	private static void addReview() throws ReviewOutOfBoundsException {
 		System.out.print("Enter book title: ");
 		String title = scanner.nextLine();
-		Book book = bookService.getBookByTitle(title);
+		Book book = catalog.getBookByTitle(title);
 
 		System.out.print("Enter your user ID: ");
 		String userId = scanner.nextLine();
@@ -195,39 +521,45 @@ public class App {
 		System.out.print("Enter comment: ");
 		String comment = scanner.nextLine();
 
-		Review review = new Review(UUID.randomUUID().toString(), user, rating, comment);
-		reviewService.addReview(book, user, rating, comment);
-
-		// Notify author via thread
-		NotificationThread thread = new NotificationThread(book.getAuthor().getEmail(), book.getTitle());
-		thread.start();
+		// ReviewService stores the review and queues the author notification
+		reviewServiceFor(book).addReview(book, user, rating, comment);
 
 		System.out.println("Review added.");
 	}
 
-	// Displays all reviews of a book in reverse chronological order with rating and
-	// comments
-	private static void viewReviews() {
+	// Displays the reviews of a book in reverse chronological order with rating and
+	// comments, one page at a time
+	private static void viewReviews() throws InvalidInputException {
 		System.out.print("Enter book title: ");
 		String title = scanner.nextLine();
-		Book book = bookService.getBookByTitle(title);
+		Book book = catalog.getBookByTitle(title);
 
-		List<Review> reviews = reviewService.getReviewsInReverseChronological(book);
-		if (reviews.isEmpty()) {
+		ReviewPage page = reviewServiceFor(book).getReviewsNewestFirst(book, REVIEW_PAGE_SIZE, null);
+		if (page.getReviews().isEmpty()) {
 			System.out.println("No reviews yet.");
-		} else {
-			for (Review r : reviews) {
+			return;
+		}
+		while (true) {
+			for (Review r : page.getReviews()) {
 				System.out.println("⭐ " + r.getRating() + "/5 by " + r.getUser().getUsername() + ": " + r.getComment()
 						+ " [" + r.getTimestamp() + "]");
 			}
+			if (!page.hasMore()) {
+				return;
+			}
+			System.out.print("Show older reviews? (y/n): ");
+			if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+				return;
+			}
+			page = reviewServiceFor(book).getReviewsNewestFirst(book, REVIEW_PAGE_SIZE, page.getNextToken());
 		}
 	}
 
 	// Searches books by keyword in title and lists matching books with author names
 	private static void searchBooks() {
 		System.out.print("Enter keyword to search in titles: ");
-		String keyword = scanner.nextLine().toLowerCase();
-		List<Book> results = bookService.searchBooks(keyword);
+		String keyword = scanner.nextLine().toLowerCase(Locale.ROOT);
+		List<Book> results = catalog.searchBooks(keyword);
 		if (results.isEmpty()) {
 			System.out.println("No books found.");
 		} else {
@@ -237,71 +569,198 @@ public class App {
 		}
 	}
 
-	// Displays top N books sorted by average rating along with number of reviews
+	// Searches the text of all books and lists the best matches with their relevance scores
+	private static void searchContent() {
+		System.out.print("Enter words to search for in book content: ");
+		String query = scanner.nextLine();
+		List<ContentIndex.Hit> hits = catalog.searchContent(query, CONTENT_RESULTS);
+		if (hits.isEmpty()) {
+			System.out.println("No books found.");
+			return;
+		}
+		for (ContentIndex.Hit hit : hits) {
+			System.out.printf("Book %s by %s (score %.2f)%n", hit.getBook().getTitle(),
+					hit.getBook().getAuthor().getUsername(), hit.getScore());
+		}
+	}
+
+	// Displays top N books sorted by average rating, or by weighted score so books with only
+	// a few reviews do not dominate, along with number of reviews
 	private static void topRatedBooks() {
 		int n = getIntInput("Enter number of top books to list: ");
-		List<Book> topBooks = bookService.getTopNBooksByRating(n);
+		int mode = getIntInput("Rank by (1) average rating or (2) weighted score: ");
+		List<Book> topBooks = mode == 2 ? catalog.getTopNBooksByWeightedRating(n)
+				: catalog.getTopNBooksByRating(n);
 		if (topBooks.isEmpty()) {
 			System.out.println("No reviews available yet.");
 			return;
 		}
 
 		for (Book book : topBooks) {
-			double avg = book.getReviews().stream().mapToInt(Review::getRating).average().orElse(0.0);
-			System.out.printf("Book %s - %.2f stars (%d reviews)%n", book.getTitle(), avg, book.getReviews().size());
+			System.out.printf("Book %s - %.2f stars, weighted %.2f, median %.1f (%d reviews: %s)%n", book.getTitle(),
+					book.getAverageRating(), catalog.getWeightedRating(book), book.getMedianRating(),
+					book.getRatingCount(), formatDistribution(book));
 		}
 	}
 
-	// Lists all registered users with their IDs, usernames, and emails in tabular
-	// format
-	private static void getAllUsers() {
-		Map<String, User> allUsers = userService.getAllUsers();
-		if (allUsers.isEmpty()) {
-			System.out.println("No users found.");
+	// Formats a book's rating histogram as "5*: 10, 4*: 3, ..." from 5 stars down
+	private static String formatDistribution(Book book) {
+		StringBuilder distribution = new StringBuilder();
+		for (int stars = 5; stars >= 1; stars--) {
+			if (distribution.length() > 0) {
+				distribution.append(", ");
+			}
+			distribution.append(stars).append("*: ").append(book.getRatingCount(stars));
+		}
+		return distribution.toString();
+	}
+
+	// Lists all registered users in ID order with their usernames and emails in tabular
+	// format, one page at a time
+	private static void getAllUsers() throws InvalidInputException {
+		printPages(cursor -> userService.getUserPage(cursor, LIST_PAGE_SIZE), "No users found.",
+				String.format("%-10s %-15s %-25s%n----------------------------------------", "User ID", "Username",
+						"Email"),
+				(out, user) -> out.printf("%-10s %-15s %-25s%n", user.getUserId(), user.getUsername(),
+						user.getEmail()));
+	}
+
+	// Lists all registered authors in ID order with their usernames, emails and number of
+	// published books in tabular format, one page at a time
+	private static void getIntAllAuthors() throws InvalidInputException {
+		printPages(cursor -> authorService.getAuthorPage(cursor, LIST_PAGE_SIZE), "No authors found.",
+				String.format("%-10s %-15s %-25s %5s%n----------------------------------------------", "Author ID",
+						"Username", "Email", "Books"),
+				(out, author) -> out.printf("%-10s %-15s %-25s %5d%n", author.getUserId(), author.getUsername(),
+						author.getEmail(), author.getBookCount()));
+	}
+
+	// Displays the top N reviewed authors by weighted rating across their books, with their catalog statistics
+	private static void authorLeaderboard() {
+		int n = getIntInput("Enter number of top authors to list: ");
+		List<AuthorStats> top = authorService.getTopAuthors(n);
+		if (top.isEmpty()) {
+			System.out.println("No reviews available yet.");
+			return;
+		}
+		for (AuthorStats stats : top) {
+			System.out.printf("%s (%s) - weighted %.2f, %.2f stars over %d reviews of %d books%n", stats.getUsername(),
+					stats.getAuthorId(), stats.getWeightedRating(), stats.getAverageRating(), stats.getReviewCount(),
+					stats.getBookCount());
+		}
+	}
+
+	// Displays an author's books from best to worst average rating, unreviewed books last
+	private static void authorBooksByRating() throws InvalidInputException {
+		System.out.print("Enter author ID: ");
+		String authorId = scanner.nextLine();
+		AuthorStats stats = authorService.getAuthorStats(authorId);
+		if (stats == null) {
+			System.out.println("Author not found.");
 			return;
 		}
-		System.out.printf("%-10s %-15s %-25s%n", "User ID", "Username", "Email");
-		System.out.println("----------------------------------------");
-		for (Map.Entry<String, User> entry : allUsers.entrySet()) {
-			User user = entry.getValue();
-			System.out.printf("%-10s %-15s %-25s%n", entry.getKey(), user.getUsername(), user.getEmail());
+		System.out.printf("%s: %d books, %d reviews, %.2f stars on average%n", stats.getUsername(),
+				stats.getBookCount(), stats.getReviewCount(), stats.getAverageRating());
+		int n = getIntInput("Enter number of books to list: ");
+		for (Book book : authorService.getBooksByRating(authorId, n)) {
+			System.out.printf("Book %s - %.2f stars (%d reviews)%n", book.getTitle(), book.getAverageRating(),
+					book.getRatingCount());
 		}
-		System.out.println("----------------------------------------\n");
+	}
 
+	// Fetches one page of a listing for printPages, starting after the cursor (null for the first page)
+	private interface PageFetcher<T> {
+		Page<T> fetch(String cursor) throws InvalidInputException;
 	}
 
-	// Lists all registered authors with their IDs, usernames, and emails in tabular
-	// format
-	private static void getIntAllAuthors() {
-		Map<String, Author> allAuthors = authorService.getAllAuthors();
-		if (allAuthors.isEmpty()) {
-			System.out.println("No authors found.");
+	// Prints a listing one page at a time, asking before fetching the next. Each page is formatted into
+	// a buffered writer and written out in one go instead of one console write per line.
+	private static <T> void printPages(PageFetcher<T> fetcher, String emptyMessage, String header,
+			BiConsumer<PrintWriter, T> printer) throws InvalidInputException {
+		Page<T> page = fetcher.fetch(null);
+		if (page.getItems().isEmpty()) {
+			System.out.println(emptyMessage);
 			return;
 		}
-		System.out.printf("%-10s %-15s %-25s%n", "Author ID", "Username", "Email");
-		System.out.println("----------------------------------------");
-		for (Map.Entry<String, Author> entry : allAuthors.entrySet()) {
-			Author author = entry.getValue();
-			System.out.printf("%-10s %-15s %-25s%n", entry.getKey(), author.getUsername(), author.getEmail());
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+		if (header != null) {
+			out.println(header);
+		}
+		while (true) {
+			for (T item : page.getItems()) {
+				printer.accept(out, item);
+			}
+			out.flush();
+			if (!page.hasMore()) {
+				return;
+			}
+			System.out.print("Show more? (y/n): ");
+			if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+				return;
+			}
+			page = fetcher.fetch(page.getNextCursor());
 		}
-		System.out.println("----------------------------------------\n");
+	}
 
+	// Imports users, authors, books and reviews from a CSV or JSON-lines file, writing rejected
+	// rows next to it, and prints a summary instead of a line per record
+	private static void bulkImport() throws IOException {
+		System.out.print("Enter import file path: ");
+		String path = scanner.nextLine().trim();
+		if (!new File(path).isFile()) {
+			System.out.println("File not found.");
+			return;
+		}
+		if (shardedData != null) {
+			// BulkImporter adds books and reviews through a single book service
+			System.out.println("Bulk import is not available with --shards.");
+			return;
+		}
+		ApplicationState state = new ApplicationState(userService, authorService, bookService, reviewService);
+		BulkImporter importer = new BulkImporter(state, Runtime.getRuntime().availableProcessors());
+		ImportReport report = importer.importFile(Paths.get(path), Paths.get(path + ".rejects"));
+		System.out.println(report);
+		if (report.getRejected() > 0) {
+			System.out.println("Rejected rows written to " + path + ".rejects");
+		}
 	}
 
-	// Saves the current application state (services and data) to a file
+	// Saves the current application state (services and data) to a snapshot file,
+	// compacting the operation log into it
 	private static void saveAppState() {
+		if (shardedData != null) {
+			if (operationLog != null) {
+				DataStore.compactSharded(shardedData, SHARDED_BASE_NAME, operationLog, shardLogs, LOG_FILE);
+			} else {
+				DataStore.saveSharded(shardedData, SHARDED_BASE_NAME);
+			}
+			return;
+		}
 		ApplicationState state = new ApplicationState(userService, authorService, bookService, reviewService);
-		DataStore.saveState(state, DATA_FILE);
+		if (operationLog != null) {
+			DataStore.compact(state, DATA_FILE, operationLog, LOG_FILE);
+		} else {
+			DataStore.saveSnapshot(state, DATA_FILE);
+		}
 	}
 
-	// Loads the application state from a file and restores services data
+	// Loads the application state from the snapshot plus the operation log and restores services data
 	private static void loadAppState() {
-		ApplicationState loaded = (ApplicationState) DataStore.loadState(DATA_FILE);
+		if (shardedData != null) {
+			ShardedState loaded = DataStore.loadSharded(SHARDED_BASE_NAME, shardedData.getShardCount(), contentStore);
+			if (loaded != null) {
+				boolean logsMatch = DataStore.recoverSharded(loaded, LOG_FILE);
+				useShardedState(loaded);
+				if (!logsMatch) {
+					saveAppState();
+				}
+			}
+			return;
+		}
+		ApplicationState loaded = DataStore.loadSnapshot(DATA_FILE, contentStore);
 		if (loaded != null) {
-			userService = loaded.userService;
-			authorService = loaded.authorService;
-			bookService = loaded.bookService;
-			reviewService = loaded.reviewService;
+			DataStore.recover(loaded, LOG_FILE);
+			useState(loaded);
 		}
 	}
 
@@ -0,0 +1,137 @@
+package com.booksystem.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide registry of named counters, latency histograms and gauges.
+ * Services look their metrics up once (in static fields) and update them on
+ * every call without locking. Gauges are read only when the metrics are dumped
+ * or read over JMX. Timing can be switched off with setEnabled(false), which
+ * turns Metrics.start() and recordSince into no-ops.
+ *
+ * Names are dotted, grouped by service: "user.add", "book.search",
+ * "store.saveSnapshot", "books" (a gauge).
+ */
+public final class Metrics {
+
+    public static final String OBJECT_NAME = "com.booksystem:type=Metrics";
+
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled = !Boolean.getBoolean("booksystem.metrics.off");
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    // Registers a value read on demand, replacing any earlier gauge of the same name
+    // (e.g. after the application state is reloaded)
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Start time for LatencyHistogram.recordSince, or 0 when timing is switched off
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    static Map<String, Counter> counters() {
+        return COUNTERS;
+    }
+
+    static Map<String, LatencyHistogram> histograms() {
+        return HISTOGRAMS;
+    }
+
+    static Map<String, LongSupplier> gauges() {
+        return GAUGES;
+    }
+
+    // Reads a gauge, or returns -1 if reading it failed
+    static long read(LongSupplier gauge) {
+        try {
+            return gauge.getAsLong();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    // Makes every metric readable over JMX (e.g. in JConsole) under OBJECT_NAME; safe to call more than once
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsBean(), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics MBean: " + e.getMessage(), e);
+        }
+    }
+
+    // All metrics as aligned text: counters, gauges, then latency percentiles per operation
+    public static String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append("Counters\n");
+        for (Map.Entry<String, Counter> entry : COUNTERS.entrySet()) {
+            text.append(String.format("  %-28s %14d%n", entry.getKey(), entry.getValue().get()));
+        }
+        text.append("Gauges\n");
+        for (Map.Entry<String, LongSupplier> entry : new ConcurrentSkipListMap<>(GAUGES).entrySet()) {
+            text.append(String.format("  %-28s %14d%n", entry.getKey(), read(entry.getValue())));
+        }
+        text.append(String.format("Latency%s%n", enabled ? "" : " (timing switched off)"));
+        text.append(String.format("  %-28s %10s %9s %9s %9s %9s %9s %9s%n", "operation", "count", "mean", "p50", "p90",
+                "p99", "p99.9", "max"));
+        for (Map.Entry<String, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+            LatencyHistogram.Snapshot s = entry.getValue().snapshot();
+            if (s.getCount() == 0) {
+                continue;
+            }
+            text.append(String.format("  %-28s %10d %9s %9s %9s %9s %9s %9s%n", entry.getKey(), s.getCount(),
+                    formatNanos((long) s.getMean()), formatNanos(s.getValueAtPercentile(0.5)),
+                    formatNanos(s.getValueAtPercentile(0.9)), formatNanos(s.getValueAtPercentile(0.99)),
+                    formatNanos(s.getValueAtPercentile(0.999)), formatNanos(s.getMax())));
+        }
+        return text.toString();
+    }
+
+    // Formats a duration with a unit that keeps 3 significant digits, e.g. 850ns, 12.3µs, 4.56ms, 1.20s
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 1_000_000) {
+            return String.format("%.3gµs", nanos / 1e3);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format("%.3gms", nanos / 1e6);
+        }
+        return String.format("%.3gs", nanos / 1e9);
+    }
+}
@@ -0,0 +1,120 @@
+package com.booksystem.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+/**
+ * JMX view of the Metrics registry. Every counter and gauge is a long attribute
+ * under its own name; every histogram adds <name>.count, .meanNanos, .p50Nanos,
+ * .p90Nanos, .p99Nanos, .p999Nanos and .maxNanos. The dump() operation returns
+ * the same text as Metrics.dump(). Attributes are read-only and computed on
+ * each read, so metrics registered later appear once the client refreshes.
+ */
+class MetricsBean implements DynamicMBean {
+
+    private static final String[] HISTOGRAM_FIELDS = { "count", "meanNanos", "p50Nanos", "p90Nanos", "p99Nanos",
+            "p999Nanos", "maxNanos" };
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Counter counter = Metrics.counters().get(attribute);
+        if (counter != null) {
+            return counter.get();
+        }
+        LongSupplier gauge = Metrics.gauges().get(attribute);
+        if (gauge != null) {
+            return Metrics.read(gauge);
+        }
+        int dot = attribute.lastIndexOf('.');
+        LatencyHistogram histogram = dot < 0 ? null : Metrics.histograms().get(attribute.substring(0, dot));
+        if (histogram != null) {
+            LatencyHistogram.Snapshot s = histogram.snapshot();
+            switch (attribute.substring(dot + 1)) {
+            case "count":
+                return s.getCount();
+            case "meanNanos":
+                return (long) s.getMean();
+            case "p50Nanos":
+                return s.getValueAtPercentile(0.5);
+            case "p90Nanos":
+                return s.getValueAtPercentile(0.9);
+            case "p99Nanos":
+                return s.getValueAtPercentile(0.99);
+            case "p999Nanos":
+                return s.getValueAtPercentile(0.999);
+            case "maxNanos":
+                return s.getMax();
+            default:
+                break;
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Left out, as the DynamicMBean contract allows
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if (actionName.equals("dump")) {
+            return Metrics.dump();
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : Metrics.counters().keySet()) {
+            attributes.add(attribute(name, "Counter"));
+        }
+        for (String name : Metrics.gauges().keySet()) {
+            attributes.add(attribute(name, "Gauge"));
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : Metrics.histograms().entrySet()) {
+            for (String field : HISTOGRAM_FIELDS) {
+                attributes.add(attribute(entry.getKey() + "." + field, "Latency of " + entry.getKey()));
+            }
+        }
+        MBeanOperationInfo dump = new MBeanOperationInfo("dump", "All metrics as text", new MBeanParameterInfo[0],
+                String.class.getName(), MBeanOperationInfo.INFO);
+        return new MBeanInfo(getClass().getName(), "Book system service metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[] { dump }, null);
+    }
+
+    private static MBeanAttributeInfo attribute(String name, String description) {
+        return new MBeanAttributeInfo(name, "long", description, true, false, false);
+    }
+}
@@ -0,0 +1,686 @@
+package com.booksystem.server;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.AuthorStats;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.BookSummary;
+import com.booksystem.entity.Page;
+import com.booksystem.entity.Review;
+import com.booksystem.entity.ReviewPage;
+import com.booksystem.entity.User;
+import com.booksystem.exception.DuplicateBookException;
+import com.booksystem.exception.InvalidInputException;
+import com.booksystem.exception.ReviewOutOfBoundsException;
+import com.booksystem.index.ContentIndex;
+import com.booksystem.metrics.Counter;
+import com.booksystem.metrics.LatencyHistogram;
+import com.booksystem.metrics.Metrics;
+import com.booksystem.service.AuthorService;
+import com.booksystem.service.BookCatalog;
+import com.booksystem.service.ReviewService;
+import com.booksystem.service.UserService;
+import com.booksystem.util.ApplicationState;
+import com.booksystem.util.FlatJson;
+import com.booksystem.util.IdAllocator;
+import com.booksystem.util.Log;
+import com.booksystem.util.ShardedState;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * HTTP/JSON API over the services of an ApplicationState (or of a ShardedState,
+ * whose router answers the catalog-wide queries), built on the JDK's
+ * built-in HTTP server. Each request runs on its own virtual thread when the
+ * runtime has them (Java 21+) and on a fixed pool of worker threads otherwise.
+ * A request that waited in the queue longer than the request timeout, or whose
+ * query ran past it, is answered with 503 instead, so an overloaded server sheds
+ * work rather than answering every request late. Responses are streamed as
+ * chunked JSON while they are written.
+ *
+ *   GET  /health                              status and catalog size
+ *   GET  /metrics                             counters, gauges and latencies as text (see Metrics)
+ *   POST /users            {username, email}   registers a user
+ *   POST /authors          {username, email}   registers an author
+ *   GET  /authors/top?n=                       reviewed authors by weighted rating across their books
+ *   GET  /authors/{id}                         one author's book count, review count and ratings
+ *   GET  /authors/{id}/books?limit=            the author's books, best average rating first
+ *   GET  /books?cursor=&limit=                 all books in publishing order, one page after another
+ *                                             (offset= instead of cursor= cuts pages by position)
+ *   POST /books            {authorId, title, content}
+ *   GET  /books/search?q=&all=&offset=&limit=  title search (all=true: every word must match)
+ *   GET  /books/fulltext?q=&limit=             books whose content matches q, best BM25 score first
+ *   GET  /books/top?n=&by=average|weighted     top-rated books
+ *   GET  /books/{id}                           one book with its content and rating histogram
+ *   GET  /books/{id}/reviews?limit=&token=     reviews, newest first, one page at a time
+ *   POST /books/{id}/reviews {userId, rating, comment}
+ *
+ * Errors are returned as {"error": message}: 400 for invalid input, 404 for an
+ * unknown resource, 409 for a conflict such as a duplicate title.
+ */
+public class ApiServer {
+
+    public static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 5000;
+    public static final int MAX_BODY_BYTES = 64 * 1024;
+    public static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    static {
+        // The JDK server only times out slow request reads and response writes when these are set,
+        // and they are read once, when the first server is created. Without nodelay, the headers and
+        // the chunked body go out in separate small packets and each response waits ~40 ms for an ACK.
+        setDefault("sun.net.httpserver.maxReqTime", "30");
+        setDefault("sun.net.httpserver.maxRspTime", "60");
+        setDefault("sun.net.httpserver.nodelay", "true");
+    }
+
+    // When the request now being handled was handed to the executor (System.nanoTime)
+    private static final ThreadLocal<Long> QUEUED_AT = new ThreadLocal<>();
+
+    // Time from receiving a request to answering it, the part of it spent waiting for a worker,
+    // and responses by status class (index 2 counts 2xx, and so on)
+    private static final LatencyHistogram REQUEST_TIME = Metrics.histogram("api.request");
+    private static final LatencyHistogram QUEUE_WAIT_TIME = Metrics.histogram("api.queueWait");
+    private static final Counter[] STATUS_COUNTERS = new Counter[6];
+
+    static {
+        for (int i = 2; i < STATUS_COUNTERS.length; i++) {
+            STATUS_COUNTERS[i] = Metrics.counter("api.status." + i + "xx");
+        }
+    }
+
+    private final UserService userService;
+    private final AuthorService authorService;
+    private final IdAllocator idAllocator;
+    private final BookCatalog catalog;
+    // The review service of the book service holding a book
+    private final Function<Book, ReviewService> reviewServices;
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final long requestTimeoutNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean stopping;
+
+    // Binds to the port (0 picks a free one); workerThreads sizes the pool used when virtual threads are unavailable
+    public ApiServer(ApplicationState state, int port, int workerThreads, long requestTimeoutMillis) throws IOException {
+        this(state.userService, state.authorService, state.idAllocator, state.bookService, book -> state.reviewService,
+                port, workerThreads, requestTimeoutMillis);
+    }
+
+    public ApiServer(ShardedState state, int port, int workerThreads, long requestTimeoutMillis) throws IOException {
+        this(state.userService, state.authorService, state.idAllocator, state.router, state.router::reviewServiceFor,
+                port, workerThreads, requestTimeoutMillis);
+    }
+
+    private ApiServer(UserService userService, AuthorService authorService, IdAllocator idAllocator,
+            BookCatalog catalog, Function<Book, ReviewService> reviewServices, int port, int workerThreads,
+            long requestTimeoutMillis) throws IOException {
+        this.userService = userService;
+        this.authorService = authorService;
+        this.idAllocator = idAllocator;
+        this.catalog = catalog;
+        this.reviewServices = reviewServices;
+        this.requestTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(requestTimeoutMillis);
+        this.workers = newRequestExecutor(workerThreads);
+        Metrics.gauge("api.inFlight", inFlight::get);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(task -> {
+            long queuedAt = System.nanoTime();
+            inFlight.incrementAndGet();
+            workers.execute(() -> {
+                QUEUED_AT.set(queuedAt);
+                try {
+                    task.run();
+                } finally {
+                    QUEUED_AT.remove();
+                    inFlight.decrementAndGet();
+                }
+            });
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Number of requests accepted and not yet answered, including those waiting for a worker
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    // Answers new requests with 503, gives requests in progress up to graceSeconds to finish, then
+    // closes the server. (HttpServer.stop(delay) would wait out the whole delay even when idle.)
+    public void stop(int graceSeconds) {
+        stopping = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(graceSeconds);
+        try {
+            while (inFlight.get() > 0 && System.nanoTime() - deadline < 0) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    // One thread per request where the runtime supports virtual threads; otherwise a fixed pool
+    // with an unbounded queue, where the request timeout limits how long a request may wait
+    private static ExecutorService newRequestExecutor(int workerThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), task -> {
+                        Thread thread = new Thread(task, "api-worker-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    private void handle(HttpExchange exchange) {
+        long now = System.nanoTime();
+        Long queuedAt = QUEUED_AT.get();
+        long received = queuedAt != null ? queuedAt : now;
+        long deadline = received + requestTimeoutNanos;
+        if (Metrics.isEnabled()) {
+            QUEUE_WAIT_TIME.record(now - received);
+        }
+        try {
+            if (stopping) {
+                exchange.getResponseHeaders().set("Connection", "close");
+                throw new ApiException(503, "Server is shutting down.");
+            }
+            checkDeadline(deadline);
+            route(new Call(exchange, deadline));
+        } catch (ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (InvalidInputException | ReviewOutOfBoundsException | IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (NoSuchElementException e) {
+            sendError(exchange, 404, e.getMessage());
+        } catch (DuplicateBookException | IllegalStateException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (IOException e) {
+            // The client went away or the response timed out; there is no one left to answer
+        } catch (RuntimeException e) {
+            Log.error("API error on " + exchange.getRequestURI() + ": ", e);
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+            int status = exchange.getResponseCode();
+            if (status >= 200 && status < 600) {
+                STATUS_COUNTERS[status / 100].increment();
+            }
+            if (Metrics.isEnabled()) {
+                REQUEST_TIME.record(System.nanoTime() - received);
+            }
+        }
+    }
+
+    private void route(Call call)
+            throws IOException, ApiException, InvalidInputException, ReviewOutOfBoundsException, DuplicateBookException {
+        String[] path = call.path;
+        if (path.length == 1 && path[0].equals("health")) {
+            call.requireMethod("GET");
+            call.respond(200, json -> json.beginObject()
+                    .field("status", "ok")
+                    .field("books", catalog.getAllBooks().size())
+                    .field("users", userService.getAllUsers().size())
+                    .field("authors", authorService.getAllAuthors().size())
+                    .field("inFlight", inFlight.get())
+                    .endObject());
+        } else if (path.length == 1 && path[0].equals("metrics")) {
+            call.requireMethod("GET");
+            sendText(call.exchange, 200, Metrics.dump());
+        } else if (path.length == 1 && path[0].equals("users")) {
+            call.requireMethod("POST");
+            registerUser(call);
+        } else if (path.length == 1 && path[0].equals("authors")) {
+            call.requireMethod("POST");
+            registerAuthor(call);
+        } else if (path.length == 2 && path[0].equals("authors") && path[1].equals("top")) {
+            call.requireMethod("GET");
+            topAuthors(call);
+        } else if (path.length == 2 && path[0].equals("authors")) {
+            call.requireMethod("GET");
+            getAuthor(call, path[1]);
+        } else if (path.length == 3 && path[0].equals("authors") && path[2].equals("books")) {
+            call.requireMethod("GET");
+            authorBooks(call, path[1]);
+        } else if (path.length == 1 && path[0].equals("books")) {
+            if (call.method.equals("POST")) {
+                publishBook(call);
+            } else {
+                call.requireMethod("GET", "POST");
+                listBooks(call);
+            }
+        } else if (path.length == 2 && path[0].equals("books") && path[1].equals("search")) {
+            call.requireMethod("GET");
+            searchBooks(call);
+        } else if (path.length == 2 && path[0].equals("books") && path[1].equals("fulltext")) {
+            call.requireMethod("GET");
+            searchContent(call);
+        } else if (path.length == 2 && path[0].equals("books") && path[1].equals("top")) {
+            call.requireMethod("GET");
+            topBooks(call);
+        } else if (path.length == 2 && path[0].equals("books")) {
+            call.requireMethod("GET");
+            getBook(call, findBook(path[1]));
+        } else if (path.length == 3 && path[0].equals("books") && path[2].equals("reviews")) {
+            Book book = findBook(path[1]);
+            if (call.method.equals("POST")) {
+                addReview(call, book);
+            } else {
+                call.requireMethod("GET", "POST");
+                listReviews(call, book);
+            }
+        } else {
+            throw new ApiException(404, "No such resource: " + call.exchange.getRequestURI().getPath());
+        }
+    }
+
+    private void registerUser(Call call) throws IOException, ApiException, InvalidInputException {
+        Map<String, String> body = call.body();
+        String userId = idAllocator.nextId(IdAllocator.Kind.USER);
+        userService.addUser(userId, body.get("username"), body.get("email"));
+        call.exchange.getResponseHeaders().set("Location", "/users/" + userId);
+        call.respond(201, json -> json.beginObject().field("userId", userId).endObject());
+    }
+
+    private void registerAuthor(Call call) throws IOException, ApiException, InvalidInputException {
+        Map<String, String> body = call.body();
+        String authorId = idAllocator.nextId(IdAllocator.Kind.AUTHOR);
+        authorService.addAuthor(authorId, body.get("username"), body.get("email"));
+        call.exchange.getResponseHeaders().set("Location", "/authors/" + authorId);
+        call.respond(201, json -> json.beginObject().field("authorId", authorId).endObject());
+    }
+
+    private void publishBook(Call call)
+            throws IOException, ApiException, InvalidInputException, DuplicateBookException {
+        Map<String, String> body = call.body();
+        String authorId = body.get("authorId");
+        if (authorId == null || authorService.getAuthorById(authorId) == null) {
+            throw new NoSuchElementException("Author not found: " + authorId);
+        }
+        String content = body.get("content");
+        String bookId = idAllocator.nextId(IdAllocator.Kind.BOOK);
+        authorService.publishBook(authorId, bookId, body.get("title"), content != null ? content : "");
+        call.exchange.getResponseHeaders().set("Location", "/books/" + bookId);
+        call.respond(201, json -> json.beginObject().field("bookId", bookId).endObject());
+    }
+
+    private void addReview(Call call, Book book)
+            throws IOException, ApiException, InvalidInputException, ReviewOutOfBoundsException {
+        Map<String, String> body = call.body();
+        User user = body.get("userId") == null ? null : userService.getUserById(body.get("userId"));
+        if (user == null) {
+            throw new NoSuchElementException("User not found: " + body.get("userId"));
+        }
+        int rating = parseInt("rating", body.get("rating"));
+        reviewServices.apply(book).addReview(book, user, rating, body.get("comment") != null ? body.get("comment") : "");
+        call.respond(201, json -> json.beginObject()
+                .field("bookId", book.getBookId())
+                .field("reviewCount", book.getRatingCount())
+                .field("averageRating", book.getAverageRating())
+                .endObject());
+    }
+
+    // Pages through every book in publishing order. By default a page starts after the `cursor` of the
+    // previous one; with `offset` it is cut from a title search that matches every book instead.
+    private void listBooks(Call call) throws IOException, ApiException, InvalidInputException {
+        int limit = call.intParam("limit", DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+        if (call.params.containsKey("offset")) {
+            int offset = call.intParam("offset", 0, 0, Integer.MAX_VALUE);
+            List<Book> books = catalog.searchBooks("", offset, limit);
+            int total = catalog.getAllBooks().size();
+            respondWithBooks(call, books,
+                    json -> json.field("offset", offset).field("limit", limit).field("total", total));
+            return;
+        }
+        Page<BookSummary> page = catalog.getBookPage(call.params.get("cursor"), limit);
+        call.checkDeadline();
+        call.respond(200, json -> {
+            json.beginObject().field("limit", limit).field("nextCursor", page.getNextCursor());
+            json.name("books").beginArray();
+            for (BookSummary book : page.getItems()) {
+                json.beginObject()
+                        .field("bookId", book.getBookId())
+                        .field("title", book.getTitle())
+                        .field("authorId", book.getAuthorId())
+                        .field("author", book.getAuthorName())
+                        .field("reviewCount", book.getReviewCount())
+                        .field("averageRating", book.getAverageRating())
+                        .field("weightedRating", book.getWeightedRating())
+                        .endObject();
+            }
+            json.endArray().endObject();
+        });
+    }
+
+    private void searchBooks(Call call) throws IOException, ApiException, InvalidInputException {
+        String query = call.params.get("q");
+        if (query == null) {
+            throw new InvalidInputException("Missing query parameter 'q'.");
+        }
+        int offset = call.intParam("offset", 0, 0, Integer.MAX_VALUE);
+        int limit = call.intParam("limit", DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+        List<Book> books = Boolean.parseBoolean(call.params.get("all"))
+                ? catalog.searchBooksByAllTokens(query, offset, limit)
+                : catalog.searchBooks(query, offset, limit);
+        respondWithBooks(call, books, json -> json.field("q", query).field("offset", offset).field("limit", limit));
+    }
+
+    private void searchContent(Call call) throws IOException, ApiException, InvalidInputException {
+        String query = call.params.get("q");
+        if (query == null) {
+            throw new InvalidInputException("Missing query parameter 'q'.");
+        }
+        int limit = call.intParam("limit", DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+        List<ContentIndex.Hit> hits = catalog.searchContent(query, limit);
+        call.checkDeadline();
+        call.respond(200, json -> {
+            json.beginObject().field("q", query).field("limit", limit);
+            json.name("books").beginArray();
+            for (ContentIndex.Hit hit : hits) {
+                writeBookFields(json.beginObject(), hit.getBook()).field("score", hit.getScore())
+                        .endObject();
+            }
+            json.endArray().endObject();
+        });
+    }
+
+    private void topAuthors(Call call) throws IOException, ApiException, InvalidInputException {
+        int n = call.intParam("n", 10, 1, MAX_PAGE_SIZE);
+        List<AuthorStats> authors = authorService.getTopAuthors(n);
+        call.respond(200, json -> {
+            json.beginObject().field("n", n).name("authors").beginArray();
+            for (AuthorStats stats : authors) {
+                writeAuthorStats(json.beginObject(), stats).endObject();
+            }
+            json.endArray().endObject();
+        });
+    }
+
+    private void getAuthor(Call call, String authorId) throws IOException, ApiException {
+        AuthorStats stats = authorService.getAuthorStats(authorId);
+        if (stats == null) {
+            throw new NoSuchElementException("Author not found: " + authorId);
+        }
+        call.respond(200, json -> writeAuthorStats(json.beginObject(), stats).endObject());
+    }
+
+    private void authorBooks(Call call, String authorId) throws IOException, ApiException, InvalidInputException {
+        int limit = call.intParam("limit", DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+        List<Book> books = authorService.getBooksByRating(authorId, limit);
+        respondWithBooks(call, books, json -> json.field("authorId", authorId));
+    }
+
+    private static JsonWriter writeAuthorStats(JsonWriter json, AuthorStats stats) throws IOException {
+        return json.field("authorId", stats.getAuthorId())
+                .field("username", stats.getUsername())
+                .field("bookCount", stats.getBookCount())
+                .field("reviewCount", stats.getReviewCount())
+                .field("averageRating", stats.getAverageRating())
+                .field("weightedRating", stats.getWeightedRating());
+    }
+
+    private void topBooks(Call call) throws IOException, ApiException, InvalidInputException {
+        int n = call.intParam("n", 10, 1, MAX_PAGE_SIZE);
+        String by = call.params.getOrDefault("by", "average");
+        List<Book> books;
+        if (by.equals("average")) {
+            books = catalog.getTopNBooksByRating(n);
+        } else if (by.equals("weighted")) {
+            books = catalog.getTopNBooksByWeightedRating(n);
+        } else {
+            throw new InvalidInputException("Parameter 'by' must be 'average' or 'weighted'.");
+        }
+        respondWithBooks(call, books, json -> json.field("by", by));
+    }
+
+    private void getBook(Call call, Book book) throws IOException, ApiException {
+        String content = book.getContent();
+        call.checkDeadline();
+        call.respond(200, json -> {
+            writeBookFields(json.beginObject(), book);
+            json.field("medianRating", book.getMedianRating());
+            json.name("ratingDistribution").beginObject();
+            for (int stars = 5; stars >= 1; stars--) {
+                json.field(Integer.toString(stars), book.getRatingCount(stars));
+            }
+            json.endObject();
+            json.field("content", content).endObject();
+        });
+    }
+
+    private void listReviews(Call call, Book book) throws IOException, ApiException, InvalidInputException {
+        int limit = call.intParam("limit", DEFAULT_PAGE_SIZE, 1, MAX_PAGE_SIZE);
+        ReviewPage page = reviewServices.apply(book).getReviewsNewestFirst(book, limit, call.params.get("token"));
+        call.checkDeadline();
+        call.respond(200, json -> {
+            json.beginObject().field("bookId", book.getBookId()).name("reviews").beginArray();
+            for (Review review : page.getReviews()) {
+                json.beginObject()
+                        .field("reviewId", review.getReviewId())
+                        .field("userId", review.getUser().getUserId())
+                        .field("username", review.getUser().getUsername())
+                        .field("rating", review.getRating())
+                        .field("comment", review.getComment())
+                        .field("timestamp", review.getTimestamp().toString())
+                        .endObject();
+            }
+            json.endArray().field("nextToken", page.getNextToken()).endObject();
+        });
+    }
+
+    // Writes {<header fields>, "books": [...]}; the query has already run, so only serialization is left
+    private void respondWithBooks(Call call, Collection<Book> books, JsonBody header) throws IOException, ApiException {
+        call.checkDeadline();
+        call.respond(200, json -> {
+            json.beginObject();
+            header.write(json);
+            json.name("books").beginArray();
+            for (Book book : books) {
+                writeBookFields(json.beginObject(), book).endObject();
+            }
+            json.endArray().endObject();
+        });
+    }
+
+    private JsonWriter writeBookFields(JsonWriter json, Book book) throws IOException {
+        Author author = book.getAuthor();
+        return json.field("bookId", book.getBookId())
+                .field("title", book.getTitle())
+                .field("authorId", author.getUserId())
+                .field("author", author.getUsername())
+                .field("reviewCount", book.getRatingCount())
+                .field("averageRating", book.getAverageRating())
+                .field("weightedRating", catalog.getWeightedRating(book));
+    }
+
+    private Book findBook(String bookId) {
+        Book book = catalog.getBookById(bookId);
+        if (book == null) {
+            throw new NoSuchElementException("Book not found: " + bookId);
+        }
+        return book;
+    }
+
+    private static void checkDeadline(long deadline) throws ApiException {
+        if (System.nanoTime() - deadline > 0) {
+            throw new ApiException(503, "Server busy, request timed out.");
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    // Sends {"error": message} unless the response has already started, in which case it can only be cut short
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        try {
+            StringWriter text = new StringWriter();
+            new JsonWriter(text).beginObject().field("error", message != null ? message : "Error").endObject();
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        } catch (IOException e) {
+            // The client went away
+        }
+    }
+
+    private static int parseInt(String name, String value) throws InvalidInputException {
+        try {
+            return Integer.parseInt(value == null ? "" : value.trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidInputException("'" + name + "' must be a whole number.");
+        }
+    }
+
+    private static void setDefault(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+
+    // Writes (part of) a JSON response body
+    private interface JsonBody {
+        void write(JsonWriter json) throws IOException;
+    }
+
+    // An error that maps directly to an HTTP status
+    private static final class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // One request: its method, path segments, query parameters and deadline
+    private static final class Call {
+        final HttpExchange exchange;
+        final String method;
+        final String[] path;
+        final Map<String, String> params;
+        final long deadline;
+
+        Call(HttpExchange exchange, long deadline) {
+            this.exchange = exchange;
+            this.method = exchange.getRequestMethod();
+            String rawPath = exchange.getRequestURI().getPath();
+            String trimmed = rawPath.replaceAll("^/+|/+$", "");
+            this.path = trimmed.isEmpty() ? new String[0] : trimmed.split("/+");
+            this.params = parseQuery(exchange.getRequestURI().getRawQuery());
+            this.deadline = deadline;
+        }
+
+        void requireMethod(String... allowed) throws ApiException {
+            for (String m : allowed) {
+                if (m.equals(method)) {
+                    return;
+                }
+            }
+            exchange.getResponseHeaders().set("Allow", String.join(", ", allowed));
+            throw new ApiException(405, "Method " + method + " not allowed.");
+        }
+
+        void checkDeadline() throws ApiException {
+            ApiServer.checkDeadline(deadline);
+        }
+
+        int intParam(String name, int defaultValue, int min, int max) throws InvalidInputException {
+            String value = params.get(name);
+            if (value == null || value.isEmpty()) {
+                return defaultValue;
+            }
+            int parsed = parseInt(name, value);
+            if (parsed < min || parsed > max) {
+                throw new InvalidInputException("'" + name + "' must be between " + min + " and " + max + ".");
+            }
+            return parsed;
+        }
+
+        // Reads the request body as a flat JSON object, refusing bodies over MAX_BODY_BYTES
+        Map<String, String> body() throws IOException, ApiException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            try (InputStream in = exchange.getRequestBody()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (bytes.size() + read > MAX_BODY_BYTES) {
+                        throw new ApiException(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes.");
+                    }
+                    bytes.write(buffer, 0, read);
+                }
+            }
+            return FlatJson.parseObject(bytes.toString(StandardCharsets.UTF_8));
+        }
+
+        // Sends the status and streams the body as chunked JSON
+        void respond(int status, JsonBody body) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, 0);
+            OutputStream out = exchange.getResponseBody();
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192);
+            JsonWriter json = new JsonWriter(writer);
+            body.write(json);
+            json.flush();
+        }
+
+        private static Map<String, String> parseQuery(String rawQuery) {
+            Map<String, String> params = new HashMap<>();
+            if (rawQuery == null || rawQuery.isEmpty()) {
+                return params;
+            }
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = eq < 0 ? pair : pair.substring(0, eq);
+                String value = eq < 0 ? "" : pair.substring(eq + 1);
+                params.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+            return params;
+        }
+    }
+}
@@ -1,32 +1,170 @@
 package com.booksystem.service;
 
 import com.booksystem.entity.Author;
+import com.booksystem.entity.AuthorStats;
 import com.booksystem.entity.Book;
+import com.booksystem.entity.Page;
+import com.booksystem.entity.UserSummary;
+import com.booksystem.event.EventBus;
+import com.booksystem.event.UserRegistered;
 import com.booksystem.exception.DuplicateBookException;
 import com.booksystem.exception.InvalidInputException;
+import com.booksystem.index.IdMap;
+import com.booksystem.metrics.Counter;
+import com.booksystem.metrics.LatencyHistogram;
+import com.booksystem.metrics.Metrics;
+import com.booksystem.util.IdAllocator;
 import com.booksystem.util.InputValidator;
+import com.booksystem.util.Log;
+import com.booksystem.util.OperationLog;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
 
 /**
  * Service class that handles operations related to Authors and their books.
  * Provides functionality for adding authors, publishing books, and retrieving
- * author data.
+ * author data, statistics and the author leaderboard.
  */
 public class AuthorService implements Serializable {
 	private static final long serialVersionUID = 1L;
 
+	// Latency of registrations and publishing (single and batch), and publishes refused as duplicate titles
+	private static final LatencyHistogram ADD_TIME = Metrics.histogram("author.add");
+	private static final LatencyHistogram PUBLISH_TIME = Metrics.histogram("author.publishBook");
+	private static final LatencyHistogram PUBLISH_BATCH_TIME = Metrics.histogram("author.publishBatch");
+	private static final Counter DUPLICATE_TITLES = Metrics.counter("author.duplicateTitle");
+	private static final LatencyHistogram LEADERBOARD_TIME = Metrics.histogram("author.leaderboard");
+
 	// Stores all authors using userId as the key
-	private Map<String, Author> authorMap = new HashMap<>();
+	private Map<String, Author> authorMap = new IdMap<>(IdAllocator.Kind.AUTHOR);
+
+	// The same authors sorted by ID number, for listing them page by page (rebuilt from authorMap when deserialized)
+	private transient ConcurrentSkipListMap<String, Author> idOrder = newIdOrder();
+
+	// Reviewed authors keyed by their Bayesian-weighted rating, best first, and the key each is ranked
+	// under; both guarded by the leaderboard's lock (rebuilt when deserialized)
+	private transient TreeMap<AuthorKey, Author> leaderboard = new TreeMap<>();
+	private transient Map<Author, AuthorKey> leaderboardKeys = new HashMap<>();
+
+	// Authors reviewed since the leaderboard was last read, each queued once however many reviews it had.
+	// A review only queues its author; the next read moves each queued author once. The queue, not the
+	// set, is drained, so a read with nothing queued costs nothing however many authors there are.
+	private transient Queue<Author> rerankQueue = new ConcurrentLinkedQueue<>();
+	private transient Set<Author> rerankQueued = ConcurrentHashMap.newKeySet();
+
+	// Book service (or shard router) that receives every published book so its indexes stay current
+	private final BookPlacement bookPlacement;
+
+	// Log that new authors are appended to; attached at runtime
+	private transient OperationLog operationLog;
+
+	// Event bus new authors are announced on; attached at runtime. Their books are announced by the
+	// book service that receives them.
+	private transient EventBus eventBus;
+
+	// Hands out author IDs and sees every ID added, so none is handed out twice
+	private IdAllocator idAllocator = new IdAllocator();
+
+	public AuthorService(BookPlacement bookPlacement) {
+		this.bookPlacement = bookPlacement;
+	}
+
+	// Sets the operation log new authors are recorded in (must be set again after loading saved state)
+	public void setOperationLog(OperationLog operationLog) {
+		this.operationLog = operationLog;
+	}
+
+	// Sets the event bus new authors are published on (must be set again after loading saved state)
+	public void setEventBus(EventBus eventBus) {
+		this.eventBus = eventBus;
+	}
+
+	// Sets the ID allocator, which the services of one state share
+	public void setIdAllocator(IdAllocator idAllocator) {
+		this.idAllocator = idAllocator;
+	}
+
+	public IdAllocator getIdAllocator() {
+		return idAllocator;
+	}
 
 	// Adds a new author after validating username
 	public void addAuthor(String userId, String username, String email) throws InvalidInputException {
-		InputValidator.validateName(username, "Username"); // Validate username
-		Author author = new Author(userId, username, email); // Create author object
-		authorMap.put(userId, author); // Add to map
-		System.out.println("Author added: " + username);
+		long start = Metrics.start();
+		try {
+			InputValidator.validateName(username, "Username"); // Validate username
+			Author author = new Author(userId, username, email); // Create author object
+			untrack(authorMap.put(userId, author)); // Add to map
+			idOrder.put(userId, author);
+			idAllocator.observe(IdAllocator.Kind.AUTHOR, userId);
+			track(author);
+			if (operationLog != null) {
+				operationLog.awaitDurable(operationLog.logAuthor(author));
+			}
+			announce(author);
+		} finally {
+			ADD_TIME.recordSince(start);
+		}
+		Log.info("Author added: ", username);
+	}
+
+	// Adds already validated authors in one batch without console output (used by the bulk importer).
+	// Authors whose ID is taken are passed to onReject instead of replacing the existing author.
+	public void addAuthors(List<Author> authors, BiConsumer<Author, String> onReject) {
+		long logSeq = 0;
+		List<Author> added = new ArrayList<>(authors.size());
+		for (Author author : authors) {
+			if (authorMap.putIfAbsent(author.getUserId(), author) != null) {
+				onReject.accept(author, "Author ID '" + author.getUserId() + "' already exists.");
+				continue;
+			}
+			idOrder.put(author.getUserId(), author);
+			idAllocator.observe(IdAllocator.Kind.AUTHOR, author.getUserId());
+			track(author);
+			added.add(author);
+			if (operationLog != null) {
+				logSeq = operationLog.logAuthor(author);
+			}
+		}
+		if (operationLog != null) {
+			operationLog.awaitDurable(logSeq);
+		}
+		for (Author author : added) {
+			announce(author);
+		}
+	}
+
+	// Publishes a UserRegistered event for a new author, if anyone subscribes
+	private void announce(Author author) {
+		EventBus events = eventBus;
+		if (events != null && events.hasSubscribers()) {
+			events.publish(new UserRegistered(author));
+		}
+	}
+
+	// Restores a previously saved author without validation or console output (used when loading state)
+	public void restoreAuthor(Author author) {
+		untrack(authorMap.put(author.getUserId(), author));
+		idOrder.put(author.getUserId(), author);
+		idAllocator.observe(IdAllocator.Kind.AUTHOR, author.getUserId());
+		track(author);
 	}
 
 	// Returns the author by ID, or null if not found
@@ -34,33 +172,255 @@ public class AuthorService implements Serializable {
 		return authorMap.get(authorId);
 	}
 
-	// Publishes a new book for an author after checking for duplicate titles
+	// Publishes a new book for an author after checking for duplicate titles and book IDs
 	public void publishBook(String authorId, String bookId, String title, String content)
 			throws InvalidInputException, DuplicateBookException {
+		long start = Metrics.start();
+		try {
+			publish(authorId, bookId, title, content);
+		} finally {
+			PUBLISH_TIME.recordSince(start);
+		}
+	}
+
+	private void publish(String authorId, String bookId, String title, String content)
+			throws InvalidInputException, DuplicateBookException {
 
 		InputValidator.validateName(title, "Book Title"); // Validate book title
 
 		Author author = authorMap.get(authorId); // Get the author
 		if (author == null) {
-			System.out.println("Author not found");
+			Log.warn("Author not found: ", authorId);
 			return;
 		}
 
-		// Check for duplicate book titles for the same author
-		for (Book b : author.getPublishedBooks()) {
-			if (b.getTitle().equalsIgnoreCase(title)) {
+		// Lock the author so two concurrent publishes cannot both pass the duplicate check
+		Book book;
+		synchronized (author) {
+			// Check for duplicate book titles for the same author
+			if (author.hasTitle(title)) {
+				DUPLICATE_TITLES.increment();
 				throw new DuplicateBookException("Duplicate book title: " + title);
 			}
+
+			// Create new book and add to author's published books
+			book = new Book(bookId, title, content, author);
+			author.addBook(book);
 		}
+		// The book service owns the ID; if another publish took it meanwhile, the author's entry is taken back
+		if (!bookPlacement.bookServiceFor(bookId).addBook(book)) {
+			author.removeBook(book);
+			throw new DuplicateBookException("Book ID '" + bookId + "' already exists.");
+		}
+		Log.info("Book published: ", title);
+	}
 
-		// Create new book and add to author's published books
-		Book book = new Book(bookId, title, content, author);
-		author.getPublishedBooks().add(book);
-		System.out.println("Book published: " + title);
+	// Publishes already validated books in one batch without console output (used by the bulk importer).
+	// Each book must carry its registered author; books whose ID is taken or whose title duplicates
+	// one of the author's books are passed to onReject instead.
+	public void publishBooks(List<Book> books, BiConsumer<Book, String> onReject) {
+		long start = Metrics.start();
+		Map<BookService, List<Book>> accepted = new LinkedHashMap<>(); // Grouped by the service (shard) holding them
+		Set<String> acceptedIds = new HashSet<>();
+		for (Book book : books) {
+			Author author = book.getAuthor();
+			if (authorMap.get(author.getUserId()) != author) {
+				onReject.accept(book, "Author not found: " + author.getUserId());
+				continue;
+			}
+			if (bookPlacement.bookServiceFor(book.getBookId()).getBookById(book.getBookId()) != null
+					|| acceptedIds.contains(book.getBookId())) {
+				onReject.accept(book, "Book ID '" + book.getBookId() + "' already exists.");
+				continue;
+			}
+			synchronized (author) {
+				if (author.hasTitle(book.getTitle())) {
+					onReject.accept(book, "Duplicate book title: " + book.getTitle());
+					continue;
+				}
+				author.addBook(book);
+			}
+			acceptedIds.add(book.getBookId());
+			accepted.computeIfAbsent(bookPlacement.bookServiceFor(book.getBookId()), s -> new ArrayList<>()).add(book);
+		}
+		for (Map.Entry<BookService, List<Book>> group : accepted.entrySet()) {
+			// Books whose ID a concurrent publish took after the check above
+			for (Book book : group.getKey().addBooks(group.getValue())) {
+				book.getAuthor().removeBook(book);
+				onReject.accept(book, "Book ID '" + book.getBookId() + "' already exists.");
+			}
+		}
+		PUBLISH_BATCH_TIME.recordSince(start);
 	}
 
-	// Returns the complete map of all authors
+	// Returns a read-only view of all authors keyed by ID
 	public Map<String, Author> getAllAuthors() {
-		return authorMap;
+		return Collections.unmodifiableMap(authorMap);
+	}
+
+	// Returns up to `limit` authors in ID order, as summaries with their number of published books.
+	// Pass null as the cursor for the first page and the page's next cursor for the following one.
+	public Page<UserSummary> getAuthorPage(String cursor, int limit) throws InvalidInputException {
+		Paging.checkLimit(limit);
+		List<Author> authors = Paging.valuesAfter(idOrder, cursor, Paging.withSpare(limit));
+		return Paging.toPage(authors, limit, author -> new UserSummary(author.getUserId(), author.getUsername(),
+				author.getEmail(), author.getBookCount()), Author::getUserId);
+	}
+
+	// Returns the author's book count, review count and ratings, or null if there is no such author
+	public AuthorStats getAuthorStats(String authorId) {
+		Author author = authorMap.get(authorId);
+		if (author == null) {
+			return null;
+		}
+		synchronized (author) { // So the counts and ratings all include the same reviews
+			return stats(author);
+		}
+	}
+
+	// Returns the n reviewed authors with the best Bayesian-weighted rating across their books (the prior
+	// of the weighted book ranking, see BookService.RATING_PRIOR_MEAN), reading the first n leaderboard
+	// entries after moving the authors reviewed since the last read
+	public List<AuthorStats> getTopAuthors(int n) {
+		long start = Metrics.start();
+		List<AuthorStats> top = new ArrayList<>(Math.max(0, Math.min(n, 64)));
+		synchronized (leaderboard) {
+			rerankChanged();
+			for (Map.Entry<AuthorKey, Author> entry : leaderboard.entrySet()) {
+				if (top.size() >= n) {
+					break;
+				}
+				AuthorKey key = entry.getKey();
+				Author author = entry.getValue();
+				// The key holds the ratings the author was ranked by, so every row agrees with its place
+				int reviews = key.ratingCount - BookService.RATING_PRIOR_WEIGHT;
+				long sum = key.ratingSum - (long) BookService.RATING_PRIOR_MEAN * BookService.RATING_PRIOR_WEIGHT;
+				// Without reviews the average is the prior, as in the weighted book ranking
+				double average = reviews == 0 ? BookService.RATING_PRIOR_MEAN : (double) sum / reviews;
+				top.add(new AuthorStats(author.getUserId(), author.getUsername(), author.getBookCount(), reviews,
+						average, (double) key.ratingSum / key.ratingCount));
+			}
+		}
+		LEADERBOARD_TIME.recordSince(start);
+		return top;
+	}
+
+	// Returns up to `limit` of the author's books, best average rating first and unreviewed books last
+	public List<Book> getBooksByRating(String authorId, int limit) throws InvalidInputException {
+		Paging.checkLimit(limit);
+		Author author = authorMap.get(authorId);
+		if (author == null) {
+			throw new NoSuchElementException("Author not found: " + authorId);
+		}
+		return author.getBooksByRating(limit);
+	}
+
+	// Called holding the author's lock
+	private static AuthorStats stats(Author author) {
+		AuthorKey key = AuthorKey.of(author);
+		return new AuthorStats(author.getUserId(), author.getUsername(), author.getBookCount(),
+				author.getReviewCount(), author.getAverageRating(), (double) key.ratingSum / key.ratingCount);
+	}
+
+	// Ranks the author on the leaderboard from now on, starting from its current ratings
+	private void track(Author author) {
+		synchronized (author) {
+			author.setRatingListener(this::queueRerank);
+			if (author.getReviewCount() > 0) {
+				queueRerank(author);
+			}
+		}
+	}
+
+	// Takes an author that has been replaced under its ID off the leaderboard
+	private void untrack(Author author) {
+		if (author == null) {
+			return;
+		}
+		author.setRatingListener(null);
+		synchronized (leaderboard) {
+			AuthorKey key = leaderboardKeys.remove(author);
+			if (key != null) {
+				leaderboard.remove(key);
+			}
+		}
+	}
+
+	// Rating listener of every tracked author: queues it to be moved on the leaderboard, unless it already is
+	private void queueRerank(Author author) {
+		if (rerankQueued.add(author)) {
+			rerankQueue.add(author);
+		}
+	}
+
+	// Moves every author reviewed since the last call to the entry for its current ratings; called
+	// holding the leaderboard's lock. An author reviewed again meanwhile is simply queued again.
+	private void rerankChanged() {
+		Author author;
+		while ((author = rerankQueue.poll()) != null) {
+			rerankQueued.remove(author);
+			if (authorMap.get(author.getUserId()) != author) {
+				continue; // Replaced under its ID while one of its reviews was being added
+			}
+			AuthorKey key;
+			synchronized (author) {
+				key = AuthorKey.of(author);
+			}
+			AuthorKey previous = leaderboardKeys.put(author, key);
+			if (previous != null) {
+				leaderboard.remove(previous);
+			}
+			leaderboard.put(key, author);
+		}
+	}
+
+	private static ConcurrentSkipListMap<String, Author> newIdOrder() {
+		return new ConcurrentSkipListMap<>(Paging.byIdNumber(IdAllocator.Kind.AUTHOR));
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		idOrder = newIdOrder();
+		idOrder.putAll(authorMap);
+		leaderboard = new TreeMap<>();
+		leaderboardKeys = new HashMap<>();
+		rerankQueue = new ConcurrentLinkedQueue<>();
+		rerankQueued = ConcurrentHashMap.newKeySet();
+		if (idAllocator == null) { // Saved before IDs were allocated; loading the converted snapshot sees every ID
+			idAllocator = new IdAllocator();
+		}
+		for (Author author : authorMap.values()) {
+			author.reindex();
+			track(author);
+		}
+	}
+
+	// Leaderboard key: the author's ratings with the weighted ranking's prior reviews added, ordered by
+	// that rating descending (cross-multiplied, so there are no floating point ties), then by author ID
+	private static final class AuthorKey implements Comparable<AuthorKey> {
+		private final long ratingSum;
+		private final int ratingCount;
+		private final String authorId;
+
+		private AuthorKey(long ratingSum, int ratingCount, String authorId) {
+			this.ratingSum = ratingSum;
+			this.ratingCount = ratingCount;
+			this.authorId = authorId;
+		}
+
+		// Must be called while holding the author's lock so sum and count are read together
+		static AuthorKey of(Author author) {
+			return new AuthorKey(author.getRatingSum() + (long) BookService.RATING_PRIOR_MEAN * BookService.RATING_PRIOR_WEIGHT,
+					author.getReviewCount() + BookService.RATING_PRIOR_WEIGHT, author.getUserId());
+		}
+
+		@Override
+		public int compareTo(AuthorKey other) {
+			int byRating = Long.compare(other.ratingSum * ratingCount, ratingSum * other.ratingCount);
+			if (byRating != 0) {
+				return byRating;
+			}
+			return authorId.compareTo(other.authorId);
+		}
 	}
 }
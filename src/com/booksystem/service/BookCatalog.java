@@ -0,0 +1,41 @@
+package com.booksystem.service;
+
+import com.booksystem.entity.Book;
+import com.booksystem.entity.BookSummary;
+import com.booksystem.entity.Page;
+import com.booksystem.exception.InvalidInputException;
+import com.booksystem.index.ContentIndex;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The book queries the menu and the HTTP API ask of the whole catalog. A
+ * BookService answers them from its own books; a ShardRouter sends them to
+ * every shard and merges the answers in the same order.
+ */
+public interface BookCatalog {
+
+    Book getBookById(String bookId);
+
+    // Retrieves a book by its exact title (case-insensitive); throws if none or several match
+    Book getBookByTitle(String title);
+
+    List<Book> searchBooks(String keyword);
+
+    List<Book> searchBooks(String keyword, int offset, int limit);
+
+    List<Book> searchBooksByAllTokens(String query, int offset, int limit);
+
+    List<ContentIndex.Hit> searchContent(String query, int k);
+
+    List<Book> getTopNBooksByRating(int n);
+
+    List<Book> getTopNBooksByWeightedRating(int n);
+
+    double getWeightedRating(Book book);
+
+    Page<BookSummary> getBookPage(String cursor, int limit) throws InvalidInputException;
+
+    Collection<Book> getAllBooks();
+}
@@ -0,0 +1,13 @@
+package com.booksystem.service;
+
+import java.io.Serializable;
+
+/**
+ * Decides which BookService holds a book. A plain BookService holds every book
+ * itself; a ShardRouter picks one of its shards from the book ID.
+ */
+public interface BookPlacement extends Serializable {
+
+    // Returns the BookService that holds (or will hold) the book with this ID
+    BookService bookServiceFor(String bookId);
+}
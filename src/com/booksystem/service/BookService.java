@@ -2,78 +2,793 @@ package com.booksystem.service;
 
 import com.booksystem.entity.Author;
 import com.booksystem.entity.Book;
+import com.booksystem.entity.BookSummary;
+import com.booksystem.entity.Page;
+import com.booksystem.entity.Review;
+import com.booksystem.event.BookPublished;
+import com.booksystem.event.EventBus;
+import com.booksystem.exception.InvalidInputException;
+import com.booksystem.index.ContentIndex;
+import com.booksystem.index.IdMap;
+import com.booksystem.index.QueryCache;
+import com.booksystem.index.TitleIndex;
+import com.booksystem.index.TitleVersions;
+import com.booksystem.metrics.LatencyHistogram;
+import com.booksystem.metrics.Metrics;
+import com.booksystem.util.ContentStore;
+import com.booksystem.util.IdAllocator;
+import com.booksystem.util.Log;
+import com.booksystem.util.OperationLog;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * Service class that manages operations related to Books.
  * Provides functionality for adding books, searching by title or keyword,
  * retrieving books by ID or title, and fetching top-rated books.
+ * Safe for concurrent use: reads are lock-free, publishing is serialized,
+ * and reviews lock only the book they are added to.
  */
-public class BookService implements Serializable {
+public class BookService implements BookPlacement, BookCatalog {
     private static final long serialVersionUID = 1L;
 
+    // Source of publish sequences; shared by all instances so books in different shards can be merged in publishing order
+    private static final AtomicLong publishSequence = new AtomicLong();
+
+	// Latency of adding books and reviews, searches (cache hits included) and rankings, across all instances
+	private static final LatencyHistogram ADD_BOOK_TIME = Metrics.histogram("book.add");
+	private static final LatencyHistogram ADD_REVIEW_TIME = Metrics.histogram("book.addReview");
+	private static final LatencyHistogram SEARCH_TIME = Metrics.histogram("book.search");
+	private static final LatencyHistogram SEARCH_ALL_TOKENS_TIME = Metrics.histogram("book.searchAllTokens");
+	private static final LatencyHistogram TOP_RATED_TIME = Metrics.histogram("book.topRated");
+	private static final LatencyHistogram TOP_WEIGHTED_TIME = Metrics.histogram("book.topWeighted");
+	private static final LatencyHistogram SEARCH_CONTENT_TIME = Metrics.histogram("book.searchContent");
+
  // Stores all books using bookId as the key
-	private Map<String, Book> bookMap = new HashMap<>();
+	private Map<String, Book> bookMap = new IdMap<>(IdAllocator.Kind.BOOK);
+
+	// The same books keyed by publish sequence, for listing them page by page in publishing order
+	private transient ConcurrentSkipListMap<Long, Book> publishOrder;
+
+	// Reviewed books keyed by an immutable snapshot of their rating, best first
+	private ConcurrentSkipListMap<RatingKey, Book> ratingIndex = new ConcurrentSkipListMap<>();
+
+	// Reviewed books keyed by their Bayesian-weighted rating, best first (see RATING_PRIOR_MEAN)
+	private ConcurrentSkipListMap<RatingKey, Book> weightedRatingIndex = new ConcurrentSkipListMap<>();
+
+	// Prior used by the weighted ranking: every book is scored as if it also had RATING_PRIOR_WEIGHT
+	// reviews of RATING_PRIOR_MEAN stars, so a single 5-star review cannot outrank a large body of 4-star ones.
+	// Fixed (rather than the live catalog mean) so a book's weighted score changes only when it is reviewed.
+	public static final int RATING_PRIOR_MEAN = 3;
+	public static final int RATING_PRIOR_WEIGHT = 10;
+
+	// Trigram index over titles used by keyword search
+	private TitleIndex titleIndex = new TitleIndex();
+
+	// Full-text index over book content used by searchContent; saved next to the snapshot, not serialized
+	private transient ContentIndex contentIndex;
+
+	// Searches that have to check at least this many titles are split into segments and run on the query pool
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 32_768;
+
+	// Query pool shared by every BookService that has not been given its own parallelism
+	private static final ForkJoinPool SHARED_QUERY_POOL = newQueryPool(Runtime.getRuntime().availableProcessors());
+
+	// Pool this service's searches run on, null when they stay on the calling thread
+	private transient ForkJoinPool queryPool;
+	private transient int parallelThreshold;
+
+	// Default bounds of the result cache: entries, and books referenced by all cached results together
+	public static final int DEFAULT_CACHE_ENTRIES = 1024;
+	public static final long DEFAULT_CACHE_WEIGHT = 262_144;
+
+	// Recent search and top-N results, checked against the version stamps below on every hit (null = off)
+	private transient volatile QueryCache<Query, CachedResult> resultCache;
+
+	// Tell a cached result whether a later book or review could have changed it
+	private transient TitleVersions titleVersions;
+	private transient RankingVersion ratingVersion;
+	private transient RankingVersion weightedRatingVersion;
+
+	public BookService() {
+		initTransientState();
+	}
+
+	// Query pool, cache and version stamps are not serialized; a restored service starts with the defaults.
+	// The publishing order index is rebuilt from the books' saved sequences, and the sequence source moved
+	// past them so books published from now on are listed after the restored ones. The content index is
+	// rebuilt from the books' text.
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		initTransientState();
+		if (idAllocator == null) { // Saved before IDs were allocated; loading the converted snapshot sees every ID
+			idAllocator = new IdAllocator();
+		}
+		for (Book book : bookMap.values()) {
+			publishOrder.put(book.getPublishSequence(), book);
+			publishSequence.accumulateAndGet(book.getPublishSequence(), Math::max);
+		}
+		for (Book book : publishOrder.values()) {
+			contentIndex.add(book);
+		}
+	}
+
+	private void initTransientState() {
+		publishOrder = new ConcurrentSkipListMap<>();
+		contentIndex = new ContentIndex();
+		queryPool = SHARED_QUERY_POOL;
+		parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+		titleIndex.setParallelism(queryPool, parallelThreshold);
+		titleVersions = new TitleVersions();
+		ratingVersion = new RankingVersion();
+		weightedRatingVersion = new RankingVersion();
+		resultCache = newResultCache(DEFAULT_CACHE_ENTRIES, DEFAULT_CACHE_WEIGHT);
+	}
+
+	// Replaces the result cache with an empty one of the given bounds; maxEntries 0 turns caching off
+	public void setResultCacheSize(int maxEntries, long maxWeight) {
+		resultCache = maxEntries == 0 ? null : newResultCache(maxEntries, maxWeight);
+	}
+
+	// Hit, miss and eviction counts of the result cache, or null if caching is off
+	public QueryCache.Stats getResultCacheStats() {
+		QueryCache<Query, CachedResult> cache = resultCache;
+		return cache == null ? null : cache.getStats();
+	}
+
+	private static QueryCache<Query, CachedResult> newResultCache(int maxEntries, long maxWeight) {
+		return new QueryCache<>(maxEntries, maxWeight, (query, result) -> result.books.size() + query.weight());
+	}
+
+	// Sets how many threads a large search is split across, on a pool of this service's own;
+	// 1 keeps every search on the calling thread
+	public synchronized void setQueryParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Query parallelism must be at least 1.");
+		}
+		ForkJoinPool previous = queryPool;
+		queryPool = parallelism == 1 ? null : newQueryPool(parallelism);
+		titleIndex.setParallelism(queryPool, parallelThreshold);
+		if (previous != null && previous != SHARED_QUERY_POOL) {
+			previous.shutdown();
+		}
+	}
+
+	public synchronized int getQueryParallelism() {
+		return queryPool == null ? 1 : queryPool.getParallelism();
+	}
+
+	// Sets the number of titles a search must check before it is split across the query pool
+	public synchronized void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+		titleIndex.setParallelism(queryPool, parallelThreshold);
+	}
+
+	private static ForkJoinPool newQueryPool(int parallelism) {
+		return new ForkJoinPool(parallelism, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("book-query-" + thread.getPoolIndex());
+			return thread;
+		}, null, false);
+	}
+
+	// Case-folded title -> books with that title; more than one entry means the title is ambiguous
+	private Map<String, List<Book>> titleLookup = new ConcurrentHashMap<>();
+
+	// Write-ahead log for published books and added reviews (transient, re-attached after loading)
+	private transient OperationLog operationLog;
+
+	// Sets the operation log new books and reviews are recorded in (must be set again after loading saved state)
+	public void setOperationLog(OperationLog operationLog) {
+		this.operationLog = operationLog;
+	}
+
+	// Event bus new books are announced on (transient, re-attached after loading); books restored from
+	// a snapshot or the operation log are added before it is attached, so they are not announced again
+	private transient EventBus eventBus;
+
+	public void setEventBus(EventBus eventBus) {
+		this.eventBus = eventBus;
+	}
+
+	// Sees every book and review ID added, so none is handed out twice; shared by the services of one state
+	private IdAllocator idAllocator = new IdAllocator();
+
+	public void setIdAllocator(IdAllocator idAllocator) {
+		this.idAllocator = idAllocator;
+	}
+
+	public IdAllocator getIdAllocator() {
+		return idAllocator;
+	}
 	
-	 // Add book to map (called from AuthorService after successful publishing)
-    public void addBook(Book book) {
-        bookMap.put(book.getBookId(), book);
+	// Off-heap store that book content is moved into when a book is added (optional, attached at runtime)
+	private transient ContentStore contentStore;
+
+	public void setContentStore(ContentStore contentStore) {
+		this.contentStore = contentStore;
+	}
+
+	public ContentStore getContentStore() {
+		return contentStore;
+	}
+
+	// Replaces the (empty) content index with one loaded from disk, before the books are added back
+	public void setContentIndex(ContentIndex contentIndex) {
+		this.contentIndex = contentIndex;
+	}
+
+	public ContentIndex getContentIndex() {
+		return contentIndex;
+	}
+	
+	 // Add book to map (called from AuthorService after successful publishing). Returns false, adding
+    // nothing, if a book with the same ID is already here.
+    public boolean addBook(Book book) {
+        long start = Metrics.start();
+        try {
+            return add(book);
+        } finally {
+            ADD_BOOK_TIME.recordSince(start);
+        }
+    }
+
+    private boolean add(Book book) {
+        if (bookMap.containsKey(book.getBookId())) {
+            return false; // Rechecked under the lock; this only saves storing the content of a duplicate
+        }
+        if (contentStore != null && !book.isContentStored()) {
+            try {
+                book.moveContentTo(contentStore);
+            } catch (IOException e) {
+                Log.warn("Error storing book content, keeping it in memory: ", e.getMessage());
+            }
+        }
+        long logSeq = 0;
+        // Synchronized so the title indexes see books in the same order as bookMap; publishing is rare next to reads.
+        synchronized (this) {
+            if (bookMap.putIfAbsent(book.getBookId(), book) != null) {
+                return false;
+            }
+            idAllocator.observe(IdAllocator.Kind.BOOK, book.getBookId());
+            book.setPublishSequence(publishSequence.incrementAndGet()); // Taken under the lock, so it grows with titleIndex order
+            publishOrder.put(book.getPublishSequence(), book);
+            titleIndex.add(book);
+            titleVersions.bump(book.getTitle()); // After the index, so a search that missed the book goes stale
+            titleLookup.computeIfAbsent(titleKey(book.getTitle()), k -> new CopyOnWriteArrayList<>()).add(book);
+            synchronized (book) {
+                indexRating(book);
+            }
+            if (operationLog != null) {
+                logSeq = operationLog.logBook(book);
+            }
+        }
+        contentIndex.add(book); // Outside the lock: tokenizing the content is the slow part of publishing
+        if (operationLog != null) {
+            operationLog.awaitDurable(logSeq);
+        }
+        EventBus events = eventBus;
+        if (events != null && events.hasSubscribers()) {
+            events.publish(new BookPublished(book)); // Once the book can be found by title and content
+        }
+        return true;
+    }
+
+    // Adds a batch of books (used by the bulk importer): content is moved to the store first, then the
+    // indexes are updated under one lock acquisition and the operation log is waited on once.
+    // Returns the books left out because a book with the same ID is already here.
+    public List<Book> addBooks(List<Book> books) {
+        if (contentStore != null) {
+            for (Book book : books) {
+                if (!book.isContentStored()) {
+                    try {
+                        book.moveContentTo(contentStore);
+                    } catch (IOException e) {
+                        Log.warn("Error storing book content, keeping it in memory: ", e.getMessage());
+                    }
+                }
+            }
+        }
+        long logSeq = 0;
+        List<Book> added = new ArrayList<>(books.size());
+        List<Book> duplicates = new ArrayList<>();
+        synchronized (this) {
+            for (Book book : books) {
+                if (bookMap.putIfAbsent(book.getBookId(), book) != null) {
+                    duplicates.add(book);
+                    continue;
+                }
+                idAllocator.observe(IdAllocator.Kind.BOOK, book.getBookId());
+                added.add(book);
+                book.setPublishSequence(publishSequence.incrementAndGet());
+                publishOrder.put(book.getPublishSequence(), book);
+                titleIndex.add(book);
+                titleVersions.bump(book.getTitle());
+                titleLookup.computeIfAbsent(titleKey(book.getTitle()), k -> new CopyOnWriteArrayList<>()).add(book);
+                synchronized (book) {
+                    indexRating(book);
+                }
+                if (operationLog != null) {
+                    logSeq = operationLog.logBook(book);
+                }
+            }
+        }
+        for (Book book : added) {
+            contentIndex.add(book);
+        }
+        if (operationLog != null) {
+            operationLog.awaitDurable(logSeq);
+        }
+        EventBus events = eventBus;
+        if (events != null && events.hasSubscribers()) {
+            for (Book book : added) {
+                events.publish(new BookPublished(book));
+            }
+        }
+        return duplicates;
+    }
+
+    // Adds a review to the book and repositions it in the rating index.
+    // Locks only this book, so reviews on different books proceed in parallel.
+    public void addReview(Book book, Review review) {
+        long start = Metrics.start();
+        long logSeq = 0;
+        synchronized (book) {
+            boolean indexed = bookMap.get(book.getBookId()) == book;
+            if (indexed) {
+                unindexRating(book);
+            }
+            book.addReview(review);
+            idAllocator.observe(IdAllocator.Kind.REVIEW, review.getReviewId());
+            if (indexed) {
+                indexRating(book);
+            }
+            if (operationLog != null) {
+                logSeq = operationLog.logReview(book, review); // Logged under the lock to keep per-book order
+            }
+        }
+        if (operationLog != null) {
+            operationLog.awaitDurable(logSeq);
+        }
+        ADD_REVIEW_TIME.recordSince(start);
+    }
+
+    // Adds batches of reviews grouped by book (used by the bulk importer). Each book is locked and
+    // repositioned in the rating index once per batch, and the operation log is waited on once at the end.
+    public void addReviews(Map<Book, List<Review>> reviewsByBook) {
+        long logSeq = 0;
+        for (Map.Entry<Book, List<Review>> entry : reviewsByBook.entrySet()) {
+            Book book = entry.getKey();
+            synchronized (book) {
+                boolean indexed = bookMap.get(book.getBookId()) == book;
+                if (indexed) {
+                    unindexRating(book);
+                }
+                for (Review review : entry.getValue()) {
+                    book.addReview(review);
+                    idAllocator.observe(IdAllocator.Kind.REVIEW, review.getReviewId());
+                    if (operationLog != null) {
+                        logSeq = operationLog.logReview(book, review);
+                    }
+                }
+                if (indexed) {
+                    indexRating(book);
+                }
+            }
+        }
+        if (operationLog != null) {
+            operationLog.awaitDurable(logSeq);
+        }
     }
     
     //Searches for books containing the given keyword in their titles among the list of authors' published books.
     public List<Book> getBooksByKeyword(String keyword, List<Author> authors) {
+        Set<Author> allowed = new HashSet<>(authors);
         List<Book> results = new ArrayList<>();
-
-        for (Author author : authors) {
-            for (Book book : author.getPublishedBooks()) {
-                if (book.getTitle().toLowerCase().contains(keyword.toLowerCase())) {
-                    results.add(book);
-                }
+        for (Book book : titleIndex.findContaining(keyword, 0, Integer.MAX_VALUE)) {
+            if (allowed.contains(book.getAuthor())) {
+                results.add(book);
             }
         }
         return results;
     }
     
     //Retrieves a book by its exact title (case-insensitive).
+    // Throws IllegalStateException if several authors have published a book with this title.
+    @Override
     public Book getBookByTitle(String title) {
-        for (Book book : bookMap.values()) {
-            if (book.getTitle().equalsIgnoreCase(title)) {
-                return book;
+        List<Book> matches = titleLookup.get(titleKey(title));
+        if (matches == null) {
+            throw new NoSuchElementException("Book not found with title: " + title);
+        }
+        if (matches.size() > 1) {
+            StringBuilder authors = new StringBuilder();
+            for (Book book : matches) {
+                if (authors.length() > 0) {
+                    authors.append(", ");
+                }
+                authors.append(book.getAuthor().getUsername());
             }
+            throw new IllegalStateException("Multiple books found with title: " + title + " (by " + authors + ")");
         }
-        throw new NoSuchElementException("Book not found with title: " + title);
+        return matches.get(0);
+    }
+
+    // Returns every book with the given title (case-insensitive), e.g. to resolve an ambiguous title
+    public List<Book> getBooksByTitle(String title) {
+        List<Book> matches = titleLookup.get(titleKey(title));
+        return matches == null ? Collections.emptyList() : Collections.unmodifiableList(matches);
+    }
+
+    // Builds the lookup key for a title, matching the case-insensitive comparison used before the index
+    private static String titleKey(String title) {
+        return title.toLowerCase(Locale.ROOT);
     }
 
     // Search books by keyword in title
+    @Override
     public List<Book> searchBooks(String keyword) {
-        return bookMap.values().stream()
-                .filter(book -> book.getTitle().toLowerCase().contains(keyword.toLowerCase()))
-                .collect(Collectors.toList());
+        return searchBooks(keyword, 0, Integer.MAX_VALUE);
+    }
+
+    // Returns one page of books whose title contains the keyword, in publishing order
+    @Override
+    public List<Book> searchBooks(String keyword, int offset, int limit) {
+        long start = Metrics.start();
+        List<Book> books = cachedSearch(new Query(Query.SEARCH, keyword, offset, limit), new String[] { keyword },
+                () -> titleIndex.findContaining(keyword, offset, limit));
+        SEARCH_TIME.recordSince(start);
+        return books;
+    }
+
+    // Returns one page of books whose title contains every whitespace-separated token of the query
+    @Override
+    public List<Book> searchBooksByAllTokens(String query, int offset, int limit) {
+        long start = Metrics.start();
+        List<Book> books = cachedSearch(new Query(Query.SEARCH_ALL_TOKENS, query, offset, limit),
+                TitleIndex.terms(query), () -> titleIndex.findContainingAll(query, offset, limit));
+        SEARCH_ALL_TOKENS_TIME.recordSince(start);
+        return books;
+    }
+
+    // Returns up to k books whose content best matches the query's words, best first, ranked by BM25
+    @Override
+    public List<ContentIndex.Hit> searchContent(String query, int k) {
+        long start = Metrics.start();
+        List<ContentIndex.Hit> hits = contentIndex.search(query, k);
+        SEARCH_CONTENT_TIME.recordSince(start);
+        return hits;
     }
 
     // Retrieves the top N books ranked by their average review rating. Only books with at least one review are considered.
+    // Reads the first N entries of the maintained rating index instead of re-sorting the catalog.
+    @Override
     public List<Book> getTopNBooksByRating(int n) {
-        return bookMap.values().stream()
-                .filter(book -> !book.getReviews().isEmpty()) // Only consider books with reviews
-                .sorted((b1, b2) -> {
-                    double avg1 = b1.getReviews().stream().mapToInt(r -> r.getRating()).average().orElse(0);
-                    double avg2 = b2.getReviews().stream().mapToInt(r -> r.getRating()).average().orElse(0);
-                    return Double.compare(avg2, avg1); // Descending
-                })
-                .limit(n)
-                .collect(Collectors.toList());
-    }
-
-    // Returns all books currently stored.
+        long start = Metrics.start();
+        List<Book> books = cachedTopN(Query.TOP_RATED, ratingIndex, ratingVersion, n);
+        TOP_RATED_TIME.recordSince(start);
+        return books;
+    }
+
+    // Retrieves the top N reviewed books ranked by their Bayesian-weighted rating (see getWeightedRating)
+    @Override
+    public List<Book> getTopNBooksByWeightedRating(int n) {
+        long start = Metrics.start();
+        List<Book> books = cachedTopN(Query.TOP_WEIGHTED, weightedRatingIndex, weightedRatingVersion, n);
+        TOP_WEIGHTED_TIME.recordSince(start);
+        return books;
+    }
+
+    // Returns the cached result of a title search if no book added since can match it, otherwise runs it.
+    // The stamp is taken before the search, so a book added meanwhile leaves the entry out of date.
+    private List<Book> cachedSearch(Query key, String[] terms, Supplier<List<Book>> search) {
+        QueryCache<Query, CachedResult> cache = resultCache;
+        if (cache == null) {
+            return search.get();
+        }
+        CachedResult cached = cache.get(key, CachedResult::isCurrent);
+        if (cached != null) {
+            return cached.books;
+        }
+        TitleVersions.Stamp stamp = titleVersions.stamp(terms);
+        List<Book> books = Collections.unmodifiableList(search.get());
+        cache.put(key, new CachedResult(books, stamp));
+        return books;
+    }
+
+    // Returns the cached top N of a rating index if no rating change since reached its last rank,
+    // otherwise reads the index. A result is only cached if no rating changed while it was read.
+    private List<Book> cachedTopN(byte kind, ConcurrentSkipListMap<RatingKey, Book> index, RankingVersion version, int n) {
+        QueryCache<Query, CachedResult> cache = resultCache;
+        Query key = new Query(kind, null, 0, n);
+        if (cache != null) {
+            CachedResult cached = cache.get(key, CachedResult::isCurrent);
+            if (cached != null) {
+                return cached.books;
+            }
+        }
+        long changes = version.changeCount();
+        RankingVersion.Epoch epoch = version.current();
+        List<Book> topBooks = new ArrayList<>(Math.max(0, Math.min(n, 64)));
+        RatingKey last = null;
+        for (Map.Entry<RatingKey, Book> entry : index.entrySet()) {
+            if (topBooks.size() >= n) {
+                break;
+            }
+            topBooks.add(entry.getValue());
+            last = entry.getKey();
+        }
+        List<Book> result = Collections.unmodifiableList(topBooks);
+        if (cache != null && n > 0 && version.cover(epoch, topBooks.size() < n ? null : last)
+                && version.changeCount() == changes) {
+            cache.put(key, new CachedResult(result, version, epoch.number));
+        }
+        return result;
+    }
+
+    @Override
+    public double getWeightedRating(Book book) {
+        return book.getBayesianRating(RATING_PRIOR_MEAN, RATING_PRIOR_WEIGHT);
+    }
+
+    // Adds the book to both rating indexes if it has been reviewed; called while holding the book's lock
+    private void indexRating(Book book) {
+        if (book.getRatingCount() > 0) {
+            RatingKey key = RatingKey.of(book);
+            RatingKey weightedKey = RatingKey.weighted(book);
+            ratingIndex.put(key, book);
+            weightedRatingIndex.put(weightedKey, book);
+            ratingVersion.changed(key);
+            weightedRatingVersion.changed(weightedKey);
+        }
+    }
+
+    // Removes the book's current entries from both rating indexes; called while holding the book's lock
+    private void unindexRating(Book book) {
+        if (book.getRatingCount() > 0) {
+            RatingKey key = RatingKey.of(book);
+            RatingKey weightedKey = RatingKey.weighted(book);
+            ratingIndex.remove(key);
+            weightedRatingIndex.remove(weightedKey);
+            ratingVersion.changed(key);
+            weightedRatingVersion.changed(weightedKey);
+        }
+    }
+
+    // A single BookService holds every book itself
+    @Override
+    public BookService bookServiceFor(String bookId) {
+        return this;
+    }
+
+    // Returns a read-only view of all books currently stored, in no particular order.
+    @Override
     public Collection<Book> getAllBooks() {
-        return bookMap.values();
+        return Collections.unmodifiableCollection(bookMap.values());
+    }
+
+    // Returns up to `limit` books in publishing order, as summaries. Pass null as the cursor for the first
+    // page and the page's next cursor for the following one. Books published meanwhile are appended at the
+    // end, so paging never skips or repeats a book; cursors stay valid until the state is reloaded.
+    @Override
+    public Page<BookSummary> getBookPage(String cursor, int limit) throws InvalidInputException {
+        Paging.checkLimit(limit);
+        List<Book> books = getBooksPublishedAfter(decodeCursor(cursor), Paging.withSpare(limit));
+        return Paging.toPage(books, limit, BookService::summarize, BookService::cursorOf);
+    }
+
+    // Returns up to `limit` books published after the given publish sequence, oldest first
+    public List<Book> getBooksPublishedAfter(long sequence, int limit) {
+        return Paging.valuesAfter(publishOrder, sequence, limit);
+    }
+
+    // A cursor is the publish sequence of the last book on the page; sequences only grow, so it marks a fixed point
+    static String cursorOf(Book book) {
+        return Long.toString(book.getPublishSequence());
+    }
+
+    static long decodeCursor(String cursor) throws InvalidInputException {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            long sequence = Long.parseLong(cursor);
+            if (sequence < 0) {
+                throw new InvalidInputException("Invalid cursor: " + cursor);
+            }
+            return sequence;
+        } catch (NumberFormatException e) {
+            throw new InvalidInputException("Invalid cursor: " + cursor);
+        }
+    }
+
+    // Reads the book's listing figures under its lock, so they all come from the same moment
+    static BookSummary summarize(Book book) {
+        synchronized (book) {
+            return new BookSummary(book.getBookId(), book.getTitle(), book.getAuthor().getUserId(),
+                    book.getAuthor().getUsername(), book.getRatingCount(), book.getAverageRating(),
+                    book.getBayesianRating(RATING_PRIOR_MEAN, RATING_PRIOR_WEIGHT));
+        }
     }
 
     //etrieves a book by its unique ID.
+    @Override
     public Book getBookById(String id) {
         return bookMap.get(id);
     }
-}
\ No newline at end of file
+
+    // Result cache key: the query kind and its parameters
+    private static final class Query {
+        static final byte SEARCH = 0;
+        static final byte SEARCH_ALL_TOKENS = 1;
+        static final byte TOP_RATED = 2;
+        static final byte TOP_WEIGHTED = 3;
+
+        private final byte kind;
+        private final String text;
+        private final int offset;
+        private final int limit;
+
+        Query(byte kind, String text, int offset, int limit) {
+            this.kind = kind;
+            this.text = text;
+            this.offset = offset;
+            this.limit = limit;
+        }
+
+        // Counts the key text towards the cache's weight bound, so long keys cannot fill it for free
+        int weight() {
+            return 1 + (text == null ? 0 : text.length() / 16);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Query)) {
+                return false;
+            }
+            Query other = (Query) o;
+            return kind == other.kind && offset == other.offset && limit == other.limit
+                    && Objects.equals(text, other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((kind * 31 + Objects.hashCode(text)) * 31 + offset) * 31 + limit;
+        }
+    }
+
+    // A cached result and what it was computed from: a title stamp for searches, a ranking epoch for top-N
+    private static final class CachedResult {
+        final List<Book> books;
+        private final TitleVersions.Stamp stamp;
+        private final RankingVersion ranking;
+        private final long epoch;
+
+        CachedResult(List<Book> books, TitleVersions.Stamp stamp) {
+            this(books, stamp, null, 0);
+        }
+
+        CachedResult(List<Book> books, RankingVersion ranking, long epoch) {
+            this(books, null, ranking, epoch);
+        }
+
+        private CachedResult(List<Book> books, TitleVersions.Stamp stamp, RankingVersion ranking, long epoch) {
+            this.books = books;
+            this.stamp = stamp;
+            this.ranking = ranking;
+            this.epoch = epoch;
+        }
+
+        boolean isCurrent() {
+            return stamp != null ? stamp.isCurrent() : ranking.current().number == epoch;
+        }
+    }
+
+    // Tracks which rating changes can affect cached top-N results of one rating index. The current epoch
+    // records the lowest rank any cached result reaches; a change to a key at or above it starts a new epoch,
+    // which puts every cached ranking of the index out of date. Changes further down leave them valid.
+    private static final class RankingVersion {
+        private final AtomicLong changes = new AtomicLong(); // Every change, so a reader can tell one happened while it read
+        private final AtomicReference<Epoch> epoch = new AtomicReference<>(new Epoch(0, null, false));
+
+        static final class Epoch {
+            final long number;
+            final RatingKey lowest; // Key of the lowest cached rank
+            final boolean wholeIndex; // A cached result holds the entire index, so any change matters
+
+            Epoch(long number, RatingKey lowest, boolean wholeIndex) {
+                this.number = number;
+                this.lowest = lowest;
+                this.wholeIndex = wholeIndex;
+            }
+
+            boolean affectedBy(RatingKey key) {
+                return wholeIndex || (lowest != null && key.compareTo(lowest) <= 0);
+            }
+        }
+
+        long changeCount() {
+            return changes.get();
+        }
+
+        Epoch current() {
+            return epoch.get();
+        }
+
+        // Called after a key is added to or removed from the index
+        void changed(RatingKey key) {
+            changes.incrementAndGet();
+            while (true) {
+                Epoch current = epoch.get();
+                if (!current.affectedBy(key)
+                        || epoch.compareAndSet(current, new Epoch(current.number + 1, null, false))) {
+                    return;
+                }
+            }
+        }
+
+        // Extends the epoch read before a query to cover its result down to lowest (null: the whole index).
+        // Returns false if the epoch has moved on, in which case the result must not be cached.
+        boolean cover(Epoch seen, RatingKey lowest) {
+            while (true) {
+                Epoch current = epoch.get();
+                if (current.number != seen.number) {
+                    return false;
+                }
+                boolean wholeIndex = current.wholeIndex || lowest == null;
+                RatingKey widest = current.lowest == null || (lowest != null && lowest.compareTo(current.lowest) > 0)
+                        ? lowest : current.lowest;
+                if (epoch.compareAndSet(current, new Epoch(current.number, widest, wholeIndex))) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    // Immutable rating snapshot used as the rating index key. Orders by average rating (descending)
+    // using cross-multiplication to avoid floating point ties, then by bookId so distinct books never tie.
+    private static final class RatingKey implements Comparable<RatingKey>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final long ratingSum;
+        private final int ratingCount;
+        private final String bookId;
+
+        private RatingKey(long ratingSum, int ratingCount, String bookId) {
+            this.ratingSum = ratingSum;
+            this.ratingCount = ratingCount;
+            this.bookId = bookId;
+        }
+
+        // Must be called while holding the book's lock so sum and count are read together
+        static RatingKey of(Book book) {
+            return new RatingKey(book.getRatingSum(), book.getRatingCount(), book.getBookId());
+        }
+
+        // Key for the weighted index: the rating with the prior reviews added, compared the same way
+        static RatingKey weighted(Book book) {
+            return new RatingKey(book.getRatingSum() + (long) RATING_PRIOR_MEAN * RATING_PRIOR_WEIGHT,
+                    book.getRatingCount() + RATING_PRIOR_WEIGHT, book.getBookId());
+        }
+
+        @Override
+        public int compareTo(RatingKey other) {
+            int byRating = Long.compare(other.ratingSum * ratingCount, ratingSum * other.ratingCount);
+            if (byRating != 0) {
+                return byRating;
+            }
+            return bookId.compareTo(other.bookId);
+        }
+    }
+}
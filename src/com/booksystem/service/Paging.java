@@ -0,0 +1,74 @@
+package com.booksystem.service;
+
+import com.booksystem.entity.Page;
+import com.booksystem.exception.InvalidInputException;
+import com.booksystem.util.IdAllocator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.function.Function;
+
+/**
+ * Cursor paging over the sorted indexes the services keep for listings. A
+ * cursor is the sort key of the last item returned, so a page starts right
+ * after it however many items were added or removed before it, and each page
+ * costs O(log n + limit) however deep into the listing it is.
+ */
+final class Paging {
+
+    private Paging() {
+    }
+
+    // Orders IDs of the kind by their number, so U999 comes before U1000, followed by IDs in any other
+    // form in string order
+    static Comparator<String> byIdNumber(IdAllocator.Kind kind) {
+        return (a, b) -> {
+            long x = kind.decode(a);
+            long y = kind.decode(b);
+            if (x > 0 && y > 0) {
+                return Long.compare(x, y);
+            }
+            if (x > 0 || y > 0) {
+                return x > 0 ? -1 : 1;
+            }
+            return a.compareTo(b);
+        };
+    }
+
+    static void checkLimit(int limit) throws InvalidInputException {
+        if (limit < 1) {
+            throw new InvalidInputException("Page limit must be positive.");
+        }
+    }
+
+    // Returns up to `limit` values following the key `after` (all values when it is null), in key order
+    static <K, V> List<V> valuesAfter(NavigableMap<K, V> index, K after, int limit) {
+        List<V> values = new ArrayList<>(Math.min(limit, 256));
+        for (V value : (after == null ? index : index.tailMap(after, false)).values()) {
+            if (values.size() >= limit) {
+                break;
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
+    // Builds the page for `limit` items from values read with one to spare: the spare one only shows
+    // that the listing goes on, and the cursor is taken from the last value on the page
+    static <V, T> Page<T> toPage(List<V> values, int limit, Function<V, T> projection, Function<V, String> cursorOf) {
+        int size = Math.min(values.size(), limit);
+        List<T> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(projection.apply(values.get(i)));
+        }
+        String next = values.size() > limit ? cursorOf.apply(values.get(size - 1)) : null;
+        return new Page<>(List.copyOf(items), next);
+    }
+
+    // The number of values to read for a page of `limit`: one more, unless that would overflow
+    static int withSpare(int limit) {
+        return limit == Integer.MAX_VALUE ? limit : limit + 1;
+    }
+}
@@ -1,53 +1,133 @@
 package com.booksystem.service;
 
-import com.booksystem.entity.Author;
 import com.booksystem.entity.Book;
 import com.booksystem.entity.Review;
+import com.booksystem.entity.ReviewLog;
+import com.booksystem.entity.ReviewPage;
 import com.booksystem.entity.User;
+import com.booksystem.event.EventBus;
+import com.booksystem.event.ReviewAdded;
+import com.booksystem.exception.InvalidInputException;
 import com.booksystem.exception.ReviewOutOfBoundsException;
-import com.booksystem.thread.NotificationThread;
+import com.booksystem.metrics.Counter;
+import com.booksystem.metrics.LatencyHistogram;
+import com.booksystem.metrics.Metrics;
+import com.booksystem.util.IdAllocator;
+import com.booksystem.util.Log;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 
 /**
  * Service class that manages operations related to Reviews. Provides
  * functionality for adding reviews to books, validating ratings,
- * retrieving reviews in reverse chronological order, and notifying authors
- * asynchronously about new reviews.
+ * retrieving reviews in reverse chronological order (whole or paged), and publishing a
+ * ReviewAdded event for each new review (author notifications subscribe to these).
  */
 public class ReviewService implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private static int reviewCounter = 1;
+    // Latency of adding reviews (single and batch) and of reading a page, and ratings refused as out of range
+    private static final LatencyHistogram ADD_TIME = Metrics.histogram("review.add");
+    private static final LatencyHistogram ADD_BATCH_TIME = Metrics.histogram("review.addBatch");
+    private static final LatencyHistogram PAGE_TIME = Metrics.histogram("review.page");
+    private static final Counter REJECTED = Metrics.counter("review.rejected");
+
+    // Book service whose rating index is kept in sync with new reviews
+    private final BookService bookService;
+
+    // Runtime-only event bus that new reviews are announced on; not part of the saved state
+    private transient EventBus eventBus;
+
+    public ReviewService(BookService bookService) {
+        this.bookService = bookService;
+    }
+
+    // Sets the event bus new reviews are published on (must be set again after loading saved state)
+    public void setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
 
     // Adds a new review to a book after validating the rating.
     public void addReview(Book book, User user, int rating, String comment) throws ReviewOutOfBoundsException {
     	// Throws ReviewOutOfBoundsException if rating is not between 1 and 5.
     	if (rating < 1 || rating > 5) {
+            REJECTED.increment();
             throw new ReviewOutOfBoundsException("Rating must be between 1 and 5.");
         }
 
-        String reviewId = "R" + reviewCounter++;
+        long start = Metrics.start();
+        String reviewId = nextReviewId();
         Review review = new Review(reviewId, user, rating, comment);
 
-        book.getReviews().add(review);
+        bookService.addReview(book, review);
+
+        // Subscribers (author notifications, derived views) pick the review up on their own threads
+        EventBus events = eventBus;
+        if (events != null && events.hasSubscribers()) {
+            events.publish(new ReviewAdded(book, review, false));
+        }
+        ADD_TIME.recordSince(start);
+
+        Log.info("✅ Review added to book: ", book.getTitle());
+    }
 
-        System.out.println("✅ Review added to book: " + book.getTitle());
+    // Returns a new unique review ID from the book service's allocator, which outlives restarts
+    public String nextReviewId() {
+        return bookService.getIdAllocator().nextId(IdAllocator.Kind.REVIEW);
+    }
 
-        //Starts a separate thread to notify the author of the new review.
-        Author author = book.getAuthor();
-        NotificationThread notificationThread = new NotificationThread(author.getEmail(), book.getTitle());
-        new Thread(notificationThread).start(); // Runs asynchronously
+    // Adds already validated reviews in bulk, grouped by book, without console output (used by the
+    // bulk importer). Their events are marked as imported, so authors are not sent one notification per
+    // imported review.
+    public void addReviews(Map<Book, List<Review>> reviewsByBook) {
+        long start = Metrics.start();
+        bookService.addReviews(reviewsByBook);
+        EventBus events = eventBus;
+        if (events != null && events.hasSubscribers()) {
+            for (Map.Entry<Book, List<Review>> entry : reviewsByBook.entrySet()) {
+                for (Review review : entry.getValue()) {
+                    events.publish(new ReviewAdded(entry.getKey(), review, true));
+                }
+            }
+        }
+        ADD_BATCH_TIME.recordSince(start);
     }
 
-    // Returns the list of reviews for a book sorted in reverse chronological order (newest first).
+    // Returns the list of reviews for a book in reverse chronological order (newest first).
+    // Reviews are stored in the order they were added, so this walks the log backwards without sorting.
     public List<Review> getReviewsInReverseChronological(Book book) {
-        List<Review> reviews = book.getReviews();
-        reviews.sort((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
-        return reviews;
+        ReviewLog log = book.getReviewLog();
+        return log.newestFirst(log.size(), Integer.MAX_VALUE);
+    }
+
+    // Returns up to `limit` reviews, newest first. Pass null as the token for the first page and
+    // the page's next token for older reviews. Each page costs O(limit), regardless of review count.
+    public ReviewPage getReviewsNewestFirst(Book book, int limit, String continuationToken) throws InvalidInputException {
+        if (limit <= 0) {
+            throw new InvalidInputException("Page limit must be positive.");
+        }
+        long start = Metrics.start();
+        ReviewLog log = book.getReviewLog();
+        int before = continuationToken == null ? log.size() : decodeToken(continuationToken);
+        List<Review> reviews = log.newestFirst(before, limit);
+        int next = Math.min(before, log.size()) - reviews.size();
+        PAGE_TIME.recordSince(start);
+        return new ReviewPage(reviews, next > 0 ? Integer.toString(next) : null);
+    }
+
+    // A token is the log position just past the next review to return; positions never shift since the log is append-only
+    private static int decodeToken(String token) throws InvalidInputException {
+        try {
+            int position = Integer.parseInt(token);
+            if (position < 0) {
+                throw new InvalidInputException("Invalid continuation token: " + token);
+            }
+            return position;
+        } catch (NumberFormatException e) {
+            throw new InvalidInputException("Invalid continuation token: " + token);
+        }
     }
 }
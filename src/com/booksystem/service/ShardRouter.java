@@ -0,0 +1,380 @@
+package com.booksystem.service;
+
+import com.booksystem.entity.Book;
+import com.booksystem.entity.BookSummary;
+import com.booksystem.entity.Page;
+import com.booksystem.entity.User;
+import com.booksystem.event.EventBus;
+import com.booksystem.exception.InvalidInputException;
+import com.booksystem.exception.ReviewOutOfBoundsException;
+import com.booksystem.index.ContentIndex;
+import com.booksystem.util.ContentStore;
+import com.booksystem.util.IdAllocator;
+import com.booksystem.util.OperationLog;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Partitions books and their reviews across a fixed number of shards by hashing
+ * the book ID. Each shard has its own BookService and ReviewService, so indexes,
+ * locks and snapshot files are per shard. Reads that span the catalog are sent
+ * to every shard in parallel and the partial results merged: searches by
+ * publishing order, rankings by the same order the shard indexes use, so the
+ * results match what a single BookService holding every book would return.
+ *
+ * Users and authors are not sharded; pass the router to AuthorService so
+ * published books land in the right shard.
+ */
+public class ShardRouter implements BookPlacement, BookCatalog {
+    private static final long serialVersionUID = 1L;
+
+    private final BookService[] bookShards;
+    private final ReviewService[] reviewShards;
+
+    // Runs the per-shard parts of fan-out queries; created on first use
+    private transient volatile ExecutorService queryPool;
+
+    public ShardRouter(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1.");
+        }
+        bookShards = new BookService[shardCount];
+        reviewShards = new ReviewService[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            bookShards[i] = new BookService();
+            reviewShards[i] = new ReviewService(bookShards[i]);
+        }
+    }
+
+    public int getShardCount() {
+        return bookShards.length;
+    }
+
+    // Returns the shard a book ID belongs to
+    public int shardOf(String bookId) {
+        return Math.floorMod(bookId.hashCode(), bookShards.length);
+    }
+
+    public BookService getBookService(int shard) {
+        return bookShards[shard];
+    }
+
+    public ReviewService getReviewService(int shard) {
+        return reviewShards[shard];
+    }
+
+    @Override
+    public BookService bookServiceFor(String bookId) {
+        return bookShards[shardOf(bookId)];
+    }
+
+    // Scores the book as the shard holding it does
+    @Override
+    public double getWeightedRating(Book book) {
+        return bookServiceFor(book.getBookId()).getWeightedRating(book);
+    }
+
+    // Returns the review service of the shard holding the book
+    public ReviewService reviewServiceFor(Book book) {
+        return reviewShards[shardOf(book.getBookId())];
+    }
+
+    // Attaches the content store to every shard
+    public void setContentStore(ContentStore contentStore) {
+        for (BookService shard : bookShards) {
+            shard.setContentStore(contentStore);
+        }
+    }
+
+    // Gives every shard the state's ID allocator, so book and review IDs are unique across shards
+    public void setIdAllocator(IdAllocator idAllocator) {
+        for (BookService shard : bookShards) {
+            shard.setIdAllocator(idAllocator);
+        }
+    }
+
+    // Attaches one operation log per shard, in shard order, so each shard's books and reviews are logged
+    // as they happen
+    public void setOperationLogs(List<OperationLog> shardLogs) {
+        if (shardLogs.size() != bookShards.length) {
+            throw new IllegalArgumentException(
+                    "Expected " + bookShards.length + " shard logs, got " + shardLogs.size());
+        }
+        for (int i = 0; i < bookShards.length; i++) {
+            bookShards[i].setOperationLog(shardLogs.get(i));
+        }
+    }
+
+    // Attaches the event bus to every shard, so books and reviews are announced whichever shard holds them
+    public void setEventBus(EventBus eventBus) {
+        for (BookService shard : bookShards) {
+            shard.setEventBus(eventBus);
+        }
+        for (ReviewService shard : reviewShards) {
+            shard.setEventBus(eventBus);
+        }
+    }
+
+    // Single-book operations go to the owning shard
+
+    @Override
+    public Book getBookById(String bookId) {
+        return bookServiceFor(bookId).getBookById(bookId);
+    }
+
+    public void addReview(Book book, User user, int rating, String comment) throws ReviewOutOfBoundsException {
+        reviewServiceFor(book).addReview(book, user, rating, comment);
+    }
+
+    // Catalog-wide reads fan out to all shards
+
+    // Retrieves a book by its exact title (case-insensitive), with the same errors as BookService.getBookByTitle
+    @Override
+    public Book getBookByTitle(String title) {
+        List<Book> matches = getBooksByTitle(title);
+        if (matches.isEmpty()) {
+            throw new NoSuchElementException("Book not found with title: " + title);
+        }
+        if (matches.size() > 1) {
+            StringBuilder authors = new StringBuilder();
+            for (Book book : matches) {
+                if (authors.length() > 0) {
+                    authors.append(", ");
+                }
+                authors.append(book.getAuthor().getUsername());
+            }
+            throw new IllegalStateException("Multiple books found with title: " + title + " (by " + authors + ")");
+        }
+        return matches.get(0);
+    }
+
+    // Returns every book with the given title (case-insensitive), in publishing order
+    public List<Book> getBooksByTitle(String title) {
+        List<Book> matches = new ArrayList<>();
+        for (BookService shard : bookShards) {
+            matches.addAll(shard.getBooksByTitle(title));
+        }
+        matches.sort(Comparator.comparingLong(Book::getPublishSequence));
+        return matches;
+    }
+
+    // Search books by keyword in title, in publishing order
+    @Override
+    public List<Book> searchBooks(String keyword) {
+        return searchBooks(keyword, 0, Integer.MAX_VALUE);
+    }
+
+    // Returns one page of books whose title contains the keyword, in publishing order
+    @Override
+    public List<Book> searchBooks(String keyword, int offset, int limit) {
+        int wanted = saturatedAdd(offset, limit);
+        return page(fanOut(shard -> bookShards[shard].searchBooks(keyword, 0, wanted)), offset, limit);
+    }
+
+    // Returns one page of books whose title contains every whitespace-separated token of the query
+    @Override
+    public List<Book> searchBooksByAllTokens(String query, int offset, int limit) {
+        int wanted = saturatedAdd(offset, limit);
+        return page(fanOut(shard -> bookShards[shard].searchBooksByAllTokens(query, 0, wanted)), offset, limit);
+    }
+
+    // Retrieves the top N books by average rating across all shards
+    @Override
+    public List<Book> getTopNBooksByRating(int n) {
+        return topN(fanOut(shard -> bookShards[shard].getTopNBooksByRating(n)), n, 0, 0);
+    }
+
+    // Retrieves the top N books by Bayesian-weighted rating across all shards
+    @Override
+    public List<Book> getTopNBooksByWeightedRating(int n) {
+        return topN(fanOut(shard -> bookShards[shard].getTopNBooksByWeightedRating(n)), n,
+                (long) BookService.RATING_PRIOR_MEAN * BookService.RATING_PRIOR_WEIGHT, BookService.RATING_PRIOR_WEIGHT);
+    }
+
+    // Returns the k best content matches across all shards. Each shard ranks its own books with its own
+    // collection statistics, so scores can differ slightly from a single index over the whole catalog.
+    @Override
+    public List<ContentIndex.Hit> searchContent(String query, int k) {
+        List<ContentIndex.Hit> merged = new ArrayList<>();
+        for (List<ContentIndex.Hit> part : fanOut(shard -> bookShards[shard].searchContent(query, k))) {
+            merged.addAll(part);
+        }
+        merged.sort(Comparator.comparingDouble(ContentIndex.Hit::getScore).reversed()
+                .thenComparingLong(hit -> hit.getBook().getPublishSequence()));
+        return merged.size() > k ? new ArrayList<>(merged.subList(0, k)) : merged;
+    }
+
+    // Returns one page of all books in publishing order, with the same cursors as BookService.getBookPage:
+    // each shard contributes the books after the cursor and the merged list is cut to the page
+    @Override
+    public Page<BookSummary> getBookPage(String cursor, int limit) throws InvalidInputException {
+        Paging.checkLimit(limit);
+        long after = BookService.decodeCursor(cursor);
+        int wanted = Paging.withSpare(limit);
+        List<Book> merged = new ArrayList<>();
+        for (List<Book> part : fanOut(shard -> bookShards[shard].getBooksPublishedAfter(after, wanted))) {
+            merged.addAll(part);
+        }
+        merged.sort(Comparator.comparingLong(Book::getPublishSequence));
+        return Paging.toPage(merged, limit, BookService::summarize, BookService::cursorOf);
+    }
+
+    // Returns a read-only view over the books of all shards
+    @Override
+    public Collection<Book> getAllBooks() {
+        return new AbstractCollection<Book>() {
+            @Override
+            public Iterator<Book> iterator() {
+                List<Iterator<Book>> parts = new ArrayList<>(bookShards.length);
+                for (BookService shard : bookShards) {
+                    parts.add(shard.getAllBooks().iterator());
+                }
+                return new Iterator<Book>() {
+                    private int part;
+
+                    @Override
+                    public boolean hasNext() {
+                        while (part < parts.size() && !parts.get(part).hasNext()) {
+                            part++;
+                        }
+                        return part < parts.size();
+                    }
+
+                    @Override
+                    public Book next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return parts.get(part).next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (BookService shard : bookShards) {
+                    size += shard.getAllBooks().size();
+                }
+                return size;
+            }
+        };
+    }
+
+    // Stops the query threads (they are started again if another query arrives)
+    public void shutdown() {
+        ExecutorService pool = queryPool;
+        queryPool = null;
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    // Runs the query on every shard in parallel and returns the partial results in shard order
+    private <T> List<List<T>> fanOut(IntFunction<List<T>> query) {
+        if (bookShards.length == 1) {
+            return Collections.singletonList(query.apply(0));
+        }
+        ExecutorService pool = pool();
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>(bookShards.length);
+        for (int i = 0; i < bookShards.length; i++) {
+            int shard = i;
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(shard), pool));
+        }
+        List<List<T>> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<List<T>> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    private ExecutorService pool() {
+        ExecutorService pool = queryPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = queryPool;
+                if (pool == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    pool = Executors.newFixedThreadPool(bookShards.length, r -> {
+                        Thread thread = new Thread(r, "shard-query-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    queryPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    // Merges per-shard results (each in publishing order) and cuts out the requested page
+    private static List<Book> page(List<List<Book>> parts, int offset, int limit) {
+        List<Book> merged = new ArrayList<>();
+        for (List<Book> part : parts) {
+            merged.addAll(part);
+        }
+        merged.sort(Comparator.comparingLong(Book::getPublishSequence));
+        if (offset >= merged.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(merged.subList(offset, Math.min(merged.size(), saturatedAdd(offset, limit))));
+    }
+
+    // Merges per-shard rankings into the best n, ordered like BookService's rating index: by
+    // (sum + priorSum) / (count + priorCount) descending, then by book ID
+    private static List<Book> topN(List<List<Book>> parts, int n, long priorSum, int priorCount) {
+        List<RatedBook> candidates = new ArrayList<>();
+        for (List<Book> part : parts) {
+            for (Book book : part) {
+                synchronized (book) { // Read sum and count together
+                    candidates.add(new RatedBook(book, book.getRatingSum() + priorSum, book.getRatingCount() + priorCount));
+                }
+            }
+        }
+        candidates.sort(null);
+        List<Book> top = new ArrayList<>(Math.max(0, Math.min(n, candidates.size())));
+        for (int i = 0; i < candidates.size() && i < n; i++) {
+            top.add(candidates.get(i).book);
+        }
+        return top;
+    }
+
+    private static int saturatedAdd(int a, int b) {
+        long sum = (long) a + b;
+        return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+    }
+
+    // Rating snapshot of a candidate book, so the sort sees values that do not change under it
+    private static final class RatedBook implements Comparable<RatedBook> {
+        final Book book;
+        final long sum;
+        final int count;
+
+        RatedBook(Book book, long sum, int count) {
+            this.book = book;
+            this.sum = sum;
+            this.count = count;
+        }
+
+        @Override
+        public int compareTo(RatedBook other) {
+            int byRating = Long.compare(other.sum * count, sum * other.count);
+            if (byRating != 0) {
+                return byRating;
+            }
+            return book.getBookId().compareTo(other.book.getBookId());
+        }
+    }
+}
@@ -1,46 +1,209 @@
 package com.booksystem.service;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import com.booksystem.entity.Page;
 import com.booksystem.entity.User;
+import com.booksystem.entity.UserSummary;
+import com.booksystem.event.EventBus;
+import com.booksystem.event.UserRegistered;
 import com.booksystem.exception.InvalidInputException;
+import com.booksystem.index.IdMap;
+import com.booksystem.metrics.Counter;
+import com.booksystem.metrics.LatencyHistogram;
+import com.booksystem.metrics.Metrics;
+import com.booksystem.util.IdAllocator;
 import com.booksystem.util.InputValidator;
+import com.booksystem.util.Log;
+import com.booksystem.util.OperationLog;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
 
 /**
  * Service class that manages operations related to Users. Provides functionality
  * for adding new users with validation, checking duplicates, and retrieving users
  * by ID or fetching all users.
+ * Lookups are lock-free; registrations are serialized so uniqueness checks stay exact.
  */
 public class UserService implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private Map<String, User> userMap = new HashMap<>();
+    // Registration latency (single and batch) and registrations refused as invalid or duplicate
+    private static final LatencyHistogram ADD_TIME = Metrics.histogram("user.add");
+    private static final LatencyHistogram ADD_BATCH_TIME = Metrics.histogram("user.addBatch");
+    private static final Counter REJECTED = Metrics.counter("user.rejected");
+
+    private Map<String, User> userMap = new IdMap<>(IdAllocator.Kind.USER);
+
+    // Case-folded username and email -> user, kept in step with userMap for O(1) duplicate checks
+    private Map<String, User> usernameIndex = new ConcurrentHashMap<>();
+    private Map<String, User> emailIndex = new ConcurrentHashMap<>();
+
+    // The same users sorted by ID number, for listing them page by page (rebuilt from userMap when deserialized)
+    private transient ConcurrentSkipListMap<String, User> idOrder = newIdOrder();
+
+    // Operation log that receives each registration, if one is attached
+    private transient OperationLog operationLog;
+
+    // Event bus new users are announced on, if one is attached
+    private transient EventBus eventBus;
+
+    // Hands out IDs for new users and sees every ID added, so none is handed out twice
+    private IdAllocator idAllocator = new IdAllocator();
+
+    // Sets the operation log new users are recorded in (must be set again after loading saved state)
+    public void setOperationLog(OperationLog operationLog) {
+        this.operationLog = operationLog;
+    }
+
+    // Sets the event bus new users are published on (must be set again after loading saved state)
+    public void setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    // Sets the ID allocator, which the services of one state share
+    public void setIdAllocator(IdAllocator idAllocator) {
+        this.idAllocator = idAllocator;
+    }
+
+    public IdAllocator getIdAllocator() {
+        return idAllocator;
+    }
 
     // Adds a new user after validating username and email.
     // Throws InvalidInputException if username or email is invalid or already exists.
     public void addUser(String userId, String username, String email) throws InvalidInputException {
+        long start = Metrics.start();
+        try {
+            register(userId, username, email);
+        } catch (InvalidInputException e) {
+            REJECTED.increment();
+            throw e;
+        } finally {
+            ADD_TIME.recordSince(start);
+        }
+        Log.info("User added: ", username);
+    }
+
+    private void register(String userId, String username, String email) throws InvalidInputException {
         InputValidator.validateName(username, "Username");
         InputValidator.validateEmail(email);
 
-        // Check for duplicate username (case-insensitive)
-        boolean usernameExists = userMap.values().stream()
-            .anyMatch(u -> u.getUsername().equalsIgnoreCase(username));
-        if (usernameExists) {
-            throw new InvalidInputException("Username '" + username + "' already exists.");
+        String usernameKey = foldCase(username);
+        String emailKey = foldCase(email);
+        long logSeq = 0;
+        User user;
+
+        // Registrations are serialized so the uniqueness checks and the three maps stay consistent
+        synchronized (this) {
+            // Check for duplicate username (case-insensitive)
+            if (usernameIndex.containsKey(usernameKey)) {
+                throw new InvalidInputException("Username '" + username + "' already exists.");
+            }
+
+            // Check for duplicate email (case-insensitive)
+            if (emailIndex.containsKey(emailKey)) {
+                throw new InvalidInputException("Email '" + email + "' already registered.");
+            }
+
+            // All checks passed, so the three maps are updated together
+            user = new User(userId, username, email);
+            User replaced = userMap.put(userId, user);
+            idOrder.put(userId, user);
+            idAllocator.observe(IdAllocator.Kind.USER, userId);
+            if (replaced != null) {
+                // Same ID registered again: drop the old user's keys so the indexes match userMap
+                usernameIndex.remove(foldCase(replaced.getUsername()));
+                emailIndex.remove(foldCase(replaced.getEmail()));
+            }
+            usernameIndex.put(usernameKey, user);
+            emailIndex.put(emailKey, user);
+            if (operationLog != null) {
+                logSeq = operationLog.logUser(user);
+            }
         }
+        if (operationLog != null) {
+            operationLog.awaitDurable(logSeq); // Outside the lock, so other registrations share the fsync
+        }
+        EventBus events = eventBus;
+        if (events != null && events.hasSubscribers()) {
+            events.publish(new UserRegistered(user));
+        }
+    }
 
-        // Check for duplicate email (case-insensitive)
-        boolean emailExists = userMap.values().stream()
-            .anyMatch(u -> u.getEmail().equalsIgnoreCase(email));
-        if (emailExists) {
-            throw new InvalidInputException("Email '" + email + "' already registered.");
+    // Adds already validated users in one batch without console output (used by the bulk importer).
+    // Users whose ID, username or email is taken are passed to onReject with the reason instead.
+    // The whole batch takes the registration lock once and waits for the operation log once.
+    public void addUsers(List<User> users, BiConsumer<User, String> onReject) {
+        long start = Metrics.start();
+        long logSeq = 0;
+        List<User> added = new ArrayList<>(users.size());
+        synchronized (this) {
+            for (User user : users) {
+                String usernameKey = foldCase(user.getUsername());
+                String emailKey = foldCase(user.getEmail());
+                if (userMap.containsKey(user.getUserId())) {
+                    onReject.accept(user, "User ID '" + user.getUserId() + "' already exists.");
+                } else if (usernameIndex.containsKey(usernameKey)) {
+                    onReject.accept(user, "Username '" + user.getUsername() + "' already exists.");
+                } else if (emailIndex.containsKey(emailKey)) {
+                    onReject.accept(user, "Email '" + user.getEmail() + "' already registered.");
+                } else {
+                    userMap.put(user.getUserId(), user);
+                    idOrder.put(user.getUserId(), user);
+                    idAllocator.observe(IdAllocator.Kind.USER, user.getUserId());
+                    usernameIndex.put(usernameKey, user);
+                    emailIndex.put(emailKey, user);
+                    added.add(user);
+                    if (operationLog != null) {
+                        logSeq = operationLog.logUser(user);
+                    }
+                }
+            }
+        }
+        if (operationLog != null) {
+            operationLog.awaitDurable(logSeq);
+        }
+        EventBus events = eventBus;
+        if (events != null && events.hasSubscribers()) {
+            for (User user : added) {
+                events.publish(new UserRegistered(user));
+            }
         }
+        ADD_BATCH_TIME.recordSince(start);
+    }
+
+    // Restores a previously saved user without validation or console output (used when loading state)
+    public synchronized void restoreUser(User user) {
+        userMap.put(user.getUserId(), user);
+        idOrder.put(user.getUserId(), user);
+        idAllocator.observe(IdAllocator.Kind.USER, user.getUserId());
+        usernameIndex.put(foldCase(user.getUsername()), user);
+        emailIndex.put(foldCase(user.getEmail()), user);
+    }
+
+    // Returns the user with the given username (case-insensitive) or null if not found.
+    public User getUserByUsername(String username) {
+        return usernameIndex.get(foldCase(username));
+    }
 
-        User user = new User(userId, username, email);
-        userMap.put(userId, user);
-        System.out.println("User added: " + username);
+    // Returns the user registered with the given email (case-insensitive) or null if not found.
+    public User getUserByEmail(String email) {
+        return emailIndex.get(foldCase(email));
+    }
+
+    // Builds the index key for a username or email, matching the old equalsIgnoreCase comparison.
+    // Locale.ROOT, since a Turkish default locale lower-cases "I" to a dotless "ı".
+    private static String foldCase(String value) {
+        return value.toLowerCase(Locale.ROOT);
     }
 
     // Returns the User object for the given userId or null if not found.
@@ -48,8 +211,30 @@ public class UserService implements Serializable {
         return userMap.get(userId);
     }
 
-    // Returns the map of all users.
+    // Returns a read-only view of all users keyed by ID.
     public Map<String, User> getAllUsers() {
-        return userMap;
+        return Collections.unmodifiableMap(userMap);
+    }
+
+    // Returns up to `limit` users in ID order, as summaries. Pass null as the cursor for the first page
+    // and the page's next cursor for the following one.
+    public Page<UserSummary> getUserPage(String cursor, int limit) throws InvalidInputException {
+        Paging.checkLimit(limit);
+        List<User> users = Paging.valuesAfter(idOrder, cursor, Paging.withSpare(limit));
+        return Paging.toPage(users, limit, user -> new UserSummary(user.getUserId(), user.getUsername(),
+                user.getEmail(), 0), User::getUserId);
+    }
+
+    private static ConcurrentSkipListMap<String, User> newIdOrder() {
+        return new ConcurrentSkipListMap<>(Paging.byIdNumber(IdAllocator.Kind.USER));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        idOrder = newIdOrder();
+        idOrder.putAll(userMap);
+        if (idAllocator == null) { // Saved before IDs were allocated; loading the converted snapshot sees every ID
+            idAllocator = new IdAllocator();
+        }
     }
 }
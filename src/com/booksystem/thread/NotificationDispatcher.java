@@ -0,0 +1,272 @@
+package com.booksystem.thread;
+
+import com.booksystem.event.DomainEvent;
+import com.booksystem.event.ReviewAdded;
+import com.booksystem.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Sends author notifications from a bounded queue instead of one thread per review.
+ * A single collector thread groups notifications for the same author email that
+ * arrive within the coalescing window into one digest, and a small fixed pool of
+ * workers sends the digests. When the queue is full, new notifications are either
+ * dropped or the caller waits, depending on the overflow policy.
+ * Subscribed to the event bus through submitReviews, it hears of every new review
+ * without the review service knowing about it.
+ */
+public class NotificationDispatcher {
+
+    // What submit does when the queue is full
+    public enum OverflowPolicy {
+        DROP, // Discard the new notification and count it as dropped
+        BLOCK // Wait until the collector makes room
+    }
+
+    // Queued marker that tells the collector to flush everything and stop
+    private static final Notification SHUTDOWN = new Notification(null, null);
+
+    private final BlockingQueue<Notification> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final long windowNanos;
+    private final ExecutorService workers;
+    private final Thread collector;
+    // Submitters hold the read lock from checking running until their notification is queued, and shutdown
+    // the write lock while it clears running and queues SHUTDOWN, so nothing is queued behind the marker
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+
+    // Counters exposed for monitoring
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong digestsSent = new AtomicLong();
+    private final AtomicLong notificationsSent = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public NotificationDispatcher(int capacity, long windowMillis, int workerCount, OverflowPolicy overflowPolicy) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "notification-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        this.collector = new Thread(this::collect, "notification-collector");
+        this.collector.setDaemon(true);
+        this.collector.start();
+    }
+
+    // Queues a "new review" notification for the author. Returns false if it was dropped.
+    public boolean submit(String email, String bookTitle) {
+        Notification notification = new Notification(email, bookTitle);
+        boolean queued = false;
+        stateLock.readLock().lock();
+        try {
+            if (running) {
+                if (overflowPolicy == OverflowPolicy.BLOCK) {
+                    // The collector keeps draining until it takes SHUTDOWN, so the queue frees up; shutdown
+                    // waits for the write lock meanwhile
+                    queue.put(notification);
+                    queued = true;
+                } else {
+                    queued = queue.offer(notification);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Counted under the lock, so the counters are complete once shutdown has queued SHUTDOWN
+            (queued ? submitted : dropped).incrementAndGet();
+            stateLock.readLock().unlock();
+        }
+        return queued;
+    }
+
+    // Event bus handler: queues a notification for each new review among the events. Imported reviews
+    // are left out, since one notification per imported review would flood authors.
+    public void submitReviews(List<DomainEvent> events) {
+        for (DomainEvent event : events) {
+            if (event instanceof ReviewAdded) {
+                ReviewAdded review = (ReviewAdded) event;
+                if (!review.isImported()) {
+                    submit(review.getBook().getAuthor().getEmail(), review.getBook().getTitle());
+                }
+            }
+        }
+    }
+
+    // Stops accepting notifications, sends everything still pending and waits for the workers
+    public void shutdown() {
+        try {
+            stateLock.writeLock().lock();
+            try {
+                if (!running) {
+                    return;
+                }
+                running = false;
+                queue.put(SHUTDOWN); // No submitter holds the read lock, so only the collector touches the queue
+            } finally {
+                stateLock.writeLock().unlock();
+            }
+            collector.join();
+            workers.shutdown();
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+    }
+
+    // Collector loop: groups notifications per email and hands digests to the workers once their window closes
+    private void collect() {
+        // Insertion order is first-arrival order, so the first entry always has the earliest deadline
+        Map<String, Digest> pending = new LinkedHashMap<>();
+        while (true) {
+            Notification notification;
+            try {
+                long waitNanos = pending.isEmpty() ? windowNanos
+                        : Math.max(0, pending.values().iterator().next().deadline - System.nanoTime());
+                notification = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                notification = SHUTDOWN;
+            }
+
+            if (notification == SHUTDOWN) {
+                for (Digest digest : pending.values()) {
+                    workers.execute(() -> send(digest));
+                }
+                return;
+            }
+
+            if (notification != null) {
+                Digest digest = pending.get(notification.email);
+                if (digest == null) {
+                    pending.put(notification.email, new Digest(notification, windowNanos));
+                } else {
+                    digest.add(notification);
+                    coalesced.incrementAndGet();
+                }
+            }
+
+            long now = System.nanoTime();
+            Iterator<Digest> it = pending.values().iterator();
+            while (it.hasNext()) {
+                Digest digest = it.next();
+                if (digest.deadline > now) {
+                    break;
+                }
+                it.remove();
+                workers.execute(() -> send(digest));
+            }
+        }
+    }
+
+    // Simulates sending the digest email and records delivery latency
+    private void send(Digest digest) {
+        if (digest.count == 1) {
+            Log.info("Notification sent to " + digest.email + ": Your book '"
+                    + digest.titles.keySet().iterator().next() + "' has a new review.");
+        } else {
+            StringBuilder message = new StringBuilder();
+            message.append("Notification sent to ").append(digest.email).append(": ")
+                    .append(digest.count).append(" new reviews on ");
+            boolean first = true;
+            for (Map.Entry<String, Integer> entry : digest.titles.entrySet()) {
+                if (!first) {
+                    message.append(", ");
+                }
+                message.append('\'').append(entry.getKey()).append("' (").append(entry.getValue()).append(')');
+                first = false;
+            }
+            Log.info(message.toString());
+        }
+
+        long now = System.nanoTime();
+        digestsSent.incrementAndGet();
+        notificationsSent.addAndGet(digest.count);
+        totalLatencyNanos.addAndGet(digest.count * now - digest.submittedNanosSum);
+        maxLatencyNanos.accumulateAndGet(now - digest.firstSubmittedNanos, Math::max);
+    }
+
+    // Getters for monitoring counters
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getDigestsSentCount() {
+        return digestsSent.get();
+    }
+
+    public long getNotificationsSentCount() {
+        return notificationsSent.get();
+    }
+
+    public double getAverageLatencyMillis() {
+        long sent = notificationsSent.get();
+        return sent == 0 ? 0.0 : totalLatencyNanos.get() / (sent * 1_000_000.0);
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1_000_000.0;
+    }
+
+    // A single queued "new review" notification
+    private static class Notification {
+        final String email;
+        final String bookTitle;
+        final long submittedNanos = System.nanoTime();
+
+        Notification(String email, String bookTitle) {
+            this.email = email;
+            this.bookTitle = bookTitle;
+        }
+    }
+
+    // Notifications for one email collected during a coalescing window
+    private static class Digest {
+        final String email;
+        final long firstSubmittedNanos;
+        final long deadline;
+        final Map<String, Integer> titles = new LinkedHashMap<>();
+        long submittedNanosSum;
+        int count;
+
+        Digest(Notification first, long windowNanos) {
+            this.email = first.email;
+            this.firstSubmittedNanos = first.submittedNanos;
+            this.deadline = first.submittedNanos + windowNanos;
+            add(first);
+        }
+
+        void add(Notification notification) {
+            titles.merge(notification.bookTitle, 1, Integer::sum);
+            submittedNanosSum += notification.submittedNanos;
+            count++;
+        }
+    }
+}
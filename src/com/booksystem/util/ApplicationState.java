@@ -1,5 +1,6 @@
 package com.booksystem.util;
 
+import com.booksystem.event.EventBus;
 import com.booksystem.service.*;
 
 import java.io.Serializable;
@@ -17,19 +18,49 @@ public class ApplicationState implements Serializable {
     public BookService bookService;
     public ReviewService reviewService;
 
+    // Source of new user, author, book and review IDs, shared by the services (null in states
+    // serialized before IDs were allocated)
+    public IdAllocator idAllocator;
+
     // Default constructor to initialize fresh services
     public ApplicationState() {
         this.userService = new UserService();
-        this.authorService = new AuthorService();
         this.bookService = new BookService();
-        this.reviewService = new ReviewService();
+        this.authorService = new AuthorService(bookService);
+        this.reviewService = new ReviewService(bookService);
+        this.idAllocator = new IdAllocator();
+        userService.setIdAllocator(idAllocator);
+        authorService.setIdAllocator(idAllocator);
+        bookService.setIdAllocator(idAllocator);
     }
     
-    // Constructor to set existing services (useful if loading saved state)
+    // Constructor to set existing services (useful if loading saved state); they are expected to share
+    // the user service's ID allocator
     public ApplicationState(UserService u, AuthorService a, BookService b, ReviewService r) {
         this.userService = u;
         this.authorService = a;
         this.bookService = b;
         this.reviewService = r;
+        this.idAllocator = u.getIdAllocator();
+    }
+
+    // Attaches the content store that book text is kept in
+    public void setContentStore(ContentStore contentStore) {
+        bookService.setContentStore(contentStore);
+    }
+
+    // Attaches the operation log to every service that records changes
+    public void setOperationLog(OperationLog operationLog) {
+        userService.setOperationLog(operationLog);
+        authorService.setOperationLog(operationLog);
+        bookService.setOperationLog(operationLog);
+    }
+
+    // Attaches the event bus every service publishes its changes on
+    public void setEventBus(EventBus eventBus) {
+        userService.setEventBus(eventBus);
+        authorService.setEventBus(eventBus);
+        bookService.setEventBus(eventBus);
+        reviewService.setEventBus(eventBus);
     }
 }
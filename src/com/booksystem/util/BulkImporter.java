@@ -0,0 +1,409 @@
+package com.booksystem.util;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.Review;
+import com.booksystem.entity.User;
+import com.booksystem.exception.InvalidInputException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams users, authors, books and reviews from a file into the services of an
+ * ApplicationState. Each line is one record, either CSV or a flat JSON object
+ * (the two can be mixed):
+ *
+ *   user,userId,username,email            {"type":"user","userId":..,"username":..,"email":..}
+ *   author,authorId,name,email            {"type":"author","authorId":..,"username":..,"email":..}
+ *   book,bookId,authorId,title,content    {"type":"book","bookId":..,"authorId":..,"title":..,"content":..}
+ *   review,bookId,userId,rating,comment[,reviewId[,timestamp]]
+ *                                         {"type":"review","bookId":..,"userId":..,"rating":5,"comment":..}
+ *
+ * Blank lines and lines starting with '#' are skipped. Lines are read in batches
+ * and parsed and validated on a pool of threads; the calling thread then inserts
+ * the batches in file order through the services' bulk methods, so records may
+ * refer to records earlier in the file. Only a bounded number of batches is in
+ * flight, so memory use does not grow with the size of the file.
+ *
+ * Rows that cannot be parsed, fail validation or conflict with existing data are
+ * written to the reject file as: line number, tab, reason, tab, original line.
+ */
+public class BulkImporter {
+
+    private static final int BATCH_SIZE = 2000;
+
+    private enum Kind {
+        USER, AUTHOR, BOOK, REVIEW
+    }
+
+    // Field names per kind, in CSV column order
+    private static final Map<Kind, String[]> FIELDS = Map.of(
+            Kind.USER, new String[] { "userId", "username", "email" },
+            Kind.AUTHOR, new String[] { "authorId", "username", "email" },
+            Kind.BOOK, new String[] { "bookId", "authorId", "title", "content" },
+            Kind.REVIEW, new String[] { "bookId", "userId", "rating", "comment", "reviewId", "timestamp" });
+
+    private final ApplicationState state;
+    private final int parserThreads;
+
+    public BulkImporter(ApplicationState state, int parserThreads) {
+        this.state = state;
+        this.parserThreads = Math.max(1, parserThreads);
+    }
+
+    // Imports every record of the input file and writes rejected rows to rejectFile
+    public ImportReport importFile(Path input, Path rejectFile) throws IOException {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(parserThreads, r -> {
+            Thread thread = new Thread(r, "import-parser-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<List<Record>>> inFlight = new ArrayDeque<>();
+        int maxInFlight = parserThreads * 2;
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+                BufferedWriter rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8)) {
+            List<String> lines = new ArrayList<>(BATCH_SIZE);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                lines.add(line);
+                if (lines.size() == BATCH_SIZE) {
+                    inFlight.add(submit(parsers, lines, lineNumber - lines.size() + 1));
+                    lines = new ArrayList<>(BATCH_SIZE);
+                    if (inFlight.size() >= maxInFlight) {
+                        insert(await(inFlight.removeFirst()), report, rejects);
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                inFlight.add(submit(parsers, lines, lineNumber - lines.size() + 1));
+            }
+            while (!inFlight.isEmpty()) {
+                insert(await(inFlight.removeFirst()), report, rejects);
+            }
+            report.setLines(lineNumber);
+        } finally {
+            parsers.shutdownNow();
+        }
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        return report;
+    }
+
+    private static Future<List<Record>> submit(ExecutorService parsers, List<String> lines, long firstLine) {
+        return parsers.submit(() -> {
+            List<Record> records = new ArrayList<>(lines.size());
+            for (int i = 0; i < lines.size(); i++) {
+                Record record = parse(lines.get(i), firstLine + i);
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+            return records;
+        });
+    }
+
+    private static List<Record> await(Future<List<Record>> batch) throws IOException {
+        try {
+            return batch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Error parsing import batch", e.getCause());
+        }
+    }
+
+    // Insert stage (calling thread only)
+
+    // Inserts a parsed batch in order, handing each run of same-kind records to the matching bulk method
+    private void insert(List<Record> records, ImportReport report, BufferedWriter rejects) throws IOException {
+        List<Record> run = new ArrayList<>();
+        for (Record record : records) {
+            if (record.error != null) {
+                reject(record, record.error, report, rejects);
+                continue;
+            }
+            if (!run.isEmpty() && run.get(0).kind != record.kind) {
+                insertRun(run, report, rejects);
+                run.clear();
+            }
+            run.add(record);
+        }
+        if (!run.isEmpty()) {
+            insertRun(run, report, rejects);
+        }
+    }
+
+    private void insertRun(List<Record> run, ImportReport report, BufferedWriter rejects) throws IOException {
+        Map<Object, Record> sources = new IdentityHashMap<>();
+        List<String[]> rejected = new ArrayList<>();
+        int accepted = 0;
+
+        switch (run.get(0).kind) {
+        case USER -> {
+            List<User> users = new ArrayList<>(run.size());
+            for (Record record : run) {
+                User user = new User(record.fields[0], record.fields[1], record.fields[2]);
+                sources.put(user, record);
+                users.add(user);
+            }
+            state.userService.addUsers(users, (user, reason) -> rejected.add(rejection(sources.get(user), reason)));
+            accepted = users.size() - rejected.size();
+            report.addUsers(accepted);
+        }
+        case AUTHOR -> {
+            List<Author> authors = new ArrayList<>(run.size());
+            for (Record record : run) {
+                Author author = new Author(record.fields[0], record.fields[1], record.fields[2]);
+                sources.put(author, record);
+                authors.add(author);
+            }
+            state.authorService.addAuthors(authors,
+                    (author, reason) -> rejected.add(rejection(sources.get(author), reason)));
+            accepted = authors.size() - rejected.size();
+            report.addAuthors(accepted);
+        }
+        case BOOK -> {
+            List<Book> books = new ArrayList<>(run.size());
+            for (Record record : run) {
+                Author author = state.authorService.getAuthorById(record.fields[1]);
+                if (author == null) {
+                    rejected.add(rejection(record, "Author not found: " + record.fields[1]));
+                    continue;
+                }
+                Book book = new Book(record.fields[0], record.fields[2], record.fields[3], author);
+                sources.put(book, record);
+                books.add(book);
+            }
+            int unresolved = rejected.size();
+            state.authorService.publishBooks(books, (book, reason) -> rejected.add(rejection(sources.get(book), reason)));
+            accepted = books.size() - (rejected.size() - unresolved);
+            report.addBooks(accepted);
+        }
+        case REVIEW -> {
+            Map<Book, List<Review>> reviewsByBook = new LinkedHashMap<>();
+            for (Record record : run) {
+                Book book = state.bookService.getBookById(record.fields[0]);
+                if (book == null) {
+                    rejected.add(rejection(record, "Book not found: " + record.fields[0]));
+                    continue;
+                }
+                User user = state.userService.getUserById(record.fields[1]);
+                if (user == null) {
+                    user = state.authorService.getAuthorById(record.fields[1]);
+                }
+                if (user == null) {
+                    rejected.add(rejection(record, "User not found: " + record.fields[1]));
+                    continue;
+                }
+                String reviewId = record.fields[4] != null ? record.fields[4] : state.reviewService.nextReviewId();
+                LocalDateTime timestamp = record.timestamp != null ? record.timestamp : LocalDateTime.now();
+                reviewsByBook.computeIfAbsent(book, b -> new ArrayList<>())
+                        .add(new Review(reviewId, user, record.rating, record.fields[3], timestamp));
+                accepted++;
+            }
+            state.reviewService.addReviews(reviewsByBook);
+            report.addReviews(accepted);
+        }
+        }
+
+        for (String[] rejection : rejected) {
+            writeReject(rejection[0], rejection[1], rejection[2], rejects);
+            report.addRejected();
+        }
+    }
+
+    private static String[] rejection(Record record, String reason) {
+        return new String[] { Long.toString(record.lineNumber), reason, record.line };
+    }
+
+    private static void reject(Record record, String reason, ImportReport report, BufferedWriter rejects)
+            throws IOException {
+        writeReject(Long.toString(record.lineNumber), reason, record.line, rejects);
+        report.addRejected();
+    }
+
+    private static void writeReject(String lineNumber, String reason, String line, BufferedWriter rejects)
+            throws IOException {
+        rejects.write(lineNumber);
+        rejects.write('\t');
+        rejects.write(reason);
+        rejects.write('\t');
+        rejects.write(line);
+        rejects.newLine();
+    }
+
+    // Parse stage (parser threads)
+
+    // One parsed line; error is set when the line is rejected before insertion
+    private static final class Record {
+        final long lineNumber;
+        final String line;
+        Kind kind;
+        String[] fields;
+        int rating;
+        LocalDateTime timestamp;
+        String error;
+
+        Record(long lineNumber, String line) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+    }
+
+    // Parses and validates one line, or returns null for blank and comment lines
+    private static Record parse(String line, long lineNumber) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        Record record = new Record(lineNumber, line);
+        try {
+            if (trimmed.startsWith("{")) {
+                Map<String, String> object = FlatJson.parseObject(trimmed);
+                record.kind = kindOf(object.get("type"));
+                String[] names = FIELDS.get(record.kind);
+                record.fields = new String[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    record.fields[i] = object.get(names[i]);
+                }
+            } else {
+                List<String> columns = parseCsvLine(trimmed);
+                record.kind = kindOf(columns.get(0));
+                record.fields = new String[FIELDS.get(record.kind).length];
+                for (int i = 1; i < columns.size() && i <= record.fields.length; i++) {
+                    record.fields[i - 1] = columns.get(i).isEmpty() ? null : columns.get(i);
+                }
+            }
+            validate(record);
+        } catch (InvalidInputException | IllegalArgumentException e) {
+            record.error = e.getMessage();
+        }
+        return record;
+    }
+
+    private static Kind kindOf(String type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Missing record type.");
+        }
+        try {
+            return Kind.valueOf(type.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown record type: " + type);
+        }
+    }
+
+    // Applies the same checks as the interactive menu, so imported data obeys the same rules
+    private static void validate(Record record) throws InvalidInputException {
+        String[] names = FIELDS.get(record.kind);
+        String[] f = record.fields;
+        switch (record.kind) {
+        case USER -> {
+            require(f, names, 0, 1, 2);
+            InputValidator.batch().name(f[1], "Username").email(f[2]).throwIfInvalid();
+        }
+        case AUTHOR -> {
+            require(f, names, 0, 1, 2);
+            InputValidator.validateName(f[1], "Username");
+        }
+        case BOOK -> {
+            require(f, names, 0, 1, 2);
+            InputValidator.validateName(f[2], "Book Title");
+            if (f[3] == null) {
+                f[3] = "";
+            }
+        }
+        case REVIEW -> {
+            require(f, names, 0, 1, 2);
+            try {
+                record.rating = Integer.parseInt(f[2].trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidInputException("Rating must be a number: " + f[2]);
+            }
+            if (record.rating < 1 || record.rating > 5) {
+                throw new InvalidInputException("Rating must be between 1 and 5.");
+            }
+            if (f[3] == null) {
+                f[3] = "";
+            }
+            if (f[5] != null) {
+                try {
+                    record.timestamp = LocalDateTime.parse(f[5].trim());
+                } catch (DateTimeParseException e) {
+                    throw new InvalidInputException("Invalid timestamp: " + f[5]);
+                }
+            }
+        }
+        }
+    }
+
+    private static void require(String[] fields, String[] names, int... indexes) throws InvalidInputException {
+        for (int i : indexes) {
+            if (fields[i] == null || fields[i].isEmpty()) {
+                throw new InvalidInputException("Missing field: " + names[i]);
+            }
+        }
+    }
+
+    // Splits one CSV line; fields may be quoted with "" as an escaped quote. Records cannot span lines.
+    private static List<String> parseCsvLine(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while (true) {
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        throw new IllegalArgumentException("Unterminated quoted field.");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+            }
+            while (i < line.length() && line.charAt(i) != ',') {
+                field.append(line.charAt(i++));
+            }
+            columns.add(field.toString());
+            field.setLength(0);
+            if (i >= line.length()) {
+                return columns;
+            }
+            i++; // Skip the comma
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.booksystem.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only file holding book content as UTF-8 bytes, read back through
+ * memory-mapped segments. Books keep only an (offset, length) handle, so their
+ * text stays off the Java heap and out of the state snapshot until it is read.
+ *
+ * Content is laid out so it never crosses a segment boundary (unless it is larger
+ * than a whole segment, in which case it is read with a plain channel read).
+ */
+public class ContentStore implements AutoCloseable {
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private long end; // Next write position
+
+    // Read-only mappings, one per segment, remapped when the segment has grown past the mapped part
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    public ContentStore(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.end = channel.size();
+    }
+
+    // Appends UTF-8 encoded content and returns its offset
+    public synchronized long append(byte[] bytes) throws IOException {
+        long offset = end;
+        long segmentEnd = (offset / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+        if (bytes.length <= SEGMENT_SIZE && offset + bytes.length > segmentEnd) {
+            offset = segmentEnd; // Skip to the next segment so the content can be read from one mapping
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        end = offset + bytes.length;
+        return offset;
+    }
+
+    // Decodes the content stored at the given handle
+    public String read(long offset, int length) {
+        try {
+            if (length > SEGMENT_SIZE) {
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        throw new IOException("Content store is truncated");
+                    }
+                }
+                return new String(buffer.array(), StandardCharsets.UTF_8);
+            }
+            MappedByteBuffer segment = segmentFor(offset, length);
+            byte[] bytes = new byte[length];
+            segment.get((int) (offset % SEGMENT_SIZE), bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading book content", e);
+        }
+    }
+
+    // Forces appended content to disk; called before a snapshot that refers to it is written
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private synchronized MappedByteBuffer segmentFor(long offset, int length) throws IOException {
+        int index = (int) (offset / SEGMENT_SIZE);
+        while (segments.size() <= index) {
+            segments.add(null);
+        }
+        MappedByteBuffer segment = segments.get(index);
+        long segmentStart = index * SEGMENT_SIZE;
+        if (segment == null || segment.capacity() < offset + length - segmentStart) {
+            long mappedLength = Math.min(SEGMENT_SIZE, end - segmentStart);
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, mappedLength);
+            segments.set(index, segment);
+        }
+        return segment;
+    }
+}
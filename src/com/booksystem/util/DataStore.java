@@ -1,21 +1,389 @@
 package com.booksystem.util;
 
+import com.booksystem.entity.Book;
+import com.booksystem.index.ContentIndex;
+import com.booksystem.metrics.LatencyHistogram;
+import com.booksystem.metrics.Metrics;
+
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Utility class for saving and loading serialized application state data
- * to and from files. Provides methods to persist any serializable object
- * and to retrieve it later, handling exceptions gracefully.
+ * Utility class for saving and loading application state data to and from files.
+ * The primary format is the compact binary snapshot (see SnapshotFormat); the
+ * Java serialization methods are kept for reading older app_state.ser files.
+ * A snapshot's content index is saved next to it (<snapshot>.idx) so loading
+ * does not have to read and tokenize every book again; if that file is missing
+ * or unreadable, the index is rebuilt from the content instead.
+ * Exceptions are handled gracefully and reported through Log.
  */
 public class DataStore {
 
+    // Durations of saving and loading snapshots (plain and sharded), log replay and compaction
+    private static final LatencyHistogram SAVE_TIME = Metrics.histogram("store.saveSnapshot");
+    private static final LatencyHistogram LOAD_TIME = Metrics.histogram("store.loadSnapshot");
+    private static final LatencyHistogram SAVE_SHARDED_TIME = Metrics.histogram("store.saveSharded");
+    private static final LatencyHistogram LOAD_SHARDED_TIME = Metrics.histogram("store.loadSharded");
+    private static final LatencyHistogram RECOVER_TIME = Metrics.histogram("store.recover");
+    private static final LatencyHistogram COMPACT_TIME = Metrics.histogram("store.compact");
+
+    // Saves the application state as a binary snapshot, writing to a temporary file first
+    // so a crash mid-save never leaves a half-written snapshot behind
+    // Returns true if the snapshot was saved.
+    public static boolean saveSnapshot(ApplicationState state, String filename) {
+        long start = Metrics.start();
+        Path target = Paths.get(filename);
+        Path temp = Paths.get(filename + ".tmp");
+        try (SnapshotWriter writer = new SnapshotWriter(temp)) {
+            writer.write(state);
+        } catch (IOException e) {
+            Log.error("Error saving data: ", e.getMessage());
+            return false;
+        }
+        try {
+            moveDurably(temp, target); // SnapshotWriter.close has forced the temporary file to disk
+        } catch (IOException e) {
+            Log.error("Error saving data: ", e.getMessage());
+            return false;
+        }
+        saveContentIndex(state.bookService.getContentIndex(), filename);
+        SAVE_TIME.recordSince(start);
+        Log.info("Data saved to ", filename);
+        return true;
+    }
+
+    // Renames a file that is already on disk over the target, then forces the directory so the rename
+    // itself survives a power loss. Only after this may the data the file replaces (such as a rotated
+    // operation log) be deleted.
+    private static void moveDurably(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Path directory = target.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened for syncing on some platforms (Windows), where renames are durable
+        }
+    }
+
+    // Forces a file written through a stream to disk
+    private static void forceToDisk(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    // The file a snapshot's content index is kept in
+    public static String contentIndexFile(String snapshotFile) {
+        return snapshotFile + ".idx";
+    }
+
+    // Saves the content index next to the snapshot. A failure only costs a rebuild on the next load, so
+    // it is reported and the snapshot still counts as saved.
+    private static void saveContentIndex(ContentIndex index, String snapshotFile) {
+        Path target = Paths.get(contentIndexFile(snapshotFile));
+        Path temp = Paths.get(contentIndexFile(snapshotFile) + ".tmp");
+        try {
+            index.save(temp);
+            forceToDisk(temp);
+            moveDurably(temp, target);
+        } catch (IOException e) {
+            Log.warn("Error saving content index, it will be rebuilt on load: ", e.getMessage());
+        }
+    }
+
+    // Loads the content index saved next to a snapshot, or returns null if there is none or it is unreadable.
+    // Book content never changes, so an index saved with an earlier or later snapshot of the same catalog
+    // still fits: books it lacks are indexed on load, and books the snapshot lacks are never bound.
+    private static ContentIndex loadContentIndex(String snapshotFile) {
+        Path file = Paths.get(contentIndexFile(snapshotFile));
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return ContentIndex.load(file);
+        } catch (IOException | RuntimeException e) {
+            Log.warn("Error loading content index, rebuilding it: ", e.getMessage());
+            return null;
+        }
+    }
+
+    // Loads application state from a binary snapshot, or returns null if not found or unreadable
+    public static ApplicationState loadSnapshot(String filename) {
+        return loadSnapshot(filename, null);
+    }
+
+    // Loads a snapshot whose book content lives in (or should be moved to) the given content store
+    public static ApplicationState loadSnapshot(String filename, ContentStore contentStore) {
+        Path file = Paths.get(filename);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        long start = Metrics.start();
+        ContentIndex contentIndex = loadContentIndex(filename);
+        try (SnapshotReader reader = new SnapshotReader(file, contentStore)) {
+            ApplicationState state = reader.read(contentIndex);
+            LOAD_TIME.recordSince(start);
+            Log.info("Data loaded from ", filename);
+            return state;
+        } catch (IOException | RuntimeException e) {
+            Log.error("Error loading data: ", e.getMessage());
+            return null;
+        }
+    }
+
+    // Saves a sharded state: the users and authors to baseName.snap and each shard's books and reviews
+    // to baseName.shard-<n>.snap, with the shards written in parallel. Shard files left over from a
+    // save with more shards are removed. Returns true if every file was saved.
+    public static boolean saveSharded(ShardedState state, String baseName) {
+        long start = Metrics.start();
+        int shards = state.getShardCount();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(shards + 1, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<CompletableFuture<Boolean>> saves = new ArrayList<>();
+            saves.add(CompletableFuture.supplyAsync(() -> writeSnapshot(baseName + ".snap",
+                    writer -> writer.writeDirectory(state.shardState(0))), pool));
+            for (int i = 0; i < shards; i++) {
+                String file = shardFile(baseName, i);
+                ApplicationState shard = state.shardState(i);
+                saves.add(CompletableFuture.supplyAsync(() -> writeSnapshot(file, writer -> writer.writeBooks(shard)), pool));
+            }
+            boolean saved = true;
+            for (CompletableFuture<Boolean> save : saves) {
+                saved &= save.join();
+            }
+            for (int i = shards; Files.exists(Paths.get(shardFile(baseName, i))); i++) {
+                Files.delete(Paths.get(shardFile(baseName, i)));
+            }
+            if (saved) {
+                SAVE_SHARDED_TIME.recordSince(start);
+                Log.info("Data saved to " + baseName + " (" + shards + " shards)");
+            }
+            return saved;
+        } catch (IOException e) {
+            Log.error("Error removing old shard file: ", e.getMessage());
+            return false;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Loads a state saved by saveSharded into the given number of shards, reading the shard files in
+    // parallel. Books are placed by ID, so the saved shard count may differ from shardCount, and a plain
+    // snapshot (baseName.snap with books) loads as well. Returns null if the directory file is missing or
+    // any file is unreadable.
+    public static ShardedState loadSharded(String baseName, int shardCount, ContentStore contentStore) {
+        Path directory = Paths.get(baseName + ".snap");
+        if (!Files.exists(directory)) {
+            return null;
+        }
+        long start = Metrics.start();
+        ShardedState state = new ShardedState(shardCount);
+        state.setContentStore(contentStore);
+        List<Path> shardFiles = new ArrayList<>();
+        for (int i = 0; Files.exists(Paths.get(shardFile(baseName, i))); i++) {
+            shardFiles.add(Paths.get(shardFile(baseName, i)));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(shardFiles.size(), Runtime.getRuntime().availableProcessors())));
+        try {
+            readSnapshot(directory, state, contentStore); // Shards refer to its users and authors
+            // Files are parsed in parallel; their books are then added in one publishing-order pass,
+            // which also moves each book to the shard its ID maps to under the new shard count
+            List<CompletableFuture<List<Book>>> reads = new ArrayList<>();
+            for (Path file : shardFiles) {
+                reads.add(CompletableFuture.supplyAsync(() -> {
+                    try (SnapshotReader reader = new SnapshotReader(file, contentStore)) {
+                        return reader.readBooks(state.userService, state.authorService);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, pool));
+            }
+            List<Book> books = new ArrayList<>();
+            for (CompletableFuture<List<Book>> read : reads) {
+                books.addAll(read.join());
+            }
+            books.sort(Comparator.comparingLong(Book::getPublishSequence));
+            SnapshotReader.addBooks(books, state.router);
+            LOAD_SHARDED_TIME.recordSince(start);
+            Log.info("Data loaded from " + baseName + " (" + shardFiles.size() + " shard files into " + shardCount
+                    + " shards)");
+            return state;
+        } catch (IOException | RuntimeException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            Log.error("Error loading data: ", cause.getMessage());
+            return null;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Returns true if a sharded state was saved under baseName or logged to logFile; loading it as a plain
+    // snapshot would find the users and authors but none of the books
+    public static boolean isSharded(String baseName, String logFile) {
+        return Files.exists(Paths.get(shardFile(baseName, 0))) || hasShardLog(logFile, 0);
+    }
+
+    private static String shardFile(String baseName, int shard) {
+        return baseName + ".shard-" + shard + ".snap";
+    }
+
+    private interface SnapshotSection {
+        void writeTo(SnapshotWriter writer) throws IOException;
+    }
+
+    // Writes one snapshot file through a temporary file, like saveSnapshot, without console output on success
+    private static boolean writeSnapshot(String filename, SnapshotSection section) {
+        Path temp = Paths.get(filename + ".tmp");
+        try {
+            try (SnapshotWriter writer = new SnapshotWriter(temp)) {
+                section.writeTo(writer);
+            }
+            moveDurably(temp, Paths.get(filename));
+            return true;
+        } catch (IOException e) {
+            Log.error("Error saving data to " + filename + ": ", e.getMessage());
+            return false;
+        }
+    }
+
+    private static void readSnapshot(Path file, ShardedState state, ContentStore contentStore) throws IOException {
+        try (SnapshotReader reader = new SnapshotReader(file, contentStore)) {
+            reader.readInto(state.userService, state.authorService, state.router);
+        }
+    }
+
+    // Replays the operation log on top of a freshly loaded state. A log left over from an
+    // interrupted compaction (logFile + ".old") is replayed first, since it holds the older changes.
+    public static void recover(ApplicationState state, String logFile) {
+        long start = Metrics.start();
+        try {
+            int replayed = OperationLog.replay(Paths.get(logFile + ".old"), state)
+                    + OperationLog.replay(Paths.get(logFile), state);
+            RECOVER_TIME.recordSince(start);
+            if (replayed > 0) {
+                Log.info("Replayed " + replayed + " logged changes from ", logFile);
+            }
+        } catch (IOException e) {
+            Log.error("Error replaying operation log: ", e.getMessage());
+        }
+    }
+
+    // Compacts the operation log into a snapshot: the log is moved aside, the snapshot written, and
+    // the old log deleted only once the snapshot is safely in place. Changes made while the snapshot
+    // is being written go to the new log; replay skips any that the snapshot already contains.
+    public static void compact(ApplicationState state, String snapshotFile, OperationLog log, String logFile) {
+        long start = Metrics.start();
+        Path rotated = Paths.get(logFile + ".old");
+        try {
+            log.rotate(rotated);
+        } catch (IOException e) {
+            Log.error("Error rotating operation log: ", e.getMessage());
+            return;
+        }
+        if (saveSnapshot(state, snapshotFile)) {
+            try {
+                Files.deleteIfExists(rotated);
+            } catch (IOException e) {
+                Log.error("Error removing old operation log: ", e.getMessage());
+            }
+            COMPACT_TIME.recordSince(start);
+        }
+    }
+
+    // The operation log of one shard of a sharded state whose directory is logged to logFile
+    public static String shardLogFile(String logFile, int shard) {
+        return logFile + ".shard-" + shard;
+    }
+
+    // Replays the operation logs of a sharded state on top of a freshly loaded one: the directory's
+    // (logFile) first, since books refer to its authors, then every shard's, each after the log left over
+    // from an interrupted compaction. Books and reviews go to the shard their ID maps to now, so logs
+    // written with another shard count replay as well. Returns false if they were: a book may then have
+    // records in two shard logs, so the caller must compact before logging anything new.
+    public static boolean recoverSharded(ShardedState state, String logFile) {
+        long start = Metrics.start();
+        int shardLogs = 0;
+        try {
+            int replayed = replaySharded(logFile, state);
+            for (; hasShardLog(logFile, shardLogs); shardLogs++) {
+                replayed += replaySharded(shardLogFile(logFile, shardLogs), state);
+            }
+            RECOVER_TIME.recordSince(start);
+            if (replayed > 0) {
+                Log.info("Replayed " + replayed + " logged changes from " + logFile + " and " + shardLogs
+                        + " shard logs");
+            }
+        } catch (IOException e) {
+            Log.error("Error replaying operation log: ", e.getMessage());
+        }
+        return shardLogs == 0 || shardLogs == state.getShardCount();
+    }
+
+    // Replays one log of a sharded state, after the one left over from an interrupted compaction
+    private static int replaySharded(String logFile, ShardedState state) throws IOException {
+        return OperationLog.replay(Paths.get(logFile + ".old"), state.userService, state.authorService, state.router)
+                + OperationLog.replay(Paths.get(logFile), state.userService, state.authorService, state.router);
+    }
+
+    private static boolean hasShardLog(String logFile, int shard) {
+        String shardLog = shardLogFile(logFile, shard);
+        return Files.exists(Paths.get(shardLog)) || Files.exists(Paths.get(shardLog + ".old"));
+    }
+
+    // Compacts the operation logs of a sharded state into a sharded snapshot, as compact does for a
+    // plain one: every log is moved aside before the snapshot is written, and the old logs are deleted
+    // once it is in place, along with the logs of shards beyond the current count.
+    public static void compactSharded(ShardedState state, String baseName, OperationLog directoryLog,
+            List<OperationLog> shardLogs, String logFile) {
+        long start = Metrics.start();
+        List<Path> rotated = new ArrayList<>();
+        try {
+            rotated.add(Paths.get(logFile + ".old"));
+            directoryLog.rotate(rotated.get(0));
+            for (int i = 0; i < shardLogs.size(); i++) {
+                rotated.add(Paths.get(shardLogFile(logFile, i) + ".old"));
+                shardLogs.get(i).rotate(rotated.get(i + 1));
+            }
+        } catch (IOException e) {
+            Log.error("Error rotating operation log: ", e.getMessage());
+            return; // Logs already rotated keep their changes in the .old file until the next compaction
+        }
+        if (saveSharded(state, baseName)) {
+            try {
+                for (Path file : rotated) {
+                    Files.deleteIfExists(file);
+                }
+                for (int i = shardLogs.size(); hasShardLog(logFile, i); i++) {
+                    Files.deleteIfExists(Paths.get(shardLogFile(logFile, i) + ".old"));
+                    Files.deleteIfExists(Paths.get(shardLogFile(logFile, i)));
+                }
+            } catch (IOException e) {
+                Log.error("Error removing old operation log: ", e.getMessage());
+            }
+            COMPACT_TIME.recordSince(start);
+        }
+    }
+
     // Saves the given serializable data object to the specified filename
     public static void saveState(Object data, String filename) {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filename))) {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
             out.writeObject(data);
-            System.out.println("Data saved to " + filename);
+            Log.info("Data saved to ", filename);
         } catch (IOException e) {
-            System.out.println("Error saving data: " + e.getMessage());
+            Log.error("Error saving data: ", e.getMessage());
         }
     }
 
@@ -23,15 +391,15 @@ public class DataStore {
     public static Object loadState(String filename) {
         File file = new File(filename);
         if (!file.exists()) {
-            System.out.println("No saved state found. Starting fresh.");
+            Log.info("No saved state found. Starting fresh.");
             return null;
         }
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filename))) {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
             Object data = in.readObject();
-            System.out.println("Data loaded from " + filename);
+            Log.info("Data loaded from ", filename);
             return data;
         } catch (IOException | ClassNotFoundException e) {
-            System.out.println(" Error loading data: " + e.getMessage());
+            Log.error("Error loading data: ", e.getMessage());
             return null;
         }
     }
@@ -0,0 +1,118 @@
+package com.booksystem.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parser for flat JSON objects (string, number, boolean and null values only),
+ * the shape used by JSON-lines imports and by API request bodies. Malformed
+ * input is reported as an IllegalArgumentException naming the problem.
+ */
+public final class FlatJson {
+
+    private FlatJson() {
+    }
+
+    // Parses a flat JSON object whose values are strings, numbers, booleans or null.
+    // Non-string values are kept as their literal text; nested objects and arrays are rejected.
+    public static Map<String, String> parseObject(String json) {
+        Map<String, String> object = new HashMap<>();
+        int[] pos = { 0 };
+        skipWhitespace(json, pos);
+        expect(json, pos, '{');
+        skipWhitespace(json, pos);
+        if (peek(json, pos) == '}') {
+            return object;
+        }
+        while (true) {
+            skipWhitespace(json, pos);
+            String key = readJsonString(json, pos);
+            skipWhitespace(json, pos);
+            expect(json, pos, ':');
+            skipWhitespace(json, pos);
+            char c = peek(json, pos);
+            String value;
+            if (c == '"') {
+                value = readJsonString(json, pos);
+            } else if (c == '{' || c == '[') {
+                throw new IllegalArgumentException("Nested JSON values are not supported: " + key);
+            } else {
+                int start = pos[0];
+                while (pos[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(pos[0])) < 0) {
+                    pos[0]++;
+                }
+                value = json.substring(start, pos[0]);
+                if (value.isEmpty()) {
+                    throw new IllegalArgumentException("Malformed JSON: missing value for " + key);
+                }
+                if (value.equals("null")) {
+                    value = null;
+                }
+            }
+            object.put(key, value);
+            skipWhitespace(json, pos);
+            char next = peek(json, pos);
+            pos[0]++;
+            if (next == '}') {
+                return object;
+            }
+            if (next != ',') {
+                throw new IllegalArgumentException("Malformed JSON: expected ',' or '}' at " + (pos[0] - 1));
+            }
+        }
+    }
+
+    private static String readJsonString(String json, int[] pos) {
+        expect(json, pos, '"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = peek(json, pos);
+            pos[0]++;
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escape = peek(json, pos);
+            pos[0]++;
+            switch (escape) {
+            case '"', '\\', '/' -> value.append(escape);
+            case 'b' -> value.append('\b');
+            case 'f' -> value.append('\f');
+            case 'n' -> value.append('\n');
+            case 'r' -> value.append('\r');
+            case 't' -> value.append('\t');
+            case 'u' -> {
+                if (pos[0] + 4 > json.length()) {
+                    throw new IllegalArgumentException("Malformed JSON: truncated \\u escape");
+                }
+                value.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+                pos[0] += 4;
+            }
+            default -> throw new IllegalArgumentException("Malformed JSON: invalid escape \\" + escape);
+            }
+        }
+    }
+
+    private static char peek(String json, int[] pos) {
+        if (pos[0] >= json.length()) {
+            throw new IllegalArgumentException("Malformed JSON: unexpected end of input");
+        }
+        return json.charAt(pos[0]);
+    }
+
+    private static void expect(String json, int[] pos, char expected) {
+        if (peek(json, pos) != expected) {
+            throw new IllegalArgumentException("Malformed JSON: expected '" + expected + "' at " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    private static void skipWhitespace(String json, int[] pos) {
+        while (pos[0] < json.length() && Character.isWhitespace(json.charAt(pos[0]))) {
+            pos[0]++;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.booksystem.util;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hands out dense numeric IDs, with one sequence per kind of entity, and
+ * encodes them for the outside world. An encoded ID is the kind's letter
+ * followed by the number, padded to at least three digits ("U001", "B1234"),
+ * the form user and author IDs have always had.
+ *
+ * The sequences are saved in the snapshot. Every ID that enters a service,
+ * whether live, from a snapshot, from the operation log or from a bulk
+ * import, is observed. An ID is therefore never handed out twice, even
+ * across restarts. IDs in any other form, such as the random UUIDs books used
+ * to get, are still accepted everywhere but do not affect the numbering.
+ */
+public class IdAllocator implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Kinds of ID, each with its own sequence; the order is part of the snapshot format
+    public enum Kind {
+        USER('U'), AUTHOR('A'), BOOK('B'), REVIEW('R');
+
+        private static final int MAX_DIGITS = 18; // Any 18-digit number fits in a long
+
+        private final char prefix;
+
+        Kind(char prefix) {
+            this.prefix = prefix;
+        }
+
+        // Returns the external form of an ID number (1 or more)
+        public String encode(long number) {
+            String digits = Long.toString(number);
+            if (digits.length() >= 3) {
+                return prefix + digits;
+            }
+            return prefix + "00".substring(digits.length() - 1) + digits;
+        }
+
+        // Returns the number of an ID in exactly the form encode gives, or -1 for any other string,
+        // so each number has one external form and decoding never has to allocate
+        public long decode(String id) {
+            int length = id.length();
+            if (length < 4 || length > MAX_DIGITS + 1 || id.charAt(0) != prefix) {
+                return -1;
+            }
+            if (length > 4 && id.charAt(1) == '0') { // Padding only up to three digits
+                return -1;
+            }
+            long number = 0;
+            for (int i = 1; i < length; i++) {
+                char c = id.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                number = number * 10 + (c - '0');
+            }
+            return number == 0 ? -1 : number;
+        }
+    }
+
+    // Highest number handed out or observed, per kind
+    private final AtomicLongArray issued = new AtomicLongArray(Kind.values().length);
+
+    // Returns the next number of the kind
+    public long next(Kind kind) {
+        return issued.incrementAndGet(kind.ordinal());
+    }
+
+    // Returns the next ID of the kind in its external form
+    public String nextId(Kind kind) {
+        return kind.encode(next(kind));
+    }
+
+    // Makes sure the number of an ID that entered from elsewhere is never handed out; other forms are ignored
+    public void observe(Kind kind, String id) {
+        long number = kind.decode(id);
+        if (number > 0) {
+            advanceTo(kind, number);
+        }
+    }
+
+    // Makes sure the kind's numbers up to this one are never handed out
+    public void advanceTo(Kind kind, long number) {
+        int i = kind.ordinal();
+        long current = issued.get(i);
+        while (number > current && !issued.compareAndSet(i, current, number)) {
+            current = issued.get(i);
+        }
+    }
+
+    // Returns the highest number of the kind handed out or observed so far, 0 if none
+    public long getIssued(Kind kind) {
+        return issued.get(kind.ordinal());
+    }
+}
@@ -0,0 +1,78 @@
+package com.booksystem.util;
+
+/**
+ * Outcome of a bulk import: how many records of each kind were added, how many
+ * rows were rejected (and written to the reject file), and how long it took.
+ */
+public class ImportReport {
+
+    private long users;
+    private long authors;
+    private long books;
+    private long reviews;
+    private long rejected;
+    private long lines;
+    private long elapsedMillis;
+
+    void addUsers(long count) {
+        users += count;
+    }
+
+    void addAuthors(long count) {
+        authors += count;
+    }
+
+    void addBooks(long count) {
+        books += count;
+    }
+
+    void addReviews(long count) {
+        reviews += count;
+    }
+
+    void addRejected() {
+        rejected++;
+    }
+
+    void setLines(long lines) {
+        this.lines = lines;
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getUsers() {
+        return users;
+    }
+
+    public long getAuthors() {
+        return authors;
+    }
+
+    public long getBooks() {
+        return books;
+    }
+
+    public long getReviews() {
+        return reviews;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Imported %d users, %d authors, %d books, %d reviews from %d lines in %d ms (%d rejected)",
+                users, authors, books, reviews, lines, elapsedMillis, rejected);
+    }
+}
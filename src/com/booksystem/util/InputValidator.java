@@ -2,29 +2,171 @@ package com.booksystem.util;
 
 import com.booksystem.exception.InvalidInputException;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
 /**
  * Utility class for input validation, including name and email validation,
  * and helper method to generate URL-friendly slugs from book titles.
+ * The checks scan characters directly instead of running a regex, so validating
+ * valid input allocates nothing; they accept exactly what the original patterns
+ * (noted on each method) accepted.
  */
 public class InputValidator {
 
+    // Used by generateSlug for titles the ASCII fast path cannot handle
+    private static final Pattern SPACES = Pattern.compile(" +");
+
     // Validates that input has only letters, digits, and spaces
     public static void validateName(String input, String fieldName) throws InvalidInputException {
-        if (!input.matches("[a-zA-Z0-9 ]+")) {
+        if (!isValidName(input)) {
             throw new InvalidInputException(fieldName + " contains invalid characters.");
         }
     }
 
-    // Validates email format using a simple regex pattern
+    // Validates email format (local part, @, domain label, dot, letters-only TLD)
     public static void validateEmail(String email) throws InvalidInputException {
-        String emailRegex = "^[\\w-\\.]+@[\\w-]+\\.[a-zA-Z]{2,}$";
-        if (email == null || !email.matches(emailRegex)) {
+        if (email == null || !isValidEmail(email)) {
             throw new InvalidInputException("Invalid email format.");
         }
     }
 
+    // Same as matching [a-zA-Z0-9 ]+ (input must not be null)
+    public static boolean isValidName(String input) {
+        int length = input.length();
+        if (length == 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            if (!isAsciiLetterOrDigit(c) && c != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same as matching ^[\w-\.]+@[\w-]+\.[a-zA-Z]{2,}$ where \w is [a-zA-Z0-9_] (email must not be null).
+    // Neither side of the @ may contain another @, and the domain is exactly one label, a dot and the TLD.
+    public static boolean isValidEmail(String email) {
+        int length = email.length();
+        int at = 0;
+        while (at < length && (isWordChar(email.charAt(at)) || email.charAt(at) == '-' || email.charAt(at) == '.')) {
+            at++;
+        }
+        if (at == 0 || at == length || email.charAt(at) != '@') {
+            return false;
+        }
+        int dot = at + 1;
+        while (dot < length && (isWordChar(email.charAt(dot)) || email.charAt(dot) == '-')) {
+            dot++;
+        }
+        if (dot == at + 1 || dot == length || email.charAt(dot) != '.') {
+            return false;
+        }
+        if (length - (dot + 1) < 2) {
+            return false;
+        }
+        for (int i = dot + 1; i < length; i++) {
+            char c = email.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // Generates a URL slug from the book title by trimming, converting to lowercase, and replacing spaces with hyphens
     public static String generateSlug(String title) {
-        return title.trim().toLowerCase().replaceAll(" +", "-");
+        String trimmed = title.trim();
+        int length = trimmed.length();
+        char[] slug = new char[length];
+        int out = 0;
+        for (int i = 0; i < length; i++) {
+            char c = trimmed.charAt(i);
+            if (c >= 0x80 || (c == 'I' && hasSpecialLowerCaseI())) {
+                // Non-ASCII text (or a locale with its own dotless i) needs the full toLowerCase rules
+                return SPACES.matcher(trimmed.toLowerCase()).replaceAll("-");
+            }
+            if (c == ' ') {
+                if (trimmed.charAt(i - 1) == ' ') {
+                    continue; // Collapse a run of spaces into one hyphen
+                }
+                slug[out++] = '-';
+            } else {
+                slug[out++] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+            }
+        }
+        return new String(slug, 0, out);
+    }
+
+    // Starts a batch that collects every validation failure instead of stopping at the first
+    public static Batch batch() {
+        return new Batch();
+    }
+
+    /**
+     * Collects the failures of several checks, e.g. all fields of one record, so
+     * they can be reported together. Messages are the same as the single checks throw.
+     */
+    public static final class Batch {
+        private List<String> errors; // Created on the first failure
+
+        private Batch() {
+        }
+
+        public Batch name(String input, String fieldName) {
+            if (!isValidName(input)) {
+                fail(fieldName + " contains invalid characters.");
+            }
+            return this;
+        }
+
+        public Batch email(String email) {
+            if (email == null || !isValidEmail(email)) {
+                fail("Invalid email format.");
+            }
+            return this;
+        }
+
+        public boolean isValid() {
+            return errors == null;
+        }
+
+        // Returns every failure message in the order the checks ran, empty if all passed
+        public List<String> getErrors() {
+            return errors == null ? Collections.emptyList() : Collections.unmodifiableList(errors);
+        }
+
+        // Throws one InvalidInputException listing every failure, if there were any
+        public void throwIfInvalid() throws InvalidInputException {
+            if (errors != null) {
+                throw new InvalidInputException(String.join(" ", errors));
+            }
+        }
+
+        private void fail(String message) {
+            if (errors == null) {
+                errors = new ArrayList<>(2);
+            }
+            errors.add(message);
+        }
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isWordChar(char c) {
+        return isAsciiLetterOrDigit(c) || c == '_';
+    }
+
+    // Turkish, Azerbaijani and Lithuanian lower-case 'I' differently from the ASCII rule
+    private static boolean hasSpecialLowerCaseI() {
+        String language = Locale.getDefault().getLanguage();
+        return language.equals("tr") || language.equals("az") || language.equals("lt");
     }
 }
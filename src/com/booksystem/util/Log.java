@@ -0,0 +1,160 @@
+package com.booksystem.util;
+
+import com.booksystem.metrics.Counter;
+import com.booksystem.metrics.Metrics;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leveled, asynchronous console logging. Callers only put the message on a
+ * bounded queue; a background thread writes it, so a slow console never holds
+ * up a service call. When the queue is full the message is dropped and counted
+ * ("log.dropped") rather than blocking the caller. Messages below the current
+ * level cost one volatile read; level OFF switches logging off entirely.
+ *
+ * The level starts from the booksystem.log.level system property (default INFO).
+ * INFO messages are written as they are; other levels get a prefix.
+ */
+public final class Log {
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    private static final int CAPACITY = 8192;
+
+    private static final BlockingQueue<Entry> QUEUE = new ArrayBlockingQueue<>(CAPACITY);
+    private static final Counter DROPPED = Metrics.counter("log.dropped");
+
+    private static volatile Level level = parseLevel(System.getProperty("booksystem.log.level"));
+    private static volatile PrintStream output = System.out;
+
+    static {
+        Metrics.gauge("log.queueDepth", QUEUE::size);
+        Thread writer = new Thread(Log::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private Log() {
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    // Sets where messages are written (System.out by default)
+    public static void setOutput(PrintStream stream) {
+        output = stream;
+    }
+
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0 && messageLevel != Level.OFF;
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    // Logs message + detail; the two are joined on the writer thread, not by the caller
+    public static void info(String message, Object detail) {
+        log(Level.INFO, message, detail);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public static void warn(String message, Object detail) {
+        log(Level.WARN, message, detail);
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    public static void error(String message, Object detail) {
+        log(Level.ERROR, message, detail);
+    }
+
+    // Waits (up to a second) until every message logged before this call has been written,
+    // e.g. before printing a console prompt or exiting
+    public static void flush() {
+        CountDownLatch written = new CountDownLatch(1);
+        try {
+            if (QUEUE.offer(new Entry(null, null, written), 1, TimeUnit.SECONDS)) {
+                written.await(1, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void log(Level messageLevel, String message, Object detail) {
+        if (!isEnabled(messageLevel)) {
+            return;
+        }
+        if (!QUEUE.offer(new Entry(messageLevel, message, detail))) {
+            DROPPED.increment();
+        }
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            Entry entry;
+            try {
+                entry = QUEUE.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            PrintStream out = output;
+            if (entry.level == null) {
+                out.flush();
+                ((CountDownLatch) entry.detail).countDown();
+                continue;
+            }
+            String text = entry.detail == null ? entry.message : entry.message + entry.detail;
+            out.println(entry.level == Level.INFO ? text : entry.level + ": " + text);
+            if (QUEUE.isEmpty()) {
+                out.flush();
+            }
+        }
+    }
+
+    private static Level parseLevel(String name) {
+        if (name == null) {
+            return Level.INFO;
+        }
+        try {
+            return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+
+    // A queued message; an entry without a level is a flush marker whose detail is the latch to release
+    private static final class Entry {
+        final Level level;
+        final String message;
+        final Object detail;
+
+        Entry(Level level, String message, Object detail) {
+            this.level = level;
+            this.message = message;
+            this.detail = detail;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package com.booksystem.util;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.Review;
+import com.booksystem.entity.User;
+import com.booksystem.service.AuthorService;
+import com.booksystem.service.BookPlacement;
+import com.booksystem.service.BookService;
+import com.booksystem.service.UserService;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of state changes (users, authors, books and reviews) written
+ * as they happen, so that nothing is lost between snapshots. Appends are
+ * buffered and a background thread writes and fsyncs them in batches (group
+ * commit). The log* methods only queue a record and return its sequence number,
+ * so callers can queue while holding their own locks; with waitForSync,
+ * awaitDurable(seq) then blocks until that record has been fsynced. If a batch
+ * cannot be written, the log fails: awaitDurable throws for every record not
+ * yet on disk, and nothing more is written.
+ *
+ * Each record is [int length][int crc32][byte type][payload]. Replay stops at
+ * the first torn or corrupt record and applies the rest idempotently, so a log
+ * that overlaps a snapshot can be replayed safely on top of it.
+ */
+public class OperationLog implements AutoCloseable {
+
+    private static final byte USER = 1;
+    private static final byte AUTHOR = 2;
+    private static final byte BOOK = 3;
+    private static final byte REVIEW = 4;
+
+    private final Path file;
+    private final long syncIntervalMillis;
+    private final boolean waitForSync;
+
+    // Guards the file channel; held while writing a batch, so appenders are not blocked by fsync
+    private final Object ioLock = new Object();
+    private FileChannel channel;
+
+    // Guards the pending buffer and the counters below
+    private final Object lock = new Object();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSeq;
+    private long durableSeq;
+    private long sizeBytes;
+    private boolean closed;
+    // Set once a batch could not be written; records from then on are never reported durable
+    private IOException failure;
+    // Set when the flusher has written its last batch and exited
+    private boolean stopped;
+
+    private final Thread flusher;
+
+    public OperationLog(Path file, long syncIntervalMillis, boolean waitForSync) throws IOException {
+        this.file = file;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.waitForSync = waitForSync;
+        this.channel = openForAppend(file);
+        this.sizeBytes = channel.size();
+        this.flusher = new Thread(this::flushLoop, "operation-log-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // Records a newly registered user
+    public long logUser(User user) {
+        return append(USER, out -> writeUser(out, user));
+    }
+
+    // Records a newly registered author
+    public long logAuthor(Author author) {
+        return append(AUTHOR, out -> writeUser(out, author));
+    }
+
+    // Records a newly published book
+    public long logBook(Book book) {
+        return append(BOOK, out -> {
+            writeString(out, book.getAuthor().getUserId());
+            writeString(out, book.getBookId());
+            writeString(out, book.getTitle());
+            writeString(out, book.getContent());
+        });
+    }
+
+    // Records a review added to a book
+    public long logReview(Book book, Review review) {
+        return append(REVIEW, out -> {
+            writeString(out, book.getBookId());
+            writeString(out, review.getReviewId());
+            User user = review.getUser();
+            out.writeBoolean(user != null);
+            if (user != null) {
+                writeUser(out, user);
+            }
+            out.writeByte(review.getRating());
+            writeString(out, review.getComment());
+            out.writeLong(review.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(review.getTimestamp().getNano());
+        });
+    }
+
+    // Bytes in the log, including appends not yet written; used to decide when to compact
+    public long size() {
+        synchronized (lock) {
+            return sizeBytes;
+        }
+    }
+
+    // Makes everything appended so far durable, then moves the log aside to `rotated` and starts
+    // an empty one. Used by compaction: once a snapshot is written, the rotated file can be deleted.
+    // If `rotated` is still there because an earlier compaction failed to save its snapshot, the log is
+    // appended to it instead, so the changes it holds are kept until a snapshot has absorbed them.
+    public void rotate(Path rotated) throws IOException {
+        synchronized (ioLock) {
+            long seq;
+            synchronized (lock) {
+                if (failure != null) {
+                    throw new IOException("Operation log failed earlier", failure);
+                }
+                try {
+                    seq = writeBatch(takePending());
+                } catch (IOException e) {
+                    fail(e);
+                    throw e;
+                }
+                sizeBytes = pending.size();
+            }
+            channel.close();
+            if (Files.exists(rotated)) {
+                appendTo(rotated);
+                Files.delete(file); // Replay is idempotent, so a crash before this only replays the records twice
+            } else {
+                Files.move(file, rotated, StandardCopyOption.ATOMIC_MOVE);
+            }
+            channel = openForAppend(file);
+            markDurable(seq);
+        }
+    }
+
+    // Copies the whole log onto the end of another log file and forces that file to disk
+    private void appendTo(Path target) throws IOException {
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+                FileChannel out = openForAppend(target)) {
+            long size = source.size();
+            long copied = 0;
+            while (copied < size) {
+                copied += source.transferTo(copied, size - copied, out);
+            }
+            out.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join(); // The flusher writes whatever is still pending before it exits
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ioLock) {
+            channel.close();
+        }
+    }
+
+    // Encodes the record outside the lock, then queues it for the flusher.
+    // Returns the record's sequence number, or 0 if it could not be recorded.
+    private long append(byte type, RecordEncoder encoder) {
+        byte[] payload;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            encoder.encode(out);
+            payload = bytes.toByteArray();
+        } catch (IOException e) {
+            Log.error("Error writing operation log: ", e.getMessage());
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        long seq;
+        synchronized (lock) {
+            if (closed) {
+                Log.warn("Operation log is closed; change not recorded.");
+                return 0;
+            }
+            if (failure != null) {
+                return ++appendedSeq; // Never written, so awaitDurable reports the failure
+            }
+            ByteBuffer header = ByteBuffer.allocate(8).putInt(payload.length).putInt((int) crc.getValue());
+            pending.write(header.array(), 0, 8);
+            pending.write(payload, 0, payload.length);
+            sizeBytes += 8 + payload.length;
+            seq = ++appendedSeq;
+            lock.notifyAll();
+        }
+        return seq;
+    }
+
+    // With waitForSync, blocks until the record with this sequence number is on disk; otherwise returns at once
+    // unless the log has already failed. Throws UncheckedIOException if the record will never be on disk,
+    // because a write failed or the log was closed without writing it.
+    public void awaitDurable(long seq) {
+        synchronized (lock) {
+            while (waitForSync && durableSeq < seq && failure == null && !stopped) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (durableSeq < seq && (failure != null || (waitForSync && stopped))) {
+                throw new UncheckedIOException(failure != null ? failure
+                        : new IOException("Operation log closed before the change was written"));
+            }
+        }
+    }
+
+    // Group commit: once records are pending, wait one interval so more appends can join the batch,
+    // then write the whole batch with a single write and fsync
+    private void flushLoop() {
+        try {
+            flushBatches();
+        } finally {
+            synchronized (lock) {
+                stopped = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void flushBatches() {
+        while (true) {
+            byte[] batch;
+            synchronized (lock) {
+                try {
+                    while (pending.size() == 0 && !closed) {
+                        lock.wait();
+                    }
+                    // Appends notify the lock, so keep waiting until the full interval has passed
+                    long deadline = System.nanoTime() + syncIntervalMillis * 1_000_000;
+                    long remaining;
+                    while (!closed && (remaining = deadline - System.nanoTime()) > 0) {
+                        lock.wait(Math.max(1, remaining / 1_000_000));
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (pending.size() == 0 && closed) {
+                    return;
+                }
+            }
+            synchronized (ioLock) {
+                long seq;
+                synchronized (lock) {
+                    batch = takePending();
+                    seq = appendedSeq;
+                }
+                try {
+                    writeBatch(batch);
+                } catch (IOException e) {
+                    fail(e);
+                    return;
+                }
+                markDurable(seq);
+            }
+        }
+    }
+
+    // Fails the log: the batch that could not be written and everything after it are never reported durable
+    private void fail(IOException e) {
+        Log.error("Error writing operation log, changes from now on are not durable: ", e.getMessage());
+        synchronized (lock) {
+            if (failure == null) {
+                failure = e;
+            }
+            pending.reset();
+            lock.notifyAll();
+        }
+    }
+
+    // Must hold lock: removes and returns the pending bytes
+    private byte[] takePending() {
+        byte[] batch = pending.toByteArray();
+        pending.reset();
+        return batch;
+    }
+
+    // Must hold ioLock: writes and fsyncs a batch, returning the sequence number now durable
+    private long writeBatch(byte[] batch) throws IOException {
+        if (batch.length > 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        return appendedSeq;
+    }
+
+    private void markDurable(long seq) {
+        synchronized (lock) {
+            durableSeq = Math.max(durableSeq, seq);
+            lock.notifyAll();
+        }
+    }
+
+    private static FileChannel openForAppend(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Replay
+
+    // Applies every intact record of the log to the state and returns how many were read.
+    // A torn or corrupt tail (e.g. from a crash mid-write) is cut off so new appends follow valid records.
+    public static int replay(Path file, ApplicationState state) throws IOException {
+        return replay(file, state.userService, state.authorService, state.bookService);
+    }
+
+    // Same, with each book and its reviews going to the BookService the placement picks (a shard)
+    public static int replay(Path file, UserService userService, AuthorService authorService,
+            BookPlacement bookPlacement) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        Replayer replayer = new Replayer(userService, authorService, bookPlacement);
+        long fileSize = Files.size(file);
+        int records = 0;
+        long validBytes = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            while (fileSize - validBytes >= 8) {
+                int length = in.readInt();
+                int expectedCrc = in.readInt();
+                if (length < 0 || length > fileSize - validBytes - 8) {
+                    break; // Torn record at the end of the log
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+                replayer.apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                records++;
+                validBytes += 8 + length;
+            }
+        }
+        if (validBytes < fileSize) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+            }
+        }
+        return records;
+    }
+
+    // Applies records idempotently: entities that already exist (e.g. from an overlapping snapshot) are skipped
+    private static class Replayer {
+        private final UserService userService;
+        private final AuthorService authorService;
+        private final BookPlacement bookPlacement;
+        private final Map<String, User> inlineUsers = new HashMap<>();
+        private final Map<Book, Set<String>> reviewIds = new HashMap<>();
+
+        Replayer(UserService userService, AuthorService authorService, BookPlacement bookPlacement) {
+            this.userService = userService;
+            this.authorService = authorService;
+            this.bookPlacement = bookPlacement;
+        }
+
+        void apply(DataInputStream in) throws IOException {
+            byte type = in.readByte();
+            switch (type) {
+            case USER -> {
+                User user = readUser(in, false);
+                if (userService.getUserById(user.getUserId()) == null) {
+                    userService.restoreUser(user);
+                }
+            }
+            case AUTHOR -> {
+                Author author = (Author) readUser(in, true);
+                if (authorService.getAuthorById(author.getUserId()) == null) {
+                    authorService.restoreAuthor(author);
+                }
+            }
+            case BOOK -> {
+                Author author = authorService.getAuthorById(readString(in));
+                String bookId = readString(in);
+                String title = readString(in);
+                String content = readString(in);
+                BookService bookService = bookPlacement.bookServiceFor(bookId);
+                if (author != null && bookService.getBookById(bookId) == null) {
+                    Book book = new Book(bookId, title, content, author);
+                    author.addBook(book);
+                    bookService.addBook(book);
+                }
+            }
+            case REVIEW -> {
+                String bookId = readString(in);
+                BookService bookService = bookPlacement.bookServiceFor(bookId);
+                Book book = bookService.getBookById(bookId);
+                String reviewId = readString(in);
+                User user = in.readBoolean() ? resolveUser(readUser(in, false)) : null;
+                int rating = in.readByte();
+                String comment = readString(in);
+                LocalDateTime timestamp = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                if (book != null && knownReviewIds(book).add(reviewId)) {
+                    bookService.addReview(book, new Review(reviewId, user, rating, comment, timestamp));
+                }
+            }
+            default -> {
+                // Unknown record type from a newer version; ignored
+            }
+            }
+        }
+
+        // Reuses the registered user or author with this ID, so reviews keep pointing at the same object
+        private User resolveUser(User logged) {
+            User user = userService.getUserById(logged.getUserId());
+            if (user == null) {
+                user = authorService.getAuthorById(logged.getUserId());
+            }
+            if (user == null) {
+                user = inlineUsers.computeIfAbsent(logged.getUserId(), id -> logged);
+            }
+            return user;
+        }
+
+        // Review IDs already on the book, collected once per book on first use
+        private Set<String> knownReviewIds(Book book) {
+            return reviewIds.computeIfAbsent(book, b -> {
+                Set<String> ids = new HashSet<>();
+                for (Review review : b.getReviews()) {
+                    ids.add(review.getReviewId());
+                }
+                return ids;
+            });
+        }
+    }
+
+    // Field encoding
+
+    private interface RecordEncoder {
+        void encode(DataOutputStream out) throws IOException;
+    }
+
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        writeString(out, user.getUserId());
+        writeString(out, user.getUsername());
+        writeString(out, user.getEmail());
+    }
+
+    private static User readUser(DataInputStream in, boolean author) throws IOException {
+        String userId = readString(in);
+        String username = readString(in);
+        String email = readString(in);
+        return author ? new Author(userId, username, email) : new User(userId, username, email);
+    }
+
+    // Strings are written as an int byte length (-1 for null) followed by UTF-8 bytes,
+    // since writeUTF cannot hold book content longer than 64 KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package com.booksystem.util;
+
+import com.booksystem.event.EventBus;
+import com.booksystem.service.AuthorService;
+import com.booksystem.service.ShardRouter;
+import com.booksystem.service.UserService;
+
+import java.util.List;
+
+/**
+ * Application state with books and reviews partitioned across shards (see
+ * ShardRouter). Users and authors form a single directory shared by all shards.
+ * Saved by DataStore.saveSharded as one directory snapshot plus one snapshot
+ * per shard. Changes between snapshots go to one operation log for the
+ * directory and one per shard (see DataStore.recoverSharded and compactSharded).
+ * App runs on one when started with --shards N.
+ */
+public class ShardedState {
+
+    public final UserService userService;
+    public final AuthorService authorService;
+    public final ShardRouter router;
+    public final IdAllocator idAllocator;
+
+    // Creates an empty state with the given number of shards
+    public ShardedState(int shardCount) {
+        this.userService = new UserService();
+        this.router = new ShardRouter(shardCount);
+        this.authorService = new AuthorService(router);
+        this.idAllocator = new IdAllocator();
+        userService.setIdAllocator(idAllocator);
+        authorService.setIdAllocator(idAllocator);
+        router.setIdAllocator(idAllocator);
+    }
+
+    public int getShardCount() {
+        return router.getShardCount();
+    }
+
+    // Returns one shard as an ApplicationState: the shared directory plus the shard's book and review services
+    public ApplicationState shardState(int shard) {
+        return new ApplicationState(userService, authorService, router.getBookService(shard),
+                router.getReviewService(shard));
+    }
+
+    // Attaches the content store that book text is kept in
+    public void setContentStore(ContentStore contentStore) {
+        router.setContentStore(contentStore);
+    }
+
+    // Attaches the directory's operation log to the user and author services and one log to each shard
+    public void setOperationLogs(OperationLog directoryLog, List<OperationLog> shardLogs) {
+        router.setOperationLogs(shardLogs);
+        userService.setOperationLog(directoryLog);
+        authorService.setOperationLog(directoryLog);
+    }
+
+    // Attaches the event bus to the directory services and every shard
+    public void setEventBus(EventBus eventBus) {
+        userService.setEventBus(eventBus);
+        authorService.setEventBus(eventBus);
+        router.setEventBus(eventBus);
+    }
+}
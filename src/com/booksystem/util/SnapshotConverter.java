@@ -0,0 +1,61 @@
+package com.booksystem.util;
+
+import com.booksystem.util.legacy.LegacyStateReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.nio.file.Paths;
+
+/**
+ * Converts a state file written with Java serialization (app_state.ser) into
+ * the binary snapshot format. Used by App on first start after the format
+ * change, and runnable on its own:
+ *   java -cp bin com.booksystem.util.SnapshotConverter [source.ser] [target.snap]
+ * Files from the first release are read through LegacyStateReader; files
+ * written by later builds with the current classes are read directly.
+ */
+public class SnapshotConverter {
+
+    // Loads the serialized state, writes it as a snapshot and returns the state read back from the snapshot,
+    // or null if the source could not be loaded
+    public static ApplicationState convert(String serializedFile, String snapshotFile) {
+        ApplicationState loaded = loadSerialized(serializedFile);
+        if (loaded == null) {
+            return null;
+        }
+        DataStore.saveSnapshot(loaded, snapshotFile);
+        return DataStore.loadSnapshot(snapshotFile);
+    }
+
+    // Reads the file with the first release's classes, or with the current ones if its classes are newer
+    private static ApplicationState loadSerialized(String serializedFile) {
+        if (!new File(serializedFile).exists()) {
+            Log.info("No saved state found. Starting fresh.");
+            return null;
+        }
+        try {
+            ApplicationState state = LegacyStateReader.read(Paths.get(serializedFile));
+            Log.info("Data loaded from ", serializedFile);
+            return state;
+        } catch (InvalidClassException e) {
+            Object loaded = DataStore.loadState(serializedFile);
+            return loaded instanceof ApplicationState ? (ApplicationState) loaded : null;
+        } catch (IOException | ClassNotFoundException e) {
+            Log.error("Error loading data: ", e.getMessage());
+            return null;
+        }
+    }
+
+    public static void main(String[] args) {
+        String source = args.length > 0 ? args[0] : "app_state.ser";
+        String target = args.length > 1 ? args[1] : "app_state.snap";
+        ApplicationState converted = convert(source, target);
+        Log.flush(); // DataStore reports through the asynchronous log; print after its messages
+        if (converted == null) {
+            System.out.println("Conversion failed.");
+            System.exit(1);
+        }
+        System.out.println("Converted " + source + " to " + target);
+    }
+}
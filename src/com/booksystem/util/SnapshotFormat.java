@@ -0,0 +1,37 @@
+package com.booksystem.util;
+
+/**
+ * Constants describing the binary snapshot file written by SnapshotWriter.
+ *
+ * Layout: a 4-byte magic number and a varint format version, followed by a
+ * stream of records. Each record is a one-byte type, a varint body length and
+ * the body, so readers can skip record types they do not know. Strings are
+ * written once as STRING records and then referenced by their varint index;
+ * entities reference each other by ID rather than by object graph.
+ */
+public final class SnapshotFormat {
+
+    public static final int MAGIC = 0x42505353; // "BPSS"
+    public static final int VERSION = 3; // 2: book content may be a content store handle; 3: books carry their publish sequence
+
+    // Record types
+    public static final byte END = 0;
+    public static final byte STRING = 1; // body: UTF-8 bytes; takes the next string index
+    public static final byte USER = 2; // body: userId, username, email (string refs)
+    public static final byte AUTHOR = 3; // body: userId, username, email (string refs)
+    public static final byte BOOK = 4; // body: bookId, title (refs), authorId (ref), content (v1: inline UTF-8; v2: kind + data), publish sequence (v3)
+    public static final byte REVIEW = 5; // body: bookId, reviewId (refs), user, rating, comment (ref), timestamp
+    public static final byte ID_SEQUENCES = 6; // body: kind count, then the highest ID number issued per IdAllocator.Kind, in order
+
+    // How a review refers to its user
+    public static final byte USER_NONE = 0; // review has no user
+    public static final byte USER_REF = 1; // userId of a registered user or author
+    public static final byte USER_INLINE = 2; // userId, username, email of a user that was never registered
+
+    // How a book record holds its content (version 2 and later)
+    public static final byte CONTENT_INLINE = 0; // UTF-8 text in the record
+    public static final byte CONTENT_STORED = 1; // offset and byte length in the ContentStore file
+
+    private SnapshotFormat() {
+    }
+}
@@ -0,0 +1,262 @@
+package com.booksystem.util;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.Review;
+import com.booksystem.entity.User;
+import com.booksystem.index.ContentIndex;
+import com.booksystem.service.AuthorService;
+import com.booksystem.service.BookPlacement;
+import com.booksystem.service.UserService;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a binary snapshot written by SnapshotWriter and rebuilds a fresh
+ * ApplicationState from it, or loads it into existing services. Records are
+ * decoded one at a time straight from a buffered FileChannel; unknown record
+ * types are skipped using their length.
+ * Books are handed to BookService only after all their reviews are read, so
+ * each book enters the rating index once with its final aggregate.
+ */
+public class SnapshotReader implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long position; // Bytes consumed so far, used to skip the unread tail of a record
+
+    private final List<String> strings = new ArrayList<>();
+
+    // Store that content handles in the snapshot refer to; may be null for snapshots with inline content only
+    private final ContentStore contentStore;
+
+    public SnapshotReader(Path file, ContentStore contentStore) throws IOException {
+        this.contentStore = contentStore;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        in.flip(); // Start empty so the first read refills
+    }
+
+    // Reads the whole snapshot into a fresh ApplicationState
+    public ApplicationState read() throws IOException {
+        return read(null);
+    }
+
+    // Reads the whole snapshot into a fresh ApplicationState whose books are bound to the saved content
+    // index instead of being indexed again (null builds the index from the content)
+    public ApplicationState read(ContentIndex contentIndex) throws IOException {
+        ApplicationState state = new ApplicationState();
+        state.setContentStore(contentStore); // Inline content from older snapshots moves into the store
+        if (contentIndex != null) {
+            state.bookService.setContentIndex(contentIndex);
+        }
+        readInto(state.userService, state.authorService, state.bookService);
+        return state;
+    }
+
+    // Reads the snapshot into existing services, adding each book to the BookService the placement picks
+    public void readInto(UserService userService, AuthorService authorService, BookPlacement bookPlacement)
+            throws IOException {
+        addBooks(readBooks(userService, authorService), bookPlacement);
+    }
+
+    // Reads the users and authors into the services and returns the books (with their reviews) in publishing
+    // order, without adding them anywhere. Used to read the shard files of a sharded state in parallel.
+    public List<Book> readBooks(UserService userService, AuthorService authorService) throws IOException {
+        if (readInt() != SnapshotFormat.MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        long version = readVarLong();
+        if (version > SnapshotFormat.VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        Map<String, User> inlineUsers = new HashMap<>();
+        Map<String, Book> books = new LinkedHashMap<>();
+        // Shared by the services of the state; reviews go straight onto their books, so their IDs are observed here
+        IdAllocator ids = userService.getIdAllocator();
+
+        while (true) {
+            byte type = readByte();
+            if (type == SnapshotFormat.END) {
+                break;
+            }
+            long length = readVarLong();
+            long end = position + length;
+
+            switch (type) {
+            case SnapshotFormat.STRING -> strings.add(new String(readBytes((int) length), StandardCharsets.UTF_8));
+            case SnapshotFormat.USER -> userService.restoreUser(new User(readString(), readString(), readString()));
+            case SnapshotFormat.AUTHOR -> authorService.restoreAuthor(new Author(readString(), readString(), readString()));
+            case SnapshotFormat.BOOK -> {
+                String bookId = readString();
+                String title = readString();
+                Author author = authorService.getAuthorById(readString());
+                Book book;
+                if (version >= 2 && readByte() == SnapshotFormat.CONTENT_STORED) {
+                    if (contentStore == null) {
+                        throw new IOException("Snapshot refers to a content store that is not available");
+                    }
+                    book = new Book(bookId, title, null, author);
+                    book.attachContent(contentStore, readVarLong(), (int) readVarLong());
+                } else {
+                    book = new Book(bookId, title, readInlineString(), author);
+                }
+                if (version >= 3) {
+                    book.setPublishSequence(readVarLong()); // Only orders the books; BookService assigns a new one
+                }
+                books.put(bookId, book);
+            }
+            case SnapshotFormat.REVIEW -> {
+                Book book = books.get(readString());
+                String reviewId = readString();
+                User user = readReviewUser(userService, authorService, inlineUsers);
+                int rating = (int) readVarLong();
+                String comment = readString();
+                long seconds = unZigZag(readVarLong());
+                int nanos = (int) readVarLong();
+                LocalDateTime timestamp = LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+                book.addReview(new Review(reviewId, user, rating, comment, timestamp));
+                ids.observe(IdAllocator.Kind.REVIEW, reviewId);
+            }
+            case SnapshotFormat.ID_SEQUENCES -> {
+                IdAllocator.Kind[] kinds = IdAllocator.Kind.values();
+                int count = (int) readVarLong();
+                for (int i = 0; i < count && i < kinds.length; i++) { // Kinds added later are skipped
+                    ids.advanceTo(kinds[i], readVarLong());
+                }
+            }
+            default -> {
+                // Record type from a newer writer; skipped below
+            }
+            }
+            skip(end - position);
+        }
+
+        List<Book> result = new ArrayList<>(books.values());
+        result.sort(Comparator.comparingLong(Book::getPublishSequence)); // Stable, so older snapshots keep file order
+        return result;
+    }
+
+    // Links books (in publishing order) to their authors and adds them to the BookService the placement picks,
+    // so search results keep their order across a save and load
+    public static void addBooks(List<Book> books, BookPlacement bookPlacement) {
+        for (Book book : books) {
+            book.getAuthor().addBook(book);
+            bookPlacement.bookServiceFor(book.getBookId()).addBook(book);
+        }
+    }
+
+    private User readReviewUser(UserService userService, AuthorService authorService, Map<String, User> inlineUsers)
+            throws IOException {
+        byte kind = readByte();
+        if (kind == SnapshotFormat.USER_NONE) {
+            return null;
+        }
+        String userId = readString();
+        if (kind == SnapshotFormat.USER_REF) {
+            User user = userService.getUserById(userId);
+            return user != null ? user : authorService.getAuthorById(userId);
+        }
+        String username = readString();
+        String email = readString();
+        return inlineUsers.computeIfAbsent(userId, id -> new User(id, username, email));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Decoding helpers
+
+    private String readString() throws IOException {
+        long ref = readVarLong();
+        return ref == 0 ? null : strings.get((int) (ref - 1));
+    }
+
+    private String readInlineString() throws IOException {
+        long length = readVarLong();
+        return length == 0 ? null : new String(readBytes((int) (length - 1)), StandardCharsets.UTF_8);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private int readInt() throws IOException {
+        fill(4);
+        position += 4;
+        return in.getInt();
+    }
+
+    private byte readByte() throws IOException {
+        fill(1);
+        position++;
+        return in.get();
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            fill(1);
+            int chunk = Math.min(in.remaining(), length - offset);
+            in.get(bytes, offset, chunk);
+            offset += chunk;
+        }
+        position += length;
+        return bytes;
+    }
+
+    private void skip(long bytes) throws IOException {
+        while (bytes > 0) {
+            fill(1);
+            int chunk = (int) Math.min(in.remaining(), bytes);
+            in.position(in.position() + chunk);
+            bytes -= chunk;
+            position += chunk;
+        }
+    }
+
+    // Makes sure at least `bytes` bytes are buffered, reading more from the channel as needed
+    private void fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes) {
+            return;
+        }
+        in.compact();
+        while (in.position() < bytes) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Snapshot file is truncated");
+            }
+        }
+        in.flip();
+    }
+}
@@ -0,0 +1,313 @@
+package com.booksystem.util;
+
+import com.booksystem.entity.Author;
+import com.booksystem.entity.Book;
+import com.booksystem.entity.Review;
+import com.booksystem.entity.ReviewLog;
+import com.booksystem.entity.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the application state as a binary snapshot (see SnapshotFormat).
+ * Records are encoded into a reusable buffer, prefixed with their length and
+ * pushed through a buffered FileChannel, so memory use does not grow with the
+ * size of the state apart from the string dedup table.
+ */
+public class SnapshotWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    // Body of the record being encoded
+    private byte[] record = new byte[256];
+    private int recordLength;
+
+    // String dedup table: string -> index assigned by its STRING record
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    public SnapshotWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        out.putInt(SnapshotFormat.MAGIC);
+        writeVarLong(SnapshotFormat.VERSION);
+    }
+
+    // Writes every user, author, book and review of the state, followed by the END record
+    public void write(ApplicationState state) throws IOException {
+        writeUsersAndAuthors(state);
+        writeBookRecords(state, false);
+        writeEnd();
+    }
+
+    // Writes only the users and authors (the directory of a sharded state), followed by the END record
+    public void writeDirectory(ApplicationState state) throws IOException {
+        writeUsersAndAuthors(state);
+        writeEnd();
+    }
+
+    // Writes only the books held by state.bookService and their reviews (one shard of a sharded state),
+    // followed by the END record. Users and authors are referenced by ID, so they must be in the directory.
+    public void writeBooks(ApplicationState state) throws IOException {
+        writeBookRecords(state, true);
+        writeEnd();
+    }
+
+    private void writeUsersAndAuthors(ApplicationState state) throws IOException {
+        if (state.idAllocator != null) {
+            writeIdSequences(state.idAllocator);
+        }
+        for (User user : state.userService.getAllUsers().values()) {
+            writeUser(SnapshotFormat.USER, user);
+        }
+        for (Author author : state.authorService.getAllAuthors().values()) {
+            writeUser(SnapshotFormat.AUTHOR, author);
+        }
+    }
+
+    // Writes books reachable from authors first (keeps each author's publishing order), then any others.
+    // With ownBooksOnly, authors' books held by other shards are skipped.
+    private void writeBookRecords(ApplicationState state, boolean ownBooksOnly) throws IOException {
+        // The snapshot will point into the content store, so its content must be on disk first
+        ContentStore contentStore = state.bookService.getContentStore();
+        if (contentStore != null) {
+            contentStore.sync();
+        }
+
+        Set<String> written = new HashSet<>();
+        for (Author author : state.authorService.getAllAuthors().values()) {
+            for (Book book : author.getPublishedBooks()) {
+                if (ownBooksOnly && state.bookService.getBookById(book.getBookId()) != book) {
+                    continue;
+                }
+                if (written.add(book.getBookId())) {
+                    writeBook(state, book);
+                }
+            }
+        }
+        for (Book book : state.bookService.getAllBooks()) {
+            if (written.add(book.getBookId())) {
+                if (state.authorService.getAuthorById(book.getAuthor().getUserId()) != book.getAuthor()) {
+                    writeUser(SnapshotFormat.AUTHOR, book.getAuthor());
+                }
+                writeBook(state, book);
+            }
+        }
+    }
+
+    // Saves how far each ID sequence has got, so IDs handed out for data that is gone are not reused
+    private void writeIdSequences(IdAllocator idAllocator) throws IOException {
+        startRecord();
+        IdAllocator.Kind[] kinds = IdAllocator.Kind.values();
+        putVarLong(kinds.length);
+        for (IdAllocator.Kind kind : kinds) {
+            putVarLong(idAllocator.getIssued(kind));
+        }
+        endRecord(SnapshotFormat.ID_SEQUENCES);
+    }
+
+    // The last record can leave the buffer exactly full, so make room for the END byte
+    private void writeEnd() throws IOException {
+        ensureSpace(1);
+        out.put(SnapshotFormat.END);
+    }
+
+    private void writeUser(byte type, User user) throws IOException {
+        startRecord();
+        putString(user.getUserId());
+        putString(user.getUsername());
+        putString(user.getEmail());
+        endRecord(type);
+    }
+
+    private void writeBook(ApplicationState state, Book book) throws IOException {
+        startRecord();
+        putString(book.getBookId());
+        putString(book.getTitle());
+        putString(book.getAuthor().getUserId());
+        if (book.isContentStored()) {
+            putByte(SnapshotFormat.CONTENT_STORED);
+            putVarLong(book.getContentOffset());
+            putVarLong(book.getContentLength());
+        } else {
+            putByte(SnapshotFormat.CONTENT_INLINE);
+            putInlineString(book.getContent());
+        }
+        putVarLong(book.getPublishSequence());
+        endRecord(SnapshotFormat.BOOK);
+
+        ReviewLog reviews = book.getReviewLog();
+        int count = reviews.size();
+        for (int i = 0; i < count; i++) {
+            writeReview(state, book, reviews.get(i));
+        }
+    }
+
+    private void writeReview(ApplicationState state, Book book, Review review) throws IOException {
+        startRecord();
+        putString(book.getBookId());
+        putString(review.getReviewId());
+
+        User user = review.getUser();
+        if (user == null) {
+            putByte(SnapshotFormat.USER_NONE);
+        } else if (state.userService.getUserById(user.getUserId()) == user
+                || state.authorService.getAuthorById(user.getUserId()) == user) {
+            putByte(SnapshotFormat.USER_REF);
+            putString(user.getUserId());
+        } else {
+            putByte(SnapshotFormat.USER_INLINE);
+            putString(user.getUserId());
+            putString(user.getUsername());
+            putString(user.getEmail());
+        }
+
+        putVarLong(review.getRating());
+        putString(review.getComment());
+        LocalDateTime timestamp = review.getTimestamp();
+        putVarLong(zigZag(timestamp.toEpochSecond(ZoneOffset.UTC)));
+        putVarLong(timestamp.getNano());
+        endRecord(SnapshotFormat.REVIEW);
+    }
+
+    // Flushes the buffer and forces the file to disk, so a snapshot moved into place after close survives
+    // a power loss
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Record encoding
+
+    private void startRecord() {
+        recordLength = 0;
+    }
+
+    // Writes the finished record: type byte, varint body length, body
+    private void endRecord(byte type) throws IOException {
+        ensureSpace(1 + 5);
+        out.put(type);
+        writeVarLong(recordLength);
+        int offset = 0;
+        while (offset < recordLength) {
+            if (!out.hasRemaining()) {
+                flush();
+            }
+            int chunk = Math.min(out.remaining(), recordLength - offset);
+            out.put(record, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    // Writes a string reference (0 = null, otherwise index + 1), emitting a STRING record first if it is new.
+    // STRING records are written before the record that uses them, since the body is buffered separately.
+    private void putString(String value) throws IOException {
+        if (value == null) {
+            putVarLong(0);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.put(value, index);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureSpace(1 + 5);
+            out.put(SnapshotFormat.STRING);
+            writeVarLong(bytes.length);
+            writeBytes(bytes);
+        }
+        putVarLong(index + 1L);
+    }
+
+    // Writes a string directly into the record body (length + 1, then UTF-8 bytes); used for book content
+    private void putInlineString(String value) {
+        if (value == null) {
+            putVarLong(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarLong(bytes.length + 1L);
+        ensureRecordSpace(bytes.length);
+        System.arraycopy(bytes, 0, record, recordLength, bytes.length);
+        recordLength += bytes.length;
+    }
+
+    private void putByte(byte value) {
+        ensureRecordSpace(1);
+        record[recordLength++] = value;
+    }
+
+    private void putVarLong(long value) {
+        ensureRecordSpace(10);
+        while ((value & ~0x7FL) != 0) {
+            record[recordLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        record[recordLength++] = (byte) value;
+    }
+
+    private void ensureRecordSpace(int extra) {
+        if (recordLength + extra > record.length) {
+            record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + extra));
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // Output buffer handling
+
+    private void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!out.hasRemaining()) {
+                flush();
+            }
+            int chunk = Math.min(out.remaining(), bytes.length - offset);
+            out.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (out.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+}
@@ -0,0 +1,15 @@
+package com.booksystem.util.legacy;
+
+import java.io.Serializable;
+
+/**
+ * The application state as the first release serialized it (see LegacyStateReader).
+ */
+class ApplicationState implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    UserService userService;
+    AuthorService authorService;
+    BookService bookService;
+    ReviewService reviewService;
+}
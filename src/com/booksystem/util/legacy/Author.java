@@ -0,0 +1,12 @@
+package com.booksystem.util.legacy;
+
+import java.util.List;
+
+/**
+ * An author as the first release serialized it (see LegacyStateReader).
+ */
+class Author extends User {
+    private static final long serialVersionUID = 382253915073369152L;
+
+    List<Book> publishedBooks;
+}
@@ -0,0 +1,18 @@
+package com.booksystem.util.legacy;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A book as the first release serialized it, with its reviews in a plain list
+ * (see LegacyStateReader).
+ */
+class Book implements Serializable {
+    private static final long serialVersionUID = -8914605673940397376L;
+
+    String bookId;
+    String title;
+    String content;
+    Author author;
+    List<Review> reviews;
+}
@@ -0,0 +1,13 @@
+package com.booksystem.util.legacy;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * The book service as the first release serialized it (see LegacyStateReader).
+ */
+class BookService implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    Map<String, Book> bookMap;
+}
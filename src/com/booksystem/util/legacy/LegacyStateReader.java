@@ -0,0 +1,148 @@
+package com.booksystem.util.legacy;
+
+import com.booksystem.util.IdAllocator;
+import com.booksystem.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads an app_state.ser written by the first release, before the entities and
+ * services changed shape. The stream's classes are resolved to the shadow
+ * classes in this package, which have the old fields and serialVersionUIDs, and
+ * the shadow graph is then migrated into a fresh ApplicationState through the
+ * services' restore methods, so every index is built as on a snapshot load.
+ * Files written by later builds name the same classes with other
+ * serialVersionUIDs and are refused with an InvalidClassException.
+ */
+public final class LegacyStateReader {
+
+    // Shadow class for each class name the first release wrote
+    private static final Map<String, Class<?>> SHADOWS = Map.of(
+            "com.booksystem.entity.User", User.class,
+            "com.booksystem.entity.Author", Author.class,
+            "com.booksystem.entity.Book", Book.class,
+            "com.booksystem.entity.Review", Review.class,
+            "com.booksystem.util.ApplicationState", ApplicationState.class,
+            "com.booksystem.service.UserService", UserService.class,
+            "com.booksystem.service.AuthorService", AuthorService.class,
+            "com.booksystem.service.BookService", BookService.class,
+            "com.booksystem.service.ReviewService", ReviewService.class);
+
+    private LegacyStateReader() {
+    }
+
+    // Reads the file into a new state with the current classes
+    public static com.booksystem.util.ApplicationState read(Path file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file))) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                Class<?> shadow = SHADOWS.get(desc.getName());
+                return shadow != null ? shadow : super.resolveClass(desc);
+            }
+        }) {
+            Object loaded = in.readObject();
+            if (!(loaded instanceof ApplicationState)) {
+                throw new InvalidClassException(loaded == null ? "null" : loaded.getClass().getName(),
+                        "not an application state");
+            }
+            return new Migration().migrate((ApplicationState) loaded);
+        }
+    }
+
+    // Builds the current entities from the shadow ones, once per ID
+    private static class Migration {
+        private final com.booksystem.util.ApplicationState state = new com.booksystem.util.ApplicationState();
+        // Registered users and authors by ID, and reviewers that were never registered
+        private final Map<String, com.booksystem.entity.User> users = new HashMap<>();
+        private final Map<String, com.booksystem.entity.Author> authors = new HashMap<>();
+        private final Map<String, com.booksystem.entity.User> inlineUsers = new HashMap<>();
+
+        com.booksystem.util.ApplicationState migrate(ApplicationState old) {
+            if (old.userService != null && old.userService.userMap != null) {
+                for (User user : old.userService.userMap.values()) {
+                    com.booksystem.entity.User restored = new com.booksystem.entity.User(user.userId, user.username,
+                            user.email);
+                    state.userService.restoreUser(restored);
+                    users.put(user.userId, restored);
+                }
+            }
+
+            // Books published through AuthorService were only in the author's list, the others in both
+            Map<String, Book> books = new LinkedHashMap<>();
+            if (old.authorService != null && old.authorService.authorMap != null) {
+                for (Author author : old.authorService.authorMap.values()) {
+                    author(author);
+                    if (author.publishedBooks != null) {
+                        for (Book book : author.publishedBooks) {
+                            books.putIfAbsent(book.bookId, book);
+                        }
+                    }
+                }
+            }
+            if (old.bookService != null && old.bookService.bookMap != null) {
+                for (Book book : old.bookService.bookMap.values()) {
+                    books.putIfAbsent(book.bookId, book);
+                }
+            }
+
+            for (Book legacyBook : books.values()) {
+                if (legacyBook.author == null) {
+                    // The old menu stored a book even when its author ID was unknown
+                    Log.warn("Skipping book without an author: ", legacyBook.title);
+                    continue;
+                }
+                com.booksystem.entity.Author author = author(legacyBook.author);
+                com.booksystem.entity.Book book = new com.booksystem.entity.Book(legacyBook.bookId, legacyBook.title, legacyBook.content,
+                        author);
+                // Reviews are added before the book is registered, so it enters the rating index once
+                if (legacyBook.reviews != null) {
+                    for (Review review : legacyBook.reviews) {
+                        book.addReview(new com.booksystem.entity.Review(review.reviewId, user(review.user),
+                                review.rating, review.comment, review.timestamp));
+                        state.idAllocator.observe(IdAllocator.Kind.REVIEW, review.reviewId);
+                    }
+                }
+                author.addBook(book);
+                state.bookService.addBook(book);
+            }
+            return state;
+        }
+
+        // Returns the current author for the shadow one, restoring it on first sight
+        private com.booksystem.entity.Author author(Author old) {
+            com.booksystem.entity.Author author = authors.get(old.userId);
+            if (author == null) {
+                author = new com.booksystem.entity.Author(old.userId, old.username, old.email);
+                state.authorService.restoreAuthor(author);
+                authors.put(old.userId, author);
+            }
+            return author;
+        }
+
+        // Returns the current user a review was written by: the registered user or author with its ID, or
+        // one user object per ID for reviewers that are neither
+        private com.booksystem.entity.User user(User old) {
+            if (old == null) {
+                return null;
+            }
+            com.booksystem.entity.User user = users.get(old.userId);
+            if (user == null) {
+                user = authors.get(old.userId);
+            }
+            if (user == null) {
+                user = inlineUsers.computeIfAbsent(old.userId,
+                        id -> new com.booksystem.entity.User(old.userId, old.username, old.email));
+            }
+            return user;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.booksystem.util.legacy;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * A review as the first release serialized it (see LegacyStateReader).
+ */
+class Review implements Serializable {
+    private static final long serialVersionUID = -3190158948471418323L;
+
+    String reviewId;
+    User user;
+    int rating;
+    String comment;
+    LocalDateTime timestamp;
+}
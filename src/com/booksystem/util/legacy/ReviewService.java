@@ -0,0 +1,11 @@
+package com.booksystem.util.legacy;
+
+import java.io.Serializable;
+
+/**
+ * The review service as the first release serialized it, which had no state of
+ * its own (see LegacyStateReader).
+ */
+class ReviewService implements Serializable {
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,14 @@
+package com.booksystem.util.legacy;
+
+import java.io.Serializable;
+
+/**
+ * A user as the first release serialized it (see LegacyStateReader).
+ */
+class User implements Serializable {
+    private static final long serialVersionUID = 3761596301002911523L;
+
+    String userId;
+    String username;
+    String email;
+}